@@ -5,6 +5,8 @@ import java.awt.Graphics2D;
 
 import mechanics.Battle;
 import mechanics.BoundingBox;
+import mechanics.SnapshotReader;
+import mechanics.SnapshotWriter;
 import mechanics.Vector2D;
 
 /**
@@ -143,5 +145,31 @@ public abstract class Entity
   {
     return team;
   }
+  
+  /**
+   * Writes everything about this entity that can change during a battle,
+   * for {@code Battle.snapshot()}. Subclasses with more such state must
+   * write it after calling this, and read it back in {@code load()}.
+   */
+  public void save(SnapshotWriter out)
+  {
+    out.putInt(team);
+    out.putVector(position);
+    out.putVector(velocity);
+    out.putBoolean(active);
+  }
+  
+  /**
+   * Reads back what {@code save()} wrote, into the battle being restored.
+   * Vectors are read in place, since others may share them.
+   */
+  public void load(SnapshotReader in)
+  {
+    battle = in.battle();
+    team = in.getInt();
+    in.getVector(position);
+    in.getVector(velocity);
+    active = in.getBoolean();
+  }
 
 }
@@ -4,6 +4,8 @@ import java.awt.Graphics2D;
 import java.awt.geom.Ellipse2D;
 
 import mechanics.Battle;
+import mechanics.SnapshotReader;
+import mechanics.SnapshotWriter;
 import mechanics.Vector2D;
 
 /**
@@ -42,6 +44,22 @@ public class Particle extends Entity
       active = false;
   }
 
+  @Override
+  public void save(SnapshotWriter out)
+  {
+    super.save(out);
+    out.putDouble(radius);
+    out.putDouble(dr);
+  }
+  
+  @Override
+  public void load(SnapshotReader in)
+  {
+    super.load(in);
+    radius = in.getDouble();
+    dr = in.getDouble();
+  }
+
   public void render(Graphics2D g)
   {
     if (!active)
@@ -6,6 +6,9 @@ import java.util.List;
 
 import entity.unit.Unit;
 import mechanics.Battle;
+import mechanics.SnapshotReader;
+import mechanics.SnapshotWriter;
+import mechanics.UnitStore;
 import mechanics.Vector2D;
 
 /**
@@ -21,30 +24,69 @@ public class Cannonball extends Projectile
 {
   protected List<Unit> alreadyHit;
   
-  public Cannonball(Battle b, Unit parent, Vector2D pos, Vector2D vel,
-      double power, double inert, int t, boolean ff, int durability)
+  /**
+   * Creates an inactive cannonball, for use by a {@code ProjectilePool}.
+   */
+  public Cannonball(Battle b)
   {
-    super(b, parent, pos, vel, power, inert, t, ff, durability);
+    super(b);
     
     radius = 6;
 
     alreadyHit = new ArrayList<Unit>();
   }
   
+  public Cannonball(Battle b, Unit parent, Vector2D pos, Vector2D vel,
+      double power, double inert, int t, boolean ff, int durability)
+  {
+    this(b);
+    init(parent, pos, vel, power, inert, t, ff, durability);
+  }
+  
+  @Override
+  public void init(Unit parent, Vector2D pos, Vector2D vel,
+      double power, double inert, int t, boolean ff, int durability)
+  {
+    alreadyHit.clear();
+    super.init(parent, pos, vel, power, inert, t, ff, durability);
+  }
+  
   /**
    * Cannonball should only hit each unit once to prevent insta-kill
    */
   @Override
   protected void checkHit()
   {
-    for (Unit u : battle.units())
+    UnitStore store = battle.store();
+    if (store != null)
     {
+      int excludeTeam = friendlyFire? -1 : team;
+      for (int i = store.firstContaining(position.x, position.y, 0, excludeTeam); 
+          i != -1; 
+          i = store.firstContaining(position.x, position.y, i + 1, excludeTeam))
+      {
+        Unit u = store.unit(i);
+        if (!alreadyHit.contains(u))
+        {
+          u.receiveAttack(this, attackStrength, velocity.scaledInto(inertia, knockback));
+          remainingHits--;
+          alreadyHit.add(u);
+          break;
+        }
+      }
+      return;
+    }
+    
+    List<Unit> units = battle.units();
+    for (int i = 0; i < units.size(); i++)
+    {
+      Unit u = units.get(i);
       if (u.isActive() && !alreadyHit.contains(u) 
           && (friendlyFire || u.team() != team) 
           && u.hitbox().containsAbsPoint(position))
       {
         // attack
-        u.receiveAttack(this, attackStrength, velocity.scaledBy(inertia));
+        u.receiveAttack(this, attackStrength, velocity.scaledInto(inertia, knockback));
         remainingHits--;
         alreadyHit.add(u);
         break;
@@ -52,6 +94,20 @@ public class Cannonball extends Projectile
     }
   }
   
+  @Override
+  public void save(SnapshotWriter out)
+  {
+    super.save(out);
+    out.putUnits(alreadyHit);
+  }
+  
+  @Override
+  public void load(SnapshotReader in)
+  {
+    super.load(in);
+    in.getUnits(alreadyHit);
+  }
+  
   @Override
   protected Color fillColor()
   {
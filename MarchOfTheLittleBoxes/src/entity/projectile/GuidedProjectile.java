@@ -5,6 +5,8 @@ import java.awt.geom.Path2D;
 
 import entity.unit.Unit;
 import mechanics.Battle;
+import mechanics.SnapshotReader;
+import mechanics.SnapshotWriter;
 import mechanics.Vector2D;
 
 /**
@@ -21,15 +23,46 @@ public class GuidedProjectile extends Projectile
 {
   protected Unit target;
   protected double agility; // turning ability in rad/tick
+  protected double agilityCos, agilitySin;
+  
+  /**
+   * Creates an inactive projectile, for use by a {@code ProjectilePool}.
+   */
+  public GuidedProjectile(Battle b)
+  {
+    super(b);
+    setAgility(0.05);
+    blockable = false;
+  }
   
   public GuidedProjectile(Battle b, Unit parent, Vector2D pos,
       Vector2D vel, double power, double inert, int t,
       boolean ff, int durability, Unit target)
   {
-    super(b, parent, pos, vel, power, inert, t, ff, durability);
+    this(b);
+    init(parent, pos, vel, power, inert, t, ff, durability, target);
+  }
+  
+  public void init(Unit parent, Vector2D pos, Vector2D vel, 
+      double power, double inert, int t, boolean ff, int durability, 
+      Unit target)
+  {
+    init(parent, pos, vel, power, inert, t, ff, durability);
     this.target = target;
-    agility = 0.05;
-    blockable = false;
+  }
+  
+  @Override
+  public void release()
+  {
+    target = null;
+    super.release();
+  }
+  
+  public void setAgility(double agility)
+  {
+    this.agility = agility;
+    agilityCos = Math.cos(agility);
+    agilitySin = Math.sin(agility);
   }
   
   @Override
@@ -38,18 +71,39 @@ public class GuidedProjectile extends Projectile
     // rotate velocity toward target
     if (target != null && target.isActive())
     {
-      double targetAng = ( target.position().minus(this.position) ).angle();
-      double ang = velocity.angle();
+      double dx = target.position().x - position.x;
+      double dy = target.position().y - position.y;
+      double cross = velocity.x * dy - velocity.y * dx;
+      double dot = velocity.x * dx + velocity.y * dy;
+      double speed = velocity.length();
+      double dist = Math.hypot(dx, dy);
       
-      if (Math.abs(targetAng - ang) <= agility)
-        velocity.rotateTo(targetAng);
-      else
-        velocity.rotateBy(Math.copySign(agility, targetAng - ang));
+      if (dist > 0 && speed > 0)
+      {
+        if (dot >= agilityCos * speed * dist) // within one turn of the target
+          velocity.set(dx * speed / dist, dy * speed / dist);
+        else
+          velocity.rotateBy(agilityCos, Math.copySign(agilitySin, cross));
+      }
     }
     
     super.update();
   }
   
+  @Override
+  public void save(SnapshotWriter out)
+  {
+    super.save(out);
+    out.putUnit(target);
+  }
+  
+  @Override
+  public void load(SnapshotReader in)
+  {
+    super.load(in);
+    target = in.getUnit();
+  }
+  
   /**
    * This one looks sort of like a "laser bolt" from sci-fi
    */
@@ -8,7 +8,11 @@ import java.util.List;
 import entity.Particle;
 import entity.unit.Unit;
 import mechanics.Battle;
+import mechanics.SnapshotReader;
+import mechanics.SnapshotWriter;
+import mechanics.UnitStore;
 import mechanics.Vector2D;
+import mechanics.metrics.jfr.FlightEvents;
 
 /**
  * File: src/entity/projectile/LaserBeam.java
@@ -28,14 +32,42 @@ public class LaserBeam extends Projectile
   protected int timer;
   protected List<Unit> alreadyHit;
 
+  /**
+   * Creates an inactive beam, for use by a {@code ProjectilePool}.
+   */
+  public LaserBeam(Battle b)
+  {
+    super(b);
+    alreadyHit = new ArrayList<Unit>();
+    blockable = false;
+  }
+  
   public LaserBeam(Battle b, Unit parent, Vector2D pos, Vector2D vel,
       double power, double inert, int t, boolean ff, int durability)
   {
-    super(b, parent, new Vector2D(pos), vel, power, inert, t, ff, durability);
+    this(b);
+    init(parent, pos, vel, power, inert, t, ff, durability);
+  }
+  
+  /**
+   * Unlike other projectiles, {@code pos} is kept as the origin of the beam
+   * rather than copied, so the beam stays attached to whatever fired it.
+   */
+  @Override
+  public void init(Unit parent, Vector2D pos, Vector2D vel,
+      double power, double inert, int t, boolean ff, int durability)
+  {
+    super.init(parent, pos, vel, power, inert, t, ff, durability);
     origin = pos;
     timer = 0;
-    alreadyHit = new ArrayList<Unit>();
-    blockable = false;
+    alreadyHit.clear();
+  }
+  
+  @Override
+  public void release()
+  {
+    origin = null;
+    super.release();
   }
   
   @Override
@@ -47,18 +79,23 @@ public class LaserBeam extends Projectile
     }
     else if (timer == 0)
     {
+      Object event = FlightEvents.beginLaserFire();
+      int steps = 0;
       synchronized (battle.projectiles())
       {
         while (isActive()) // laser travels instantaneously
         {
           super.update();
-          battle.add(new Particle(
-              battle, -1, new Vector2D(position), 
-              Vector2D.randomDirection(0.1), 3, -3.0/60));
+          steps++;
+          if (battle.particlesEnabled())
+            battle.add(new Particle(
+                battle, -1, new Vector2D(position), 
+                Vector2D.randomDirection(0.1, battle.particleRandom()), 3, -3.0/60));
         }
         setActive(true);
       }
       timer = 1;
+      FlightEvents.endLaserFire(event, team, steps, alreadyHit.size());
     }
     else
     {
@@ -68,20 +105,75 @@ public class LaserBeam extends Projectile
     }
   }
   
+  /**
+   * The origin is usually the position of the unit that fired the beam,
+   * which it must stay attached to, so that is saved as a flag.
+   */
+  @Override
+  public void save(SnapshotWriter out)
+  {
+    super.save(out);
+    boolean attached = owner != null && origin == owner.position();
+    out.putBoolean(attached);
+    if (!attached)
+      out.putVector(origin);
+    out.putInt(timer);
+    out.putUnits(alreadyHit);
+  }
+  
+  @Override
+  public void load(SnapshotReader in)
+  {
+    super.load(in);
+    if (in.getBoolean())
+    {
+      origin = owner.position();
+    }
+    else
+    {
+      origin = new Vector2D();
+      in.getVector(origin);
+    }
+    timer = in.getInt();
+    in.getUnits(alreadyHit);
+  }
+  
   @Override
   /**
    * Laser beam version can only hit each unit once.
    */
   protected void checkHit()
   {
-    for (Unit u : battle.units())
+    UnitStore store = battle.store();
+    if (store != null)
+    {
+      int excludeTeam = friendlyFire? -1 : team;
+      for (int i = store.firstContaining(position.x, position.y, 0, excludeTeam); 
+          i != -1; 
+          i = store.firstContaining(position.x, position.y, i + 1, excludeTeam))
+      {
+        Unit u = store.unit(i);
+        if (u != owner && !alreadyHit.contains(u))
+        {
+          u.receiveAttack(this, attackStrength, velocity.scaledInto(inertia, knockback));
+          remainingHits--;
+          alreadyHit.add(u);
+          break;
+        }
+      }
+      return;
+    }
+    
+    List<Unit> units = battle.units();
+    for (int i = 0; i < units.size(); i++)
     {
+      Unit u = units.get(i);
       if (u.isActive() && u != owner && !alreadyHit.contains(u) 
           && (friendlyFire || u.team() != team) 
           && u.hitbox().containsAbsPoint(position))
       {
         // attack
-        u.receiveAttack(this, attackStrength, velocity.scaledBy(inertia));
+        u.receiveAttack(this, attackStrength, velocity.scaledInto(inertia, knockback));
         remainingHits--;
         alreadyHit.add(u);
         break;
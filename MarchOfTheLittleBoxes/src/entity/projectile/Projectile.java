@@ -3,10 +3,14 @@ package entity.projectile;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.Ellipse2D;
+import java.util.List;
 
 import entity.Entity;
 import entity.unit.Unit;
 import mechanics.Battle;
+import mechanics.SnapshotReader;
+import mechanics.SnapshotWriter;
+import mechanics.UnitStore;
 import mechanics.Vector2D;
 
 /**
@@ -32,24 +36,63 @@ public class Projectile extends Entity
   protected double radius = 3;
   protected Unit owner;
   protected boolean blockable = true; // for ShieldBearers
+  protected ProjectilePool<?> pool; // null if not pooled
+  protected final Vector2D knockback = new Vector2D(); // reused for each hit
 
   /**
-   * Sets fields. Ensures that this unit's position isn't inside the parent.
+   * Creates an inactive projectile, to be set up later with {@code init()}.
+   * Used by {@code ProjectilePool}.
+   */
+  public Projectile(Battle b)
+  {
+    super(-1, b, new Vector2D(), new Vector2D(), false);
+  }
+
+  /**
+   * Creates a projectile that is ready to be added to the battle.
+   * The given vectors are copied.
    */
   public Projectile(Battle b, Unit parent, Vector2D pos, Vector2D vel,
     double power, double inert, int t, boolean ff, int durability)
   {
-    super(t, b, pos, vel, true);
+    this(b);
+    init(parent, pos, vel, power, inert, t, ff, durability);
+  }
+
+  /**
+   * Sets fields and activates this projectile. Position and velocity
+   * are copied from the given vectors, so they may be reused by the caller.
+   * Ensures that this projectile's position isn't inside the parent.
+   */
+  public void init(Unit parent, Vector2D pos, Vector2D vel,
+    double power, double inert, int t, boolean ff, int durability)
+  {
+    team = t;
+    position.set(pos);
+    velocity.set(vel);
     attackStrength = power;
     inertia = inert;
     friendlyFire = ff;
     remainingHits = durability;
     owner = parent;
+    setActive(true);
     
     if (owner != null && velocity.length() > 0)
       while (owner.hitbox().containsAbsPoint(position))
         move();
   }
+  
+  /**
+   * Called by the {@code battle} once this projectile has been removed.
+   * Deactivates it and, if it came from a pool, returns it there for reuse.
+   */
+  public void release()
+  {
+    setActive(false);
+    owner = null;
+    if (pool != null)
+      pool.release(this);
+  }
 
   /**
    * Inactive projectiles will be removed automatically by the {@code battle}.
@@ -77,23 +120,68 @@ public class Projectile extends Entity
    */
   protected void checkHit()
   {
-    for (Unit u : battle.units())
+    UnitStore store = battle.store();
+    if (store != null)
     {
+      int i = store.firstContaining(position.x, position.y, 0, 
+          friendlyFire? -1 : team);
+      if (i != -1 && store.unit(i).receiveAttack(
+          this, attackStrength, velocity.scaledInto(inertia, knockback)))
+        remainingHits--;
+      return;
+    }
+    
+    // indexed rather than a for-each, which would create an iterator
+    List<Unit> units = battle.units();
+    for (int i = 0; i < units.size(); i++)
+    {
+      Unit u = units.get(i);
       if (u.isActive() && (friendlyFire || u.team() != team)
           && u.hitbox().containsAbsPoint(position))
       {
         // attack
-        if (u.receiveAttack(this, attackStrength, velocity.scaledBy(inertia)))
+        if (u.receiveAttack(this, attackStrength, velocity.scaledInto(inertia, knockback)))
           remainingHits--;
         break;
       }
     }
   }
 
+  /**
+   * The projectile must already belong to the right pool, if any;
+   * only what {@code init()} sets, and what changes after, is saved.
+   */
+  @Override
+  public void save(SnapshotWriter out)
+  {
+    super.save(out);
+    out.putDouble(attackStrength);
+    out.putDouble(inertia);
+    out.putBoolean(friendlyFire);
+    out.putInt(remainingHits);
+    out.putUnit(owner);
+  }
+  
+  @Override
+  public void load(SnapshotReader in)
+  {
+    super.load(in);
+    attackStrength = in.getDouble();
+    inertia = in.getDouble();
+    friendlyFire = in.getBoolean();
+    remainingHits = in.getInt();
+    owner = in.getUnit();
+  }
+
   public boolean isBlockable()
   {
     return blockable;
   }
+  
+  public Unit owner()
+  {
+    return owner;
+  }
 
   @Override
   public String toString()
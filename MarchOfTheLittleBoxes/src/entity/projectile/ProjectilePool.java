@@ -0,0 +1,74 @@
+package entity.projectile;
+
+import java.util.ArrayDeque;
+import java.util.function.Function;
+
+import mechanics.Battle;
+
+/**
+ * File: src/entity/projectile/ProjectilePool.java
+ * <P>
+ * Keeps spent projectiles of one type so they can be reused instead of
+ * being allocated again on every shot. Each {@code Battle} owns one pool
+ * per projectile type. Projectiles taken from a pool must be set up with
+ * their {@code init()} method before being added to the battle; the battle
+ * hands them back automatically once they become inactive.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public class ProjectilePool<T extends Projectile>
+{
+  private Battle battle;
+  private Function<Battle, T> factory;
+  private ArrayDeque<T> free;
+  
+  /**
+   * @param factory Creates a new, inactive projectile for the given battle,
+   *                e.g. {@code Cannonball::new}.
+   */
+  public ProjectilePool(Battle battle, Function<Battle, T> factory)
+  {
+    this.battle = battle;
+    this.factory = factory;
+    free = new ArrayDeque<T>();
+  }
+  
+  /**
+   * @return A spent projectile if one is available, otherwise a new one.
+   * Either way, it still has to be initialized.
+   */
+  public T obtain()
+  {
+    T p = free.pollFirst();
+    if (p == null)
+    {
+      p = factory.apply(battle);
+      p.pool = this;
+    }
+    return p;
+  }
+  
+  /**
+   * Only called by {@code Projectile.release()}, which guarantees
+   * that p was created by this pool.
+   */
+  @SuppressWarnings("unchecked")
+  void release(Projectile p)
+  {
+    free.addFirst((T) p);
+  }
+  
+  /**
+   * @return How many spent projectiles are waiting to be reused.
+   */
+  public int available()
+  {
+    return free.size();
+  }
+  
+  public void clear()
+  {
+    free.clear();
+  }
+}
@@ -20,17 +20,19 @@ import mechanics.Vector2D;
 public class Cannon extends RangedUnit
 {
 
+  public static final UnitStats STATS = RangedUnit.STATS.modify()
+      .attackStrength(50)
+      .knockback(75)
+      .projectileSpeed(6)
+      .attackInterval(200)
+      
+      .standoffDistance(400)
+      .topSpeed(0.5)
+      .build();
+
   public Cannon(Battle b, int t, Vector2D pos, double ang)
   {
-    super(b, t, pos, ang);
-    
-    attackStrength = 50;
-    knockback = 75;
-    projVel = 6;
-    attackInterval = 200;
-    
-    standoffDistance = 400;
-    topSpeed = 0.5;
+    super(b, t, pos, ang, STATS);
   }
   
   @Override
@@ -39,11 +41,13 @@ public class Cannon extends RangedUnit
     if (nearestTarget == null)
       return;
     
-    Vector2D projVelVec = new Vector2D(projVel, 0);
-    projVelVec.rotateTo(hitbox.angle);
+    aim.set(stats.projectileSpeed, 0);
+    aim.rotateBy(hitbox.cos(), hitbox.sin());
     
-    battle.add(new Cannonball(battle, this, new Vector2D(position), projVelVec, 
-        attackStrength, knockback/projVel, team, true, 10));
+    Cannonball c = battle.cannonballPool().obtain();
+    c.init(this, position, aim, stats.attackStrength, 
+        stats.knockback/stats.projectileSpeed, team, true, 10);
+    battle.add(c);
   }
 
   @Override
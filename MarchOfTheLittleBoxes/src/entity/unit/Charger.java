@@ -18,21 +18,22 @@ import mechanics.Vector2D;
  */
 public class Charger extends MeleeUnit
 {
+  public static final UnitStats STATS = MeleeUnit.STATS.modify()
+      .topSpeed(6)
+      .rotationSpeed(0.3)
+      
+      .attackInterval(1)
+      .attackStrength(1)
+      .knockback(3)
+      .inertia(30)
+      
+      .particleRate(0.6)
+      .particleDuration(100)
+      .build();
 
   public Charger(Battle b, int team, Vector2D pos, double ang)
   {
-    super(b, team, pos, ang);
-    
-    topSpeed = 6;
-    rotationSpeed = 0.3;
-    
-    attackInterval = 1;
-    attackStrength = 1;
-    knockback = 3;
-    inertia = 30;
-    
-    particleRate = 0.6;
-    particleDuration = 100;
+    super(b, team, pos, ang, STATS);
   }
   
   @Override
@@ -42,7 +43,7 @@ public class Charger extends MeleeUnit
     double triangleSize = 5;
     
     Vector2D vec = new Vector2D(triangleSize,0);
-    vec.rotateTo(hitbox.angle);
+    vec.rotateBy(hitbox.cos(), hitbox.sin());
     
     Path2D.Double triangle = new Path2D.Double();
     triangle.moveTo(position.x + vec.x, position.y + vec.y);
@@ -13,26 +13,23 @@ import mechanics.Vector2D;
  */
 public class Juggernaut extends MeleeUnit
 {
+  public static final UnitStats STATS = MeleeUnit.STATS.modify()
+      .hitboxSize(20, 20)
+      
+      .attackStrength(40)
+      .attackReach(25)
+      .knockback(60)
+      
+      .baseHealth(600)
+      .inertia(100)
+      .topSpeed(0.5)
+      .acceleration(0.05)
+      .rotationSpeed(0.03)
+      .build();
 
   public Juggernaut(Battle b, int team, Vector2D pos, double ang)
   {
-    super(b, team, pos, ang);
-    
-    hitbox.xMin = -20;
-    hitbox.xMax = 20;
-    hitbox.yMin = -20;
-    hitbox.yMax = 20;
-    
-    attackStrength = 40;
-    attackPoint = new Vector2D(25, 0);
-    updateAttackPoint();
-    knockback = 60;
-    
-    baseHealth = 600;
-    inertia = 100;
-    topSpeed = 0.5;
-    acceleration = 0.05;
-    rotationSpeed = 0.03;
+    super(b, team, pos, ang, STATS);
   }
   
   @Override
@@ -6,6 +6,8 @@ import java.awt.geom.Path2D;
 
 import entity.projectile.LaserBeam;
 import mechanics.Battle;
+import mechanics.SnapshotReader;
+import mechanics.SnapshotWriter;
 import mechanics.Vector2D;
 
 /**
@@ -21,23 +23,24 @@ import mechanics.Vector2D;
  */
 public class LaserUnit extends RangedUnit
 {
+  public static final UnitStats STATS = RangedUnit.STATS.modify()
+      .topSpeed(0.5)
+      .standoffDistance(600)
+      .rotationSpeed(0.03)
+      
+      .baseHealth(30)
+      
+      .projectileSpeed(1)
+      .attackStrength(100)
+      .knockback(50)
+      .attackInterval(200)
+      .build();
+  
   protected LaserBeam beam;
   
   public LaserUnit(Battle b, int t, Vector2D pos, double ang)
   {
-    super(b, t, pos, ang);
-    
-    topSpeed = 0.5;
-    standoffDistance = 600;
-    rotationSpeed = 0.03;
-    
-    baseHealth = 30;
-    
-    projVel = 1;
-    attackStrength = 100;
-    knockback = 50;
-    attackInterval = 200;
-    
+    super(b, t, pos, ang, STATS);
   }
   
   @Override
@@ -46,11 +49,12 @@ public class LaserUnit extends RangedUnit
     if (nearestTarget == null)
       return;
     
-    Vector2D projVelVec = new Vector2D(projVel, 0);
-    projVelVec.rotateTo(hitbox.angle);
+    aim.set(stats.projectileSpeed, 0);
+    aim.rotateBy(hitbox.cos(), hitbox.sin());
     
-    beam = new LaserBeam(battle, this, position, projVelVec, 
-        attackStrength, knockback/projVel, team, false, -1);
+    beam = battle.laserBeamPool().obtain();
+    beam.init(this, position, aim, stats.attackStrength, 
+        stats.knockback/stats.projectileSpeed, team, false, -1);
     battle.add(beam);
     
     velocity.set(0, 0);
@@ -59,18 +63,37 @@ public class LaserUnit extends RangedUnit
   @Override
   public double idealSpeed()
   {
-    if (beam != null && beam.isActive())
+    // the beam may have been released and reused by another unit by now
+    if (beam != null && beam.isActive() && beam.owner() == this)
       return 0;
     else
       return super.idealSpeed();
   }
   
+  /**
+   * A beam that has been spent is saved as none, which 
+   * {@code idealSpeed()} treats the same.
+   */
+  @Override
+  public void save(SnapshotWriter out)
+  {
+    super.save(out);
+    out.putProjectile(beam);
+  }
+  
+  @Override
+  public void load(SnapshotReader in)
+  {
+    super.load(in);
+    beam = (LaserBeam) in.getProjectile();
+  }
+  
   @Override
   protected void renderSpecial(Graphics2D g)
   {
     // facing is "north"
     Vector2D north = new Vector2D(1, 0);
-    north.rotateTo(hitbox.angle);
+    north.rotateBy(hitbox.cos(), hitbox.sin());
     north.scaleTo(3);
     Vector2D east = new Vector2D(north);
     east.scaleTo(3);
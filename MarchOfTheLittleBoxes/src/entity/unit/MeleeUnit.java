@@ -5,6 +5,9 @@ import java.awt.Graphics2D;
 import java.util.List;
 
 import mechanics.Battle;
+import mechanics.SnapshotReader;
+import mechanics.SnapshotWriter;
+import mechanics.UnitStore;
 import mechanics.Vector2D;
 
 /**
@@ -18,8 +21,13 @@ import mechanics.Vector2D;
  */
 public class MeleeUnit extends Unit
 {
+  public static final UnitStats STATS = UnitStats.DEFAULT.modify()
+      .attackStrength(20)
+      .knockback(20)
+      .build();
 
-  Vector2D attackPoint, absAttackPoint;
+  Vector2D absAttackPoint;
+  private final Vector2D knockback2D = new Vector2D(); // reused for each attack
   
   /**
    * IMPORTANT: CALL {@code resurrect()} AFTERWARD! 
@@ -28,12 +36,13 @@ public class MeleeUnit extends Unit
    */
   public MeleeUnit(Battle b, int team, Vector2D pos, double ang)
   {
-    super(b, team, pos, ang);
-    
-    attackStrength = 20;
-    knockback = 20;
+    this(b, team, pos, ang, STATS);
+  }
+  
+  protected MeleeUnit(Battle b, int team, Vector2D pos, double ang, UnitStats stats)
+  {
+    super(b, team, pos, ang, stats);
     
-    attackPoint = new Vector2D(15, 0);
     updateAttackPoint();
   }
   
@@ -48,15 +57,29 @@ public class MeleeUnit extends Unit
   public void attack()
   {
 //    System.out.println(this + ": Attempting attack, tick " + battle.tick());
-    Vector2D knockback2D = new Vector2D(knockback, 0);
-    knockback2D.rotateTo(hitbox.angle);
+    knockback2D.set(stats.knockback * hitbox.cos(), 
+        stats.knockback * hitbox.sin());
     
-    for (Unit u : battle.units())
+    UnitStore store = store();
+    if (store != null)
     {
+      double x = absAttackPoint.x, y = absAttackPoint.y;
+      for (int i = store.firstContaining(x, y, 0, team); i != -1;
+          i = store.firstContaining(x, y, i + 1, team))
+      {
+        store.unit(i).receiveAttack(this, stats.attackStrength, knockback2D);
+      }
+      return;
+    }
+    
+    List<Unit> units = battle.units();
+    for (int i = 0; i < units.size(); i++)
+    {
+      Unit u = units.get(i);
       if (u.team() != team && u.isActive()
           && u.hitbox.containsAbsPoint(absAttackPoint))
       {
-        u.receiveAttack(this, attackStrength, knockback2D);
+        u.receiveAttack(this, stats.attackStrength, knockback2D);
       }
     }
   }
@@ -66,14 +89,30 @@ public class MeleeUnit extends Unit
    */
   protected void updateAttackPoint()
   {
-    Vector2D result = new Vector2D(attackPoint);
-    result.rotateTo(hitbox.angle);
-    result.add(position);
-    
     if (absAttackPoint == null)
-      absAttackPoint = result;
-    else
-      absAttackPoint.set(result);
+      absAttackPoint = new Vector2D();
+    
+    absAttackPoint.set(stats.attackReach, 0);
+    absAttackPoint.rotateBy(hitbox.cos(), hitbox.sin());
+    absAttackPoint.add(position);
+  }
+  
+  /**
+   * The attack point is saved rather than recalculated, since collisions
+   * move units after it was last updated.
+   */
+  @Override
+  public void save(SnapshotWriter out)
+  {
+    super.save(out);
+    out.putVector(absAttackPoint);
+  }
+  
+  @Override
+  public void load(SnapshotReader in)
+  {
+    super.load(in);
+    in.getVector(absAttackPoint);
   }
   
   @Override
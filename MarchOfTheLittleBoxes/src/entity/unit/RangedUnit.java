@@ -23,15 +23,24 @@ import mechanics.Vector2D;
  */
 public class RangedUnit extends Unit
 {
-  protected double projVel = 2;
-  protected double standoffDistance = 200;
+  public static final UnitStats STATS = UnitStats.DEFAULT.modify()
+      .attackStrength(10)
+      .knockback(10)
+      .topSpeed(0.7)
+      .projectileSpeed(2)
+      .standoffDistance(200)
+      .build();
+  
+  protected Vector2D aim = new Vector2D(); // reused for projectile velocity
   
   public RangedUnit(Battle b, int t, Vector2D pos, double ang)
   {
-    super(b, t, pos, ang);
-    attackStrength = 10;
-    knockback = 10;
-    topSpeed = 0.7;
+    this(b, t, pos, ang, STATS);
+  }
+  
+  protected RangedUnit(Battle b, int t, Vector2D pos, double ang, UnitStats stats)
+  {
+    super(b, t, pos, ang, stats);
   }
 
   @Override
@@ -40,11 +49,12 @@ public class RangedUnit extends Unit
     if (nearestTarget == null)
       return;
     
-    Vector2D projVelVec = new Vector2D(projVel, 0);
-    projVelVec.rotateTo(hitbox.angle);
+    aim.set(stats.projectileSpeed, 0);
+    aim.rotateBy(hitbox.cos(), hitbox.sin());
     
-    Projectile p = new Projectile(battle, this, new Vector2D(position), projVelVec, 
-        attackStrength, knockback/projVel, team, true, 1);
+    Projectile p = battle.projectilePool().obtain();
+    p.init(this, position, aim, stats.attackStrength, 
+        stats.knockback/stats.projectileSpeed, team, true, 1);
     battle.add(p);
   }
   
@@ -57,11 +67,11 @@ public class RangedUnit extends Unit
     }
     else
     {
-      double dist = nearestTarget.position().minus(this.position).length();
-      if (dist < standoffDistance)
-        return -topSpeed;
+      double distSq = nearestTarget.position().distanceSq(this.position);
+      if (distSq < stats.standoffDistance * stats.standoffDistance)
+        return -stats.topSpeed;
       else
-        return topSpeed;
+        return stats.topSpeed;
     }
   }
   
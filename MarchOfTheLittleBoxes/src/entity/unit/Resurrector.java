@@ -8,7 +8,9 @@ import java.util.List;
 import entity.Entity;
 import entity.Particle;
 import mechanics.Battle;
+import mechanics.BattleRandom;
 import mechanics.Vector2D;
+import mechanics.metrics.jfr.FlightEvents;
 
 /**
  * File: src/entity/unit/Resurrector.java
@@ -22,12 +24,14 @@ import mechanics.Vector2D;
 public class Resurrector extends Unit
 {
 
+  public static final UnitStats STATS = UnitStats.DEFAULT.modify()
+      .topSpeed(0.2)
+      .rotationSpeed(0.01)
+      .build();
+
   public Resurrector(Battle b, int t, Vector2D pos, double ang)
   {
-    super(b, t, pos, ang);
-    
-    topSpeed = 0.2;
-    rotationSpeed = 0.01;
+    super(b, t, pos, ang, STATS);
   }
 
   @Override
@@ -36,22 +40,46 @@ public class Resurrector extends Unit
   @Override
   public boolean receiveAttack(Entity source, double attackValue, Vector2D knockback)
   {
-    for (Unit u : battle.units())
-      if (u.team() == team && !u.isActive() && !(u instanceof Resurrector))
+    Object event = FlightEvents.beginResurrection();
+    int count = 0;
+    synchronized (battle.units())
+    {
+      List<Unit> fallen = battle.fallenUnits(team);
+      for (int i = 0; i < fallen.size(); i++)
       {
-        u.resurrect();
-        for (int i = 0; i < 40; i++)
-        {
-          battle.add(new Particle(
-              battle, u.team(), new Vector2D(u.hitbox().randomInteriorPos()), 
-              u.velocity().plus(Vector2D.randomDirection(1)), 3, -3.0/100));
-        }
+        Unit u = fallen.get(i);
+        boolean wasActive = u.isActive();
+        resurrectTeammate(u);
+        if (!wasActive && u.isActive())
+          count++;
       }
+    }
+    FlightEvents.endResurrection(event, "Resurrector", team, count);
 
-    setActive(false);
+    health = 0;
+    checkHealth();
     return true;
   }
 
+  private void resurrectTeammate(Unit u)
+  {
+    if (u.team() == team && !u.isActive() && !(u instanceof Resurrector))
+    {
+      u.resurrect();
+      if (!battle.particlesEnabled())
+        return; // they would never be seen
+      
+      BattleRandom random = battle.particleRandom();
+      for (int i = 0; i < 40; i++)
+      {
+        Vector2D pos = u.hitbox().randomInteriorPos(random);
+        Vector2D vel = Vector2D.randomDirection(1, random);
+        vel.add(u.velocity());
+        battle.add(new Particle(battle, u.team(), pos, vel, 3, -3.0/100));
+      }
+    }
+  }
+
   @Override
   protected void renderSpecial(Graphics2D g)
   {
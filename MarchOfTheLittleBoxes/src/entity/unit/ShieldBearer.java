@@ -22,20 +22,24 @@ import mechanics.Vector2D;
  */
 public class ShieldBearer extends MeleeUnit
 {
-  protected double RICOCHET_VARIANCE = 0.1;
+  public static final UnitStats STATS = MeleeUnit.STATS.modify()
+      .hitboxSize(10, 20)
+      
+      .baseHealth(200)
+      .inertia(70)
+      .topSpeed(0.7)
+      .acceleration(0.07)
+      .rotationSpeed(0.01)
+      .build();
+  
+  protected static final double RICOCHET_VARIANCE = 0.1;
+  
+  // reused for each blocked hit
+  private final Vector2D facing = new Vector2D(), reflected = new Vector2D();
   
   public ShieldBearer(Battle b, int t, Vector2D pos, double ang)
   {
-    super(b, t, pos, ang);
-
-    hitbox.yMin = -20;
-    hitbox.yMax = 20;
-    
-    baseHealth = 200;
-    inertia = 70;
-    topSpeed = 0.7;
-    acceleration = 0.07;
-    rotationSpeed = 0.01;
+    super(b, t, pos, ang, STATS);
   }
   
   @Override
@@ -47,8 +51,8 @@ public class ShieldBearer extends MeleeUnit
       Projectile proj = (Projectile) source;
       if (proj.isBlockable())
       {
-        Vector2D facing = new Vector2D(1, 0);
-        facing.rotateTo(hitbox.angle);
+        facing.set(1, 0);
+        facing.rotateBy(hitbox.cos(), hitbox.sin());
         facing.scaleBy(-1);
         
         if (Math.abs(proj.velocity().angle() - facing.angle()) < Math.PI * 1/4)
@@ -56,13 +60,14 @@ public class ShieldBearer extends MeleeUnit
           receiveImpulse(knockback);
           
           // reflect
-          Vector2D vel = new Vector2D(proj.velocity());
+          Vector2D vel = reflected;
+          vel.set(proj.velocity());
           double ang = vel.angle() - hitbox.angle;
           vel.rotateBy(-2*ang);
           vel.scaleBy(-1);
           
           // add some randomness
-          vel.rotateBy(Math.random() * RICOCHET_VARIANCE);
+          vel.rotateBy(battle.random().nextDouble() * RICOCHET_VARIANCE);
           
           proj.velocity().set(vel);
           proj.move();
@@ -81,12 +86,12 @@ public class ShieldBearer extends MeleeUnit
     Path2D.Double line = new Path2D.Double();
     
     Vector2D start = new Vector2D( (2*hitbox.xMax + hitbox.xMin)/3, hitbox.yMin);
-    start.rotateBy(hitbox.angle);
+    start.rotateBy(hitbox.cos(), hitbox.sin());
     start.add(position);
     line.moveTo(start.x, start.y);
     
     Vector2D end = new Vector2D( (2*hitbox.xMax + hitbox.xMin)/3, hitbox.yMax);
-    end.rotateBy(hitbox.angle);
+    end.rotateBy(hitbox.cos(), hitbox.sin());
     end.add(position);
     line.lineTo(end.x, end.y);
     
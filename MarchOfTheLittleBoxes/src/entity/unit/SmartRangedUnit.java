@@ -5,7 +5,6 @@ import java.awt.Graphics2D;
 import java.awt.geom.Path2D;
 
 import entity.projectile.GuidedProjectile;
-import entity.projectile.Projectile;
 import mechanics.Battle;
 import mechanics.Vector2D;
 
@@ -20,12 +19,15 @@ import mechanics.Vector2D;
 public class SmartRangedUnit extends RangedUnit
 {
 
+  public static final UnitStats STATS = RangedUnit.STATS.modify()
+      .attackInterval(100)
+      .standoffDistance(400)
+      .projectileSpeed(3)
+      .build();
+
   public SmartRangedUnit(Battle b, int t, Vector2D pos, double ang)
   {
-    super(b, t, pos, ang);
-    attackInterval = 100;
-    standoffDistance = 400;
-    projVel = 3;
+    super(b, t, pos, ang, STATS);
   }
   
   @Override
@@ -34,11 +36,12 @@ public class SmartRangedUnit extends RangedUnit
     if (nearestTarget == null)
       return;
     
-    Vector2D projVelVec = new Vector2D(projVel, 0);
-    projVelVec.rotateTo(hitbox.angle);
+    aim.set(stats.projectileSpeed, 0);
+    aim.rotateBy(hitbox.cos(), hitbox.sin());
     
-    Projectile p = new GuidedProjectile(battle, this, new Vector2D(position), projVelVec, 
-        attackStrength, knockback/projVel, team, false, 1, nearestTarget);
+    GuidedProjectile p = battle.guidedProjectilePool().obtain();
+    p.init(this, position, aim, stats.attackStrength, 
+        stats.knockback/stats.projectileSpeed, team, false, 1, nearestTarget);
     
     battle.add(p);
   }
@@ -48,7 +51,7 @@ public class SmartRangedUnit extends RangedUnit
   {
     // facing is "north"
     Vector2D north = new Vector2D(1, 0);
-    north.rotateTo(hitbox.angle);
+    north.rotateBy(hitbox.cos(), hitbox.sin());
     north.scaleTo(4);
     Vector2D east = new Vector2D(north);
     east.scaleTo(2);
@@ -3,12 +3,18 @@ package entity.unit;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
+import java.util.List;
 
 import entity.Entity;
 import entity.Particle;
 import mechanics.Battle;
+import mechanics.BattleRandom;
 import mechanics.BoundingBox;
+import mechanics.SnapshotReader;
+import mechanics.SnapshotWriter;
+import mechanics.UnitStore;
 import mechanics.Vector2D;
+import mechanics.metrics.Phase;
 
 /**
  * File: src/entity/unit/Unit.java
@@ -27,26 +33,17 @@ public abstract class Unit extends Entity
   protected BoundingBox hitbox;
   
   protected Unit nearestTarget;
+  private boolean fallen; // moved out of the battle's active list
+  private int storeIndex = -1; // slot in the battle's UnitStore, if any
   
-  // stats
-  protected /*static*/ double
+  // shared by all units of the same type
+  protected final UnitStats stats;
   
-    inertia = 10,
-    acceleration = 0.1,
-    topSpeed = 1,
-    rotationSpeed = 0.1,
-    
-    baseHealth = 100,
-    attackStrength = 0,
-    knockback = 0,
-    
-    particleRate = 0.1, // per tick
-    particleDuration = 200,
-//    particleLimit = particleDuration * particleRate,
-    particleSpeed = 0.05,
-    particleSize = 3;
+  // reused for intermediate results, so updates don't create new vectors
+  private final Vector2D scratch = new Vector2D();
   
-  protected /*static*/ int attackInterval = 30;
+  // the first attack comes within the default interval, whatever the type's
+  private static final int FIRST_ATTACK_WITHIN = UnitStats.DEFAULT.attackInterval;
 
   // visual effects
 //  protected List<Particle> movementParticles;
@@ -58,20 +55,27 @@ public abstract class Unit extends Entity
    *  to avoid rendering before fully constructed. 
    *  
    *  If battle is supplied, this is added to it.
+   *  
+   *  @param stats The stats for this type of unit, usually its {@code STATS}.
    */
-  public Unit(Battle b, int t, Vector2D pos, double ang)
+  protected Unit(Battle b, int t, Vector2D pos, double ang, UnitStats stats)
   {
     super(t, b, new Vector2D(pos), new Vector2D(), false);
+    this.stats = stats;
     
 //    movementParticles = new ArrayList<Particle>();
 //    particleTime = 0;
     
+    health = stats.baseHealth;
+    hitbox = new BoundingBox(position, stats.halfLength, -stats.halfLength, 
+        stats.halfWidth, -stats.halfWidth, ang);
+    
     if (battle != null)
+    {
+      // initialize randomly; otherwise done when added to a battle
+      attackCooldown = battle.random().nextInt(FIRST_ATTACK_WITHIN);
       battle.add(this);
-    
-    health = baseHealth;
-    attackCooldown = (int) (Math.random() * attackInterval); // initialize randomly
-    hitbox = new BoundingBox(position, 10, -10, 10, -10, ang);
+    }
     
     if (battle != null)
     {
@@ -92,9 +96,13 @@ public abstract class Unit extends Entity
       return;
     }
     
+    boolean timed = battle.isTimingPhases();
+    long start = timed? System.nanoTime() : 0;
     checkHealth();
     
     findNearestTarget();
+    if (timed)
+      battle.addPhaseTime(Phase.TARGETING, System.nanoTime() - start);
     rotate();
     accelerate();
     move();
@@ -147,22 +155,26 @@ public abstract class Unit extends Entity
   
   protected void createMovtParticles()
   {
-    double particles = particleRate;
+    if (!battle.particlesEnabled())
+      return; // they would never be seen
+    
+    double particles = stats.particleRate;
     while (particles >= 1)
     {
       particles--;
       addParticle();
     }
     // now particles should be fractional or zero; handle this remaining portion
-    if (Math.random() < particles)
+    if (battle.particleRandom().nextDouble() < particles)
       addParticle();
   }
   
   private void addParticle()
   {
-    battle.add(new Particle(battle, -1, hitbox.randomInteriorPos(), 
-        Vector2D.randomDirection(particleSpeed), particleSize, 
-        -particleSize/particleDuration));
+    BattleRandom random = battle.particleRandom();
+    battle.add(new Particle(battle, -1, hitbox.randomInteriorPos(random), 
+        Vector2D.randomDirection(stats.particleSpeed, random), stats.particleSize, 
+        -stats.particleSize/stats.particleDuration));
   }
 
   /**
@@ -173,27 +185,63 @@ public abstract class Unit extends Entity
   {
     super.move();
     checkBorders();
+    syncStore();
   }
 
+  /**
+   * Deactivates this unit if it has run out of health, letting the
+   * battle know that it has fallen.
+   */
   protected void checkHealth()
   {
     if (health <= 0)
     {
 //      System.out.println(this + ": Going inactive");
-      setActive(false);
       health = 0;
+      if (isActive())
+      {
+        setActive(false);
+        syncStore();
+        if (battle != null)
+          battle.unitFell(this);
+      }
     }
   }
   
   public void checkCollision()
   {
-    for (Unit u : battle.units())
+    boolean timed = battle.isTimingPhases();
+    long start = timed? System.nanoTime() : 0;
+    
+    UnitStore store = store();
+    if (store != null)
+    {
+      // only do the full check on units whose hitboxes could be touching
+      for (int i = 0; i < store.size(); i++)
+      {
+        if (i != storeIndex && store.isActive(i)
+            && store.mayOverlap(storeIndex, i))
+        {
+          doCollision(store.unit(i));
+        }
+      }
+    }
+    else
     {
-      if(u.isActive() && !(u == this))
+      // indexed rather than a for-each, which would create an iterator
+      List<Unit> units = battle.units();
+      for (int i = 0; i < units.size(); i++)
       {
-        doCollision(u);
+        Unit u = units.get(i);
+        if(u.isActive() && !(u == this))
+        {
+          doCollision(u);
+        }
       }
     }
+    
+    if (timed)
+      battle.addPhaseTime(Phase.COLLISION, System.nanoTime() - start);
   }
   
   protected void doCollision(Unit other)
@@ -202,24 +250,26 @@ public abstract class Unit extends Entity
       return;
     
     Vector2D translation = BoundingBox
-        .calcCollisionTwoWay(this.hitbox, other.hitbox);
+        .calcCollisionTwoWay(this.hitbox, other.hitbox, scratch);
     
-    if (translation.length() == 0)
+    if (translation.x == 0 && translation.y == 0)
       return;
     
 //    System.out.println("Colliding units: " + this + "\n\tagainst: " + other
 //        + "\n\tCalculated translation: " + translation);
     
-    double totalInertia = this.inertia + other.inertia;
+    double totalInertia = this.stats.inertia + other.stats.inertia;
     
     // distribute the translation between the two units
-    this.position.add(translation.scaledBy(-this.inertia / totalInertia));
-    other.position.add(translation.scaledBy(other.inertia / totalInertia));
+    this.position.addScaled(translation, -this.stats.inertia / totalInertia);
+    other.position.addScaled(translation, other.stats.inertia / totalInertia);
     
 //    System.out.println("\tResults: " + this + "\n\t\t " + other);
     
     this.checkBorders();
     other.checkBorders();
+    this.syncStore();
+    other.syncStore();
   }
   
   protected void checkAttack()
@@ -228,7 +278,7 @@ public abstract class Unit extends Entity
     if (attackCooldown <= 0)
     {
       attack();
-      attackCooldown = attackInterval; // reset 
+      attackCooldown = stats.attackInterval; // reset 
     }
   }
   
@@ -241,27 +291,28 @@ public abstract class Unit extends Entity
   {    
     if (nearestTarget != null)
     {
-      double targetAngle = nearestTarget.position
-          .minus(this.position)
-          .angle();
+      double dx = nearestTarget.position.x - position.x;
+      double dy = nearestTarget.position.y - position.y;
+      if (dx == 0 && dy == 0)
+        return;
       
-//      System.out.println("targetAngle: " + targetAngle);
+      // compare the facing direction with the direction to the target
+      double c = hitbox.cos(), s = hitbox.sin();
+      double cross = c * dy - s * dx; // positive if target is counterclockwise
+      double dot = c * dx + s * dy;
       
-      double rotation;
-      
-      if (Math.abs(targetAngle - hitbox.angle)
-          <= rotationSpeed)
+      if (dot >= stats.rotationCos * Math.hypot(dx, dy))
       {
-        rotation = targetAngle - hitbox.angle;
+        // within one turn of the target
+        if (cross != 0 || dot < 0)
+          hitbox.setDirection(dx, dy);
       }
+      else if (cross >= 0)
+        hitbox.rotateBy(stats.rotationSpeed, stats.rotationCos, stats.rotationSin);
       else
-      {
-        rotation = Math.copySign(
-            rotationSpeed, targetAngle - hitbox.angle);
-      }
+        hitbox.rotateBy(-stats.rotationSpeed, stats.rotationCos, -stats.rotationSin);
       
-//      System.out.println(this + ": Rotating by " + rotation);
-      hitbox.rotateBy(rotation);
+      syncStore();
     }
   }
   
@@ -274,12 +325,13 @@ public abstract class Unit extends Entity
    */
   protected void accelerate()
   {
-    Vector2D idealVelocity = new Vector2D(idealSpeed(), 0);
-    idealVelocity.rotateBy(hitbox.angle);
+    double speed = idealSpeed();
+    Vector2D deltaV = scratch;
+    deltaV.set(speed * hitbox.cos() - velocity.x, 
+        speed * hitbox.sin() - velocity.y);
     
-    Vector2D deltaV = idealVelocity.minus(velocity);
-    if (deltaV.length() > acceleration)
-      deltaV.scaleTo(acceleration);
+    if (deltaV.length() > stats.acceleration)
+      deltaV.scaleTo(stats.acceleration);
     
     velocity.add(deltaV);
   }
@@ -291,12 +343,21 @@ public abstract class Unit extends Entity
    */
   protected void findNearestTarget()
   { 
+    UnitStore store = store();
+    if (store != null)
+    {
+      nearestTarget = store.nearestEnemy(storeIndex);
+      battle.setBanner((nearestTarget == null)? team : -1);
+      return;
+    }
 
     boolean targetsExist = false;
+    List<Unit> units = battle.units();
     
     // select a starting point, making sure it isn't someone from our team
-    for (Unit u : battle.units())
+    for (int i = 0; i < units.size(); i++)
     {
+      Unit u = units.get(i);
       if (u.team != team && u.isActive())
       {
         nearestTarget = u;
@@ -314,17 +375,14 @@ public abstract class Unit extends Entity
     battle.setBanner(-1);
     
     // if we get to this point, we know enemies exist. Find the closest
-    for (Unit u : battle.units())
+    for (int i = 0; i < units.size(); i++)
     {
+      Unit u = units.get(i);
       if (u.team != team // our own team doesn't count
           && u.isActive()
-          && u.position
-            .minus(this.position)
-            .length() // distance to u
+          && u.position.distanceSq(this.position) // distance to u
           < 
-          nearestTarget.position
-            .minus(this.position)
-            .length()) // distance to nearest
+          nearestTarget.position.distanceSq(this.position)) // distance to nearest
       {
         nearestTarget = u;
       }
@@ -342,6 +400,7 @@ public abstract class Unit extends Entity
     health -= attackValue;
 //    System.out.println(toString() + " Receiving attack of " + attackValue);
     checkHealth();
+    syncStore();
     receiveImpulse(knockback);
     return true;
   }
@@ -349,14 +408,71 @@ public abstract class Unit extends Entity
   public void receiveImpulse(Vector2D impulse)
   {
 //    System.out.println(toString() + " Receiving impulse of " + impulse);
-    velocity.add(impulse.scaledBy(1.0 / inertia));
+    velocity.addScaled(impulse, 1.0 / stats.inertia);
     move(); // maybe? Helps with weird collision thing
   }
   
   public void resurrect()
   {
-    health = baseHealth;
-    setActive(true);
+    health = stats.baseHealth;
+    if (!isActive())
+    {
+      setActive(true);
+      if (battle != null)
+        battle.revive(this);
+    }
+    syncStore();
+  }
+  
+  /**
+   * @return The battle's unit store, if the battle is using one and 
+   * this unit has a slot in it; otherwise null.
+   */
+  protected UnitStore store()
+  {
+    if (storeIndex < 0 || battle == null)
+      return null;
+    return battle.store();
+  }
+  
+  /**
+   * Copies this unit's state into its slot in the battle's unit store, if any.
+   */
+  protected void syncStore()
+  {
+    UnitStore store = store();
+    if (store != null)
+      store.sync(storeIndex, this);
+  }
+  
+  public int storeIndex()
+  {
+    return storeIndex;
+  }
+  
+  /**
+   * Only to be used by the {@code UnitStore}.
+   */
+  public void setStoreIndex(int i)
+  {
+    storeIndex = i;
+  }
+  
+  /**
+   * @return Whether the battle has moved this unit to its list of
+   * fallen units.
+   */
+  public boolean isFallen()
+  {
+    return fallen;
+  }
+  
+  /**
+   * Only to be used by the battle.
+   */
+  public void setFallen(boolean b)
+  {
+    fallen = b;
   }
 
   public void setHealth(double h)
@@ -370,7 +486,7 @@ public abstract class Unit extends Entity
    */
   protected double idealSpeed()
   {
-    return (nearestTarget == null)? 0 : topSpeed;
+    return (nearestTarget == null)? 0 : stats.topSpeed;
   }
   
   public BoundingBox hitbox()
@@ -383,6 +499,16 @@ public abstract class Unit extends Entity
     return health;
   }
   
+  public int attackCooldown()
+  {
+    return attackCooldown;
+  }
+  
+  public UnitStats stats()
+  {
+    return stats;
+  }
+  
   public String toString()
   {
     return getClass().getName() + "["
@@ -427,15 +553,56 @@ public abstract class Unit extends Entity
   public void addBattle(Battle b)
   {
     this.battle = b;
+    attackCooldown = b.random().nextInt(FIRST_ATTACK_WITHIN);
     b.add(this);
     resurrect();
     findNearestTarget();
   }
   
+  /**
+   * Sets this.battle to b and brings this to full health, without 
+   * adding this to b or looking for a target, for {@code Battle.addAll()}.
+   * The target is found on the unit's first tick.
+   */
+  public void joinBattle(Battle b)
+  {
+    this.battle = b;
+    attackCooldown = b.random().nextInt(FIRST_ATTACK_WITHIN);
+    health = stats.baseHealth;
+    setActive(true);
+  }
+  
   @Override
   public void checkBorders()
   {
-    position.add(battle.borders().calcContainment(hitbox));
+    position.add(battle.borders().calcContainment(hitbox, scratch));
+  }
+  
+  @Override
+  public void save(SnapshotWriter out)
+  {
+    super.save(out);
+    out.putDouble(health);
+    out.putInt(attackCooldown);
+    hitbox.save(out);
+    out.putUnit(nearestTarget);
+    out.putBoolean(fallen);
+  }
+  
+  /**
+   * The unit is left without a slot in any {@code UnitStore}; the battle 
+   * gives it one at the start of the next tick, if it's using one.
+   */
+  @Override
+  public void load(SnapshotReader in)
+  {
+    super.load(in);
+    health = in.getDouble();
+    attackCooldown = in.getInt();
+    hitbox.load(in);
+    nearestTarget = in.getUnit();
+    fallen = in.getBoolean();
+    storeIndex = -1;
   }
   
   public String type()
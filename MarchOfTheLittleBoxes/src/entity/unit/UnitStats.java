@@ -0,0 +1,253 @@
+package entity.unit;
+
+/**
+ * File: src/entity/unit/UnitStats.java
+ * <P>
+ * The fixed statistics of a type of unit, such as speed, health and
+ * attack strength. These never change during a battle, so a single
+ * instance is shared by every unit of the same type; each type keeps
+ * its own as a {@code STATS} constant. Only state that actually changes,
+ * such as health and position, is kept in the units themselves.
+ * <P>
+ * Instances can't be modified. To describe a new type, start from
+ * the stats of an existing one with {@code modify()}.
+ *
+ * @author Samuel Tan
+ *
+ */
+public final class UnitStats
+{
+  /**
+   * The stats that every unit type starts from.
+   */
+  public static final UnitStats DEFAULT = new Builder().build();
+
+  public final double
+
+    inertia,
+    acceleration,
+    topSpeed,
+    rotationSpeed, // rad/tick
+
+    baseHealth,
+    attackStrength,
+    knockback,
+
+    particleRate, // per tick
+    particleDuration,
+    particleSpeed,
+    particleSize,
+
+    halfLength, // hitbox size, along the direction the unit faces
+    halfWidth,
+
+    attackReach, // for melee units: distance from center to attack point
+    projectileSpeed, // for ranged units
+    standoffDistance;
+
+  public final int attackInterval;
+  
+  /**
+   * Cosine and sine of {@code rotationSpeed}, so units can turn 
+   * without calling trig functions.
+   */
+  public final double rotationCos, rotationSin;
+
+  private UnitStats(Builder b)
+  {
+    inertia = b.inertia;
+    acceleration = b.acceleration;
+    topSpeed = b.topSpeed;
+    rotationSpeed = b.rotationSpeed;
+
+    baseHealth = b.baseHealth;
+    attackStrength = b.attackStrength;
+    knockback = b.knockback;
+
+    particleRate = b.particleRate;
+    particleDuration = b.particleDuration;
+    particleSpeed = b.particleSpeed;
+    particleSize = b.particleSize;
+
+    halfLength = b.halfLength;
+    halfWidth = b.halfWidth;
+
+    attackReach = b.attackReach;
+    projectileSpeed = b.projectileSpeed;
+    standoffDistance = b.standoffDistance;
+
+    attackInterval = b.attackInterval;
+    
+    rotationCos = Math.cos(rotationSpeed);
+    rotationSin = Math.sin(rotationSpeed);
+  }
+
+  /**
+   * @return A builder that starts out with a copy of these stats.
+   */
+  public Builder modify()
+  {
+    Builder b = new Builder();
+
+    b.inertia = inertia;
+    b.acceleration = acceleration;
+    b.topSpeed = topSpeed;
+    b.rotationSpeed = rotationSpeed;
+
+    b.baseHealth = baseHealth;
+    b.attackStrength = attackStrength;
+    b.knockback = knockback;
+
+    b.particleRate = particleRate;
+    b.particleDuration = particleDuration;
+    b.particleSpeed = particleSpeed;
+    b.particleSize = particleSize;
+
+    b.halfLength = halfLength;
+    b.halfWidth = halfWidth;
+
+    b.attackReach = attackReach;
+    b.projectileSpeed = projectileSpeed;
+    b.standoffDistance = standoffDistance;
+
+    b.attackInterval = attackInterval;
+    return b;
+  }
+
+  /**
+   * Collects values for a new {@code UnitStats}.
+   * The initial values are those of {@code UnitStats.DEFAULT}.
+   */
+  public static class Builder
+  {
+    private double
+
+      inertia = 10,
+      acceleration = 0.1,
+      topSpeed = 1,
+      rotationSpeed = 0.1,
+
+      baseHealth = 100,
+      attackStrength = 0,
+      knockback = 0,
+
+      particleRate = 0.1,
+      particleDuration = 200,
+      particleSpeed = 0.05,
+      particleSize = 3,
+
+      halfLength = 10,
+      halfWidth = 10,
+
+      attackReach = 15,
+      projectileSpeed = 2,
+      standoffDistance = 200;
+
+    private int attackInterval = 30;
+
+    public Builder inertia(double d)
+    {
+      inertia = d;
+      return this;
+    }
+
+    public Builder acceleration(double d)
+    {
+      acceleration = d;
+      return this;
+    }
+
+    public Builder topSpeed(double d)
+    {
+      topSpeed = d;
+      return this;
+    }
+
+    public Builder rotationSpeed(double d)
+    {
+      rotationSpeed = d;
+      return this;
+    }
+
+    public Builder baseHealth(double d)
+    {
+      baseHealth = d;
+      return this;
+    }
+
+    public Builder attackStrength(double d)
+    {
+      attackStrength = d;
+      return this;
+    }
+
+    public Builder knockback(double d)
+    {
+      knockback = d;
+      return this;
+    }
+
+    public Builder particleRate(double d)
+    {
+      particleRate = d;
+      return this;
+    }
+
+    public Builder particleDuration(double d)
+    {
+      particleDuration = d;
+      return this;
+    }
+
+    public Builder particleSpeed(double d)
+    {
+      particleSpeed = d;
+      return this;
+    }
+
+    public Builder particleSize(double d)
+    {
+      particleSize = d;
+      return this;
+    }
+
+    /**
+     * Half the size of the hitbox, along and across the facing direction.
+     */
+    public Builder hitboxSize(double halfLength, double halfWidth)
+    {
+      this.halfLength = halfLength;
+      this.halfWidth = halfWidth;
+      return this;
+    }
+
+    public Builder attackReach(double d)
+    {
+      attackReach = d;
+      return this;
+    }
+
+    public Builder projectileSpeed(double d)
+    {
+      projectileSpeed = d;
+      return this;
+    }
+
+    public Builder standoffDistance(double d)
+    {
+      standoffDistance = d;
+      return this;
+    }
+
+    public Builder attackInterval(int i)
+    {
+      attackInterval = i;
+      return this;
+    }
+
+    public UnitStats build()
+    {
+      return new UnitStats(this);
+    }
+  }
+}
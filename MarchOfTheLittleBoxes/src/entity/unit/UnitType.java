@@ -0,0 +1,97 @@
+package entity.unit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import mechanics.Battle;
+import mechanics.Vector2D;
+
+/**
+ * File: src/entity/unit/UnitType.java
+ * <P>
+ * Every type of unit, by the name its {@code type()} returns, with
+ * its stats and the constructor that creates it. All unit types must
+ * be listed here.
+ *
+ * @author Samuel Tan
+ *
+ */
+public enum UnitType
+{
+  MELEE_UNIT("Melee Unit", MeleeUnit.STATS, MeleeUnit::new),
+  JUGGERNAUT("Juggernaut", Juggernaut.STATS, Juggernaut::new),
+  RANGED_UNIT("Ranged Unit", RangedUnit.STATS, RangedUnit::new),
+  SMART_RANGED_UNIT("Smart Ranged Unit", SmartRangedUnit.STATS, SmartRangedUnit::new),
+  LASER_UNIT("Laser Unit", LaserUnit.STATS, LaserUnit::new),
+  CANNON("Cannon", Cannon.STATS, Cannon::new),
+  SHIELD_BEARER("Shield Bearer", ShieldBearer.STATS, ShieldBearer::new),
+  CHARGER("Charger", Charger.STATS, Charger::new),
+  RESURRECTOR("Resurrector", Resurrector.STATS, Resurrector::new);
+
+  /**
+   * Creates a unit of one type, as its constructor does.
+   */
+  public interface Factory
+  {
+    Unit create(Battle b, int team, Vector2D pos, double ang);
+  }
+
+  private static final Map<String, UnitType> BY_NAME = new HashMap<String, UnitType>();
+  static
+  {
+    for (UnitType t : values())
+      BY_NAME.put(t.name, t);
+  }
+
+  private final String name;
+  private final UnitStats stats;
+  private final Factory factory;
+
+  private UnitType(String name, UnitStats stats, Factory factory)
+  {
+    this.name = name;
+    this.stats = stats;
+    this.factory = factory;
+  }
+
+  /**
+   * @param name The name of a type, possibly with a price in front,
+   *             as in {@code "[5] Melee Unit"}.
+   * @return The type, or null if there is none by that name.
+   */
+  public static UnitType named(String name)
+  {
+    if (name == null)
+      return null;
+    UnitType t = BY_NAME.get(name);
+    if (t == null && name.startsWith("["))
+    {
+      int end = name.indexOf("] ");
+      if (end != -1)
+        t = BY_NAME.get(name.substring(end + 2));
+    }
+    return t;
+  }
+
+  /**
+   * @param b   The battle to add the unit to, or null for none.
+   * @param pos Will be copied to determine the unit's position.
+   */
+  public Unit create(Battle b, int team, Vector2D pos, double ang)
+  {
+    return factory.create(b, team, new Vector2D(pos), ang);
+  }
+
+  public UnitStats stats()
+  {
+    return stats;
+  }
+
+  /**
+   * @return The name of the type, as {@code type()} returns it.
+   */
+  public String typeName()
+  {
+    return name;
+  }
+}
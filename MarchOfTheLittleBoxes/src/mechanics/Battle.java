@@ -11,26 +11,32 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.image.BufferStrategy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.SplittableRandom;
 
 import javax.swing.JFrame;
 
 import entity.Entity;
 import entity.Particle;
+import entity.projectile.Cannonball;
+import entity.projectile.GuidedProjectile;
+import entity.projectile.LaserBeam;
 import entity.projectile.Projectile;
-import entity.unit.Cannon;
-import entity.unit.Charger;
-import entity.unit.Juggernaut;
-import entity.unit.LaserUnit;
-import entity.unit.MeleeUnit;
-import entity.unit.RangedUnit;
-import entity.unit.Resurrector;
-import entity.unit.ShieldBearer;
-import entity.unit.SmartRangedUnit;
+import entity.projectile.ProjectilePool;
 import entity.unit.Unit;
+import entity.unit.UnitType;
+import mechanics.lineTool.FormationTool;
 import mechanics.lineTool.LineTool;
+import mechanics.metrics.BattleMonitor;
+import mechanics.metrics.MetricsExporter;
+import mechanics.metrics.Phase;
+import mechanics.metrics.PhaseListener;
+import mechanics.metrics.TickProfiler;
+import mechanics.metrics.jfr.FlightEvents;
+import mechanics.replay.ReplayFormat;
+import mechanics.replay.ReplayRecorder;
 
 /**
  * File: src/mechanics/Battle.java
@@ -44,13 +50,17 @@ import mechanics.lineTool.LineTool;
 public class Battle extends Canvas 
 implements MouseListener, MouseMotionListener, Runnable
 {
-  private static long tick = 0;
-  private int tps = 60;
-  private boolean running = false;
-  private boolean paused = true;
+  private volatile long tick = 0;
+  private volatile int tps = 60;
+  private volatile boolean running = false;
+  private volatile boolean paused = true;
   private Thread battleThread;
   private JFrame window;
   private ControlPanel controlPanel;
+  
+  // separate streams, so that particles don't affect the outcome
+  private long seed;
+  private BattleRandom random, particleRandom;
 
   private BoundingBox borders, teamArea;
   
@@ -67,31 +77,96 @@ implements MouseListener, MouseMotionListener, Runnable
   private List<Projectile> projectiles;
   private List<Particle> particles;
   
+  // inactive units are moved out of units at the end of each tick,
+  // so that the loops over units don't keep visiting them.
+  // fallen holds one list per team, so resurrection only has to look
+  // at the fallen of that team. Entries are added as soon as a unit goes
+  // down, and stale (resurrected) ones are pruned at the end of the tick.
+  // All of these are guarded by the lock on units.
+  private List<List<Unit>> fallen;
+  private List<Unit> revived;
+  private boolean fallenDirty;
+  
+  // only used in data-oriented mode
+  private UnitStore store;
+  private boolean dataOriented;
+  
+  private ProjectilePool<Projectile> projectilePool;
+  private ProjectilePool<Cannonball> cannonballPool;
+  private ProjectilePool<GuidedProjectile> guidedProjectilePool;
+  private ProjectilePool<LaserBeam> laserBeamPool;
+  
+  // an array rather than a list, so notifying them doesn't create an iterator
+  private volatile PhaseListener[] phaseListeners = new PhaseListener[0];
+  private static final Phase[] PHASES = Phase.values(); // values() copies
+  private final long[] phaseNanos = new long[PHASES.length]; // timed by units
+  private boolean timingPhases; // this tick
+  private volatile TickProfiler profiler; // created when first needed
+  private boolean profilerOverlay;
+  private BattleMonitor monitor; // registered with JMX while running
+  
   private LineTool lineTool;
   private boolean lineToolActive = false;
+  private FormationTool formationTool;
+  private boolean formationToolActive = false;
   private Vector2D mouseClick1, mousePos;
   
   private String action;
+  private UnitType actionType; // of action, if it makes a unit
   private int selectedTeam;
   private int bannerTeam;
+  private int lastBannerTeam = -1; // at the end of the previous tick
+  
+  private final Object tickLock = new Object(); // held while updating
+  
+  private volatile ReplayRecorder recorder;
+  private volatile boolean hashing;
+  private volatile long rollingHash;
+  private volatile long battlesCompleted;
 
   private double defaultAngle = 0;
 
+  /**
+   * The default size of the battlefield.
+   */
   public static final int HEIGHT = 800, WIDTH = 800;
-  private boolean particlesEnabled, antialiasing;
+  private final int width, height;
+  private volatile boolean particlesEnabled, antialiasing;
 
   public Battle(JFrame window)
+  {
+    this(window, new SplittableRandom().nextLong());
+  }
+  
+  /**
+   * @param seed Seeds the battle's random numbers, so that the same 
+   *             seed and the same actions give the same battle.
+   */
+  public Battle(JFrame window, long seed)
+  {
+    this(window, seed, WIDTH, HEIGHT);
+  }
+  
+  /**
+   * A battle with a battlefield of the given size. Everything a battle 
+   * simulates belongs to it alone, so any number of battles can run 
+   * at once, each on its own thread.
+   */
+  public Battle(JFrame window, long seed, int width, int height)
   {
     super();
+    setSeed(seed);
+    this.width = width;
+    this.height = height;
 
     particlesEnabled = true;
     antialiasing = true;
 
     this.window = window;
-    setSize(HEIGHT, WIDTH);
-    setMinimumSize(new Dimension(HEIGHT, WIDTH));
-    setPreferredSize(new Dimension(HEIGHT, WIDTH));
-    setMaximumSize(new Dimension(HEIGHT, WIDTH));
+    setSize(width, height);
+    setMinimumSize(new Dimension(width, height));
+    setPreferredSize(new Dimension(width, height));
+    setMaximumSize(new Dimension(width, height));
 
     addMouseListener(this);
     addMouseMotionListener(this);
@@ -103,14 +178,25 @@ implements MouseListener, MouseMotionListener, Runnable
     action = "";
     bannerTeam = -1;
 
-    borders = new BoundingBox(new Vector2D(), 
-        Battle.WIDTH, 0, Battle.HEIGHT, 0, 0);
+    borders = new BoundingBox(new Vector2D(), width, 0, height, 0, 0);
     
     color = Color.LIGHT_GRAY;
 
     units = Collections.synchronizedList(new ArrayList<Unit>());
     projectiles = Collections.synchronizedList(new ArrayList<Projectile>());
     particles = Collections.synchronizedList(new ArrayList<Particle>());
+    fallen = new ArrayList<List<Unit>>();
+    for (int i = 0; i < Entity.TEAMS; i++)
+      fallen.add(new ArrayList<Unit>());
+    revived = new ArrayList<Unit>();
+    
+    projectilePool = new ProjectilePool<Projectile>(this, Projectile::new);
+    cannonballPool = new ProjectilePool<Cannonball>(this, Cannonball::new);
+    guidedProjectilePool = 
+        new ProjectilePool<GuidedProjectile>(this, GuidedProjectile::new);
+    laserBeamPool = new ProjectilePool<LaserBeam>(this, LaserBeam::new);
+    
+    FlightEvents.attach(this);
   }
 
   public void setControlPanel(ControlPanel controlPanel)
@@ -128,6 +214,14 @@ implements MouseListener, MouseMotionListener, Runnable
     battleThread = new Thread(this, "battle loop");
     running = true;
     battleThread.start();
+    
+    if (monitor == null)
+      monitor = new BattleMonitor(this);
+    monitor.register();
+    
+    MetricsExporter exporter = MetricsExporter.global();
+    if (exporter != null)
+      exporter.track(this);
 
     //    System.out.println("Battle: Thread started");
   }
@@ -135,6 +229,11 @@ implements MouseListener, MouseMotionListener, Runnable
   public synchronized void stop()
   {
     running = false;
+    if (monitor != null)
+      monitor.unregister();
+    MetricsExporter exporter = MetricsExporter.global();
+    if (exporter != null)
+      exporter.untrack(this);
     try
     {
       battleThread.join();
@@ -148,7 +247,6 @@ implements MouseListener, MouseMotionListener, Runnable
   public void run()
   {
     long lastTime = System.nanoTime();
-    double tickLength = 1000000000 / tps;
     double dt = 0;
 //    int frames = 0;
 //    long frameTimer = System.currentTimeMillis();
@@ -156,6 +254,7 @@ implements MouseListener, MouseMotionListener, Runnable
     while (running)
     {
       long now = System.nanoTime();
+      double tickLength = 1000000000 / tps; // may be changed while running
       dt += (now - lastTime) / tickLength;
       lastTime = now;
       
@@ -205,48 +304,304 @@ implements MouseListener, MouseMotionListener, Runnable
   {
     return paused;
   }
+  
+  /**
+   * @return Ticks per second that the battle loop aims for.
+   */
+  public int tps()
+  {
+    return tps;
+  }
+  
+  public void setTps(int tps)
+  {
+    if (tps < 1)
+      throw new IllegalArgumentException("tps must be positive: " + tps);
+    this.tps = tps;
+  }
 
   /**
-   * Updates units and projectiles. Removes inactive projectiles.
+   * Updates units, projectiles and particles. Inactive projectiles and 
+   * particles are removed, with projectiles returned to their pools.
+   * Inactive units are moved out of the list of active units.
+   * <P>
+   * Removal is done by compacting each list in a single pass, rather than
+   * removing elements one at a time.
+   * <P>
+   * Holds the tick lock throughout, so that snapshots only ever see 
+   * the battle between ticks.
    */
   public void update()
   {
-    //    System.out.println("Updoot " + tick);
-    tick++;
+    synchronized (tickLock)
+    {
+      //    System.out.println("Updoot " + tick);
+      tick++;
+    
+      enterPhase(Phase.UNITS);
+      synchronized (units)
+      {
+        if (dataOriented)
+          store.load(units);
+      
+        timingPhases = phaseListeners.length > 0;
+  //      boolean allDead = true;
+        int size = units.size();
+        for (int i = 0; i < size; i++)
+        {
+          units.get(i).update();
+  //        if (u.isActive())
+  //          allDead = false;
+        }
+  //      if (allDead)
+  //        setBanner(-1);
+        if (timingPhases)
+          reportPhaseTimes();
+      }
+      enterPhase(Phase.PROJECTILES);
+      synchronized (projectiles)
+      {
+        int size = projectiles.size();
+        int live = 0;
+        for (int i = 0; i < size; i++)
+        {
+          Projectile p = projectiles.get(i);
+          p.update();
+          if (p.isActive())
+            projectiles.set(live++, p);
+          else
+            p.release();
+        }
+        truncate(projectiles, live);
+      }
+      enterPhase(Phase.PARTICLES);
+      synchronized (particles)
+      {
+        int size = particles.size();
+        int live = 0;
+        for (int i = 0; i < size; i++)
+        {
+          Particle p = particles.get(i);
+          p.update();
+          if (p.isActive())
+            particles.set(live++, p);
+        }
+        truncate(particles, live);
+      }
+    
+      enterPhase(Phase.UNITS);
+      compactUnits();
     
+      // units set the banner while placed too, so only look between ticks
+      if (bannerTeam != -1 && lastBannerTeam == -1)
+        battlesCompleted++;
+      lastBannerTeam = bannerTeam;
+    
+      if (hashing)
+        rollingHash = StateHasher.mix(rollingHash, StateHasher.hash(this));
+    
+      PhaseListener[] listeners = phaseListeners;
+      for (int i = 0; i < listeners.length; i++)
+      {
+        listeners[i].phaseEnded();
+        listeners[i].tickEnded();
+      }
+    }
+  }
+  
+  /**
+   * Tells the phase listeners that the current phase is over.
+   */
+  private void exitPhase()
+  {
+    PhaseListener[] listeners = phaseListeners;
+    for (int i = 0; i < listeners.length; i++)
+      listeners[i].phaseEnded();
+  }
+  
+  /**
+   * @return Whether units should time their {@code TARGETING} and 
+   * {@code COLLISION} steps this tick, which they only do when something
+   * is listening to the phases.
+   */
+  public boolean isTimingPhases()
+  {
+    return timingPhases;
+  }
+  
+  /**
+   * Adds time a unit spent in a phase nested in {@code UNITS}. These 
+   * happen once for every unit, so rather than tell the phase listeners
+   * each time, units time them in place and the battle passes on the 
+   * totals once the units are done.
+   */
+  public void addPhaseTime(Phase phase, long nanos)
+  {
+    phaseNanos[phase.ordinal()] += nanos;
+  }
+  
+  private void reportPhaseTimes()
+  {
+    PhaseListener[] listeners = phaseListeners;
+    for (int p = 0; p < phaseNanos.length; p++)
+    {
+      if (phaseNanos[p] != 0)
+      {
+        for (int i = 0; i < listeners.length; i++)
+          listeners[i].phaseTimed(PHASES[p], phaseNanos[p]);
+        phaseNanos[p] = 0;
+      }
+    }
+  }
+  
+  /**
+   * Tells the phase listeners that the battle thread is now in the given phase.
+   */
+  public void enterPhase(Phase phase)
+  {
+    PhaseListener[] listeners = phaseListeners;
+    for (int i = 0; i < listeners.length; i++)
+      listeners[i].phaseStarted(phase);
+  }
+  
+  public synchronized void addPhaseListener(PhaseListener l)
+  {
+    PhaseListener[] listeners = Arrays.copyOf(phaseListeners, phaseListeners.length + 1);
+    listeners[listeners.length - 1] = l;
+    phaseListeners = listeners;
+  }
+  
+  /**
+   * @return The profiler timing this battle, which starts 
+   * the first time this is called.
+   */
+  public synchronized TickProfiler profiler()
+  {
+    if (profiler == null)
+    {
+      profiler = new TickProfiler(this);
+      addPhaseListener(profiler);
+    }
+    return profiler;
+  }
+  
+  public boolean profilerOverlay()
+  {
+    return profilerOverlay;
+  }
+  
+  /**
+   * Shows or hides the profiler's numbers on top of the battle.
+   */
+  public void setProfilerOverlay(boolean visible)
+  {
+    if (visible)
+      profiler();
+    profilerOverlay = visible;
+  }
+  
+  public synchronized void removePhaseListener(PhaseListener l)
+  {
+    List<PhaseListener> listeners = new ArrayList<PhaseListener>(Arrays.asList(phaseListeners));
+    listeners.remove(l);
+    phaseListeners = listeners.toArray(new PhaseListener[listeners.size()]);
+  }
+  
+  /**
+   * Moves inactive units out of {@code units}, and
+   * units that were resurrected during the tick back into it.
+   */
+  private void compactUnits()
+  {
     synchronized (units)
     {
-//      boolean allDead = true;
-      for (Unit u : units)
+      int size = units.size();
+      int live = 0;
+      for (int i = 0; i < size; i++)
       {
-        u.update();
-//        if (u.isActive())
-//          allDead = false;
+        Unit u = units.get(i);
+        if (u.isActive())
+        {
+          units.set(live++, u);
+        }
+        else
+        {
+          u.setFallen(true); // already in the fallen list for its team
+        }
       }
-//      if (allDead)
-//        setBanner(-1);
+      truncate(units, live);
+      
+      flushRevived();
     }
-    synchronized (projectiles)
+  }
+  
+  /**
+   * Must hold the lock on units.
+   */
+  private void flushRevived()
+  {
+    // one at a time, as addAll() would copy revived into a new array
+    for (int i = 0; i < revived.size(); i++)
+      units.add(revived.get(i));
+    revived.clear();
+    
+    if (fallenDirty)
     {
-      ListIterator<Projectile> iter = projectiles.listIterator();
-      while (iter.hasNext())
+      for (int f = 0; f < fallen.size(); f++)
       {
-        Projectile p = iter.next();
-        p.update();
-        if (!p.isActive())
-          iter.remove();
+        List<Unit> list = fallen.get(f);
+        int size = list.size();
+        int live = 0;
+        for (int i = 0; i < size; i++)
+        {
+          Unit u = list.get(i);
+          if (!u.isActive())
+            list.set(live++, u);
+        }
+        truncate(list, live);
       }
+      fallenDirty = false;
     }
-    synchronized (particles)
+  }
+  
+  /**
+   * Removes the elements from index size on, starting from the end.
+   * Unlike {@code subList(size, list.size()).clear()}, this doesn't 
+   * create a view of the list each tick.
+   */
+  private static void truncate(List<?> list, int size)
+  {
+    for (int i = list.size() - 1; i >= size; i--)
+      list.remove(i);
+  }
+  
+  /**
+   * Called by {@code Unit.checkHealth()} when a unit goes down,
+   * to add it to the fallen list for its team.
+   */
+  public void unitFell(Unit u)
+  {
+    synchronized (units)
+    {
+      fallen.get(u.team()).add(u);
+    }
+  }
+  
+  /**
+   * Called by {@code Unit.resurrect()} when an inactive unit is brought back.
+   * If it had already been moved out of the active list, it will rejoin 
+   * at the end of the current tick.
+   */
+  public void revive(Unit u)
+  {
+    synchronized (units)
     {
-      ListIterator<Particle> iter = particles.listIterator();
-      while (iter.hasNext())
+      if (u.isFallen())
       {
-        Particle p = iter.next();
-        p.update();
-        if (!p.isActive())
-          iter.remove();
+        u.setFallen(false);
+        revived.add(u);
       }
+      fallenDirty = true;
     }
   }
 
@@ -258,12 +613,14 @@ implements MouseListener, MouseMotionListener, Runnable
       this.createBufferStrategy(3);
       return;
     }
+    
+    enterPhase(Phase.RENDER);
 
     Graphics2D g = (Graphics2D) bs.getDrawGraphics(); 
 
     // background
     g.setColor(color);
-    g.fillRect(0, 0, WIDTH, HEIGHT);
+    g.fillRect(0, 0, width, height);
     
     if (antialiasing)
       g.setRenderingHints(new RenderingHints(
@@ -286,6 +643,14 @@ implements MouseListener, MouseMotionListener, Runnable
       g.drawLine((int) mouseClick1.x, (int) mouseClick1.y, (int) mousePos.x, (int) mousePos.y);
     }
 
+    // formation tool
+    if (formationToolActive && mouseClick1 != null && mousePos != null)
+    {
+      g.setColor(Color.BLACK);
+      g.drawRect((int) Math.min(mouseClick1.x, mousePos.x), (int) Math.min(mouseClick1.y, mousePos.y),
+          (int) Math.abs(mousePos.x - mouseClick1.x), (int) Math.abs(mousePos.y - mouseClick1.y));
+    }
+
     // TODO rendering priorities?
     if (particlesEnabled)
       synchronized(units)
@@ -309,9 +674,15 @@ implements MouseListener, MouseMotionListener, Runnable
     
     if (lineTool != null)
       lineTool.render(g);
+    if (formationTool != null)
+      formationTool.render(g);
+    
+    if (profilerOverlay)
+      profiler.render(g);
 
     g.dispose();
     bs.show();
+    exitPhase();
   }
 
 
@@ -344,7 +715,7 @@ implements MouseListener, MouseMotionListener, Runnable
       }
   
       g.setColor(Entity.teamColor(bannerTeam));
-      g.fillRect(0, 0, WIDTH, 21);
+      g.fillRect(0, 0, width, 21);
   
       g.setColor(Color.WHITE);
 //      g.setFont(g.getFont().deriveFont(Font.BOLD));
@@ -376,13 +747,26 @@ implements MouseListener, MouseMotionListener, Runnable
     antialiasing = enabled;
   }
   
+  /**
+   * Units are only added between ticks, so that a replay, which places
+   * them between ticks, sees them arrive at the same point.
+   */
   public boolean add(Entity e)
   {
     if (e instanceof Unit)
     {
-      synchronized(units)
+      Unit u = (Unit) e;
+      synchronized (tickLock)
       {
-        return units.add((Unit) e);
+        synchronized(units)
+        {
+          if (!u.isActive()) // counts as fallen until resurrected
+            fallen.get(u.team()).add(u);
+          units.add(u);
+          if (recorder != null)
+            recorder.unitAdded(u);
+          return true;
+        }
       }
     }
     else if (e instanceof Projectile)
@@ -406,17 +790,75 @@ implements MouseListener, MouseMotionListener, Runnable
   }
 
   /**
-   * If e is a unit, it will be removed from the battle.
+   * Adds units that were created without a battle (as by {@code unitHelper()}
+   * with {@code addToBattle} false), all at once, between ticks. Each is
+   * brought to full health, in order, as {@code Unit.addBattle()} would, 
+   * but they don't look for targets until their first tick, so adding 
+   * n units takes O(n) rather than O(n<sup>2</sup>), and the lock on units 
+   * is taken once for all of them.
+   * <P>
+   * Nothing is charged or checked here: units from {@code unitHelper()}
+   * have already been paid for, and their placements snapped.
+   */
+  public void addAll(List<Unit> batch)
+  {
+    synchronized (tickLock)
+    {
+      synchronized (units)
+      {
+        for (int i = 0; i < batch.size(); i++)
+        {
+          Unit u = batch.get(i);
+          u.joinBattle(this);
+          // as add() and resurrect() leave a unit placed on its own, 
+          // so that this plays out the same as placing them one by one
+          fallen.get(u.team()).add(u);
+        }
+        fallenDirty = true;
+        units.addAll(batch);
+        if (recorder != null)
+        {
+          for (int i = 0; i < batch.size(); i++)
+            recorder.unitAdded(batch.get(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * If e is a unit, it will be removed from the battle, between ticks.
    * Corresponding projectiles and particles will remain.
    * In campaign mode, the unit's price will be refunded.
+   * 
+   * @return Whether e was a unit in the battle.
    */
   public boolean remove(Entity e)
   {
     if (e instanceof Unit)
     {
-      refund((Unit)e);
+      Unit u = (Unit) e;
 //      System.out.println("Tick " + tick + ": Removed " + o);
-      return units.remove(e);
+      synchronized (tickLock)
+      {
+        synchronized(units)
+        {
+          // so that any unit that can be removed is in units, 
+          // where the recorder can say which it was
+          flushRevived();
+          int index = units.indexOf(u);
+          if (index < 0)
+            return false;
+          
+          if (recorder != null)
+            recorder.unitRemoved(index);
+          fallen.get(u.team()).remove(u);
+          if (store != null)
+            store.remove(u);
+          units.remove(index);
+        }
+      }
+      refund(u);
+      return true;
     }
     // shouldn't need to use
     //    else if (o instanceof Projectile)
@@ -441,26 +883,215 @@ implements MouseListener, MouseMotionListener, Runnable
     return 0;
   }
 
+  /**
+   * Restarts the battle's random numbers from the given seed.
+   */
+  public void setSeed(long seed)
+  {
+    this.seed = seed;
+    random = new BattleRandom(seed);
+    particleRandom = random.split();
+  }
+  
+  public long seed()
+  {
+    return seed;
+  }
+  
+  /**
+   * @return The random numbers for anything that affects the outcome 
+   * of the battle. Not thread-safe: a unit placed with the mouse while 
+   * the battle runs may race with the battle thread, but such a battle 
+   * can't be replayed from its seed anyway.
+   */
+  public BattleRandom random()
+  {
+    return random;
+  }
+  
+  /**
+   * @return The random numbers for particles, which are only for show.
+   */
+  public BattleRandom particleRandom()
+  {
+    return particleRandom;
+  }
+
+  /**
+   * Places a unit of the given type and team, facing the given angle,
+   * as {@code newUnit()} would. Used to play back replays.
+   * 
+   * @return The unit, or null if it couldn't be placed.
+   */
+  public Unit spawn(String type, int team, Vector2D pos, double ang)
+  {
+    String oldAction = action;
+    UnitType oldType = actionType;
+    int oldTeam = selectedTeam;
+    action = type;
+    actionType = UnitType.named(type);
+    selectedTeam = team;
+    Unit u;
+    synchronized (tickLock)
+    {
+      u = unitHelper(pos, ang, false, true);
+      if (u != null)
+        u.resurrect();
+    }
+    action = oldAction;
+    actionType = oldType;
+    selectedTeam = oldTeam;
+    return u;
+  }
+  
+  /**
+   * Sets the recorder that this battle tells about every unit placed 
+   * or removed, and every clear or resurrection. Null to stop.
+   */
+  public void setRecorder(ReplayRecorder recorder)
+  {
+    this.recorder = recorder;
+  }
+  
+  public ReplayRecorder recorder()
+  {
+    return recorder;
+  }
+  
+  /**
+   * Turns the rolling hash on or off. Turning it on starts it from zero.
+   */
+  public void setHashing(boolean enabled)
+  {
+    if (enabled && !hashing)
+      rollingHash = 0;
+    hashing = enabled;
+  }
+  
+  public boolean isHashing()
+  {
+    return hashing;
+  }
+  
+  /**
+   * @return A hash of the state after every tick since hashing was turned 
+   * on, so two runs that ever differed have different rolling hashes.
+   */
+  public long rollingHash()
+  {
+    return rollingHash;
+  }
+  
+  /**
+   * @return A hash of the current state of the units and projectiles.
+   */
+  public long stateHash()
+  {
+    return StateHasher.hash(this);
+  }
+
   public long tick()
   {
     return tick;
   }
 
+  /**
+   * @return The units that are taking part in the battle. This may include
+   * units that were defeated during the current tick, but not before.
+   */
   public List<Unit> units()
   {
     return units;
   }
+  
+  /**
+   * @return Units of the given team that have been defeated. May also
+   * contain units that have since been resurrected, which are pruned at 
+   * the end of each tick. Must only be used while holding the lock on 
+   * {@code units()}, and not modified.
+   */
+  public List<Unit> fallenUnits(int team)
+  {
+    return fallen.get(team);
+  }
 
   public List<Projectile> projectiles()
   {
     return projectiles;
   }
+  
+  public List<Particle> particles()
+  {
+    return particles;
+  }
+  
+  /**
+   * @return The unit store if the battle is in data-oriented mode, 
+   * otherwise null.
+   */
+  public UnitStore store()
+  {
+    return dataOriented? store : null;
+  }
+  
+  public boolean isDataOriented()
+  {
+    return dataOriented;
+  }
+  
+  /**
+   * In data-oriented mode, the battle keeps a copy of unit state in
+   * a {@code UnitStore}, which targeting and collision checks use
+   * instead of going through every {@code Unit} object.
+   * Takes effect from the next tick.
+   */
+  public void setDataOriented(boolean enabled)
+  {
+    synchronized (units)
+    {
+      if (enabled && store == null)
+        store = new UnitStore();
+      else if (!enabled && store != null)
+        store.clear();
+      dataOriented = enabled;
+    }
+  }
+  
+  public ProjectilePool<Projectile> projectilePool()
+  {
+    return projectilePool;
+  }
+  
+  public ProjectilePool<Cannonball> cannonballPool()
+  {
+    return cannonballPool;
+  }
+  
+  public ProjectilePool<GuidedProjectile> guidedProjectilePool()
+  {
+    return guidedProjectilePool;
+  }
+  
+  public ProjectilePool<LaserBeam> laserBeamPool()
+  {
+    return laserBeamPool;
+  }
 
   public BoundingBox borders()
   {
     return borders;
   }
   
+  public int width()
+  {
+    return width;
+  }
+  
+  public int height()
+  {
+    return height;
+  }
+  
   public void setColor(Color c)
   {
     color = c;
@@ -471,22 +1102,39 @@ implements MouseListener, MouseMotionListener, Runnable
     return color;
   }
 
+  /**
+   * Removes everything from the battle, between ticks, and moves on to 
+   * a new seed.
+   */
   public void clearAll()
   {
     boolean temp = paused;
     paused = true;
     
-    synchronized(units)
-    {
-      units.clear();
-    }
-    synchronized(projectiles)
+    synchronized (tickLock)
     {
-      projectiles.clear();
-    }
-    synchronized(particles)
-    {
-      particles.clear();
+      synchronized(units)
+      {
+        if (recorder != null)
+          recorder.cleared();
+        setSeed(random.nextLong());
+        units.clear();
+        if (store != null)
+          store.clear();
+        for (List<Unit> list : fallen)
+          list.clear();
+        revived.clear();
+      }
+      synchronized(projectiles)
+      {
+        for (int i = 0; i < projectiles.size(); i++)
+          projectiles.get(i).release();
+        projectiles.clear();
+      }
+      synchronized(particles)
+      {
+        particles.clear();
+      }
     }
     
     teamArea = null;
@@ -494,51 +1142,273 @@ implements MouseListener, MouseMotionListener, Runnable
     bannerTeam = -1;
     if (lineTool != null)
       lineTool.dispose();
+    if (formationTool != null)
+      formationTool.dispose();
     
     paused = temp;
     //    System.out.println("Cleared battlefield");
   }
 
+  public void clearParticles()
+  {
+    synchronized(particles)
+    {
+      particles.clear();
+    }
+  }
+
+  /**
+   * Brings every unit in the battle back to full health, between ticks.
+   */
   public void resurrectAll()
   {
-    synchronized(units)
+    Object event = FlightEvents.beginResurrection();
+    int count = 0;
+    synchronized (tickLock)
     {
-      for (Unit u : units)
-        u.resurrect();
+      synchronized(units)
+      {
+        if (recorder != null)
+          recorder.resurrectedAll();
+        flushRevived();
+        
+        for (Unit u : units)
+        {
+          if (!u.isActive())
+            count++;
+          u.resurrect();
+        }
+        
+        // only the fallen need to be brought back into the battle
+        for (List<Unit> list : fallen)
+        {
+          for (Unit u : list)
+          {
+            if (u.isFallen())
+            {
+              u.setFallen(false);
+              units.add(u);
+              count++;
+            }
+            u.resurrect();
+          }
+          list.clear();
+        }
+        fallenDirty = false;
+      }
     }
+    FlightEvents.endResurrection(event, "Resurrect all", -1, count);
     //    System.out.println("Resurrected everyone");
   }
 
-  public void setAction(String action)
+  /**
+   * Copies the state of everything in the battle that affects how it
+   * plays out: every unit, projectile and particle, the tick, and the
+   * random numbers. {@code restore()} puts the battle back exactly as 
+   * it was, so that it plays out the same from there. The size, colour,
+   * team area and controls aren't included.
+   * <P>
+   * Waits for the current tick to end, if there is one, so it may be 
+   * called from any thread. Called from a {@code PhaseListener} as a 
+   * tick ends, it sees the battle at the end of that tick.
+   * 
+   * @return The snapshot, in a compact binary form.
+   */
+  public byte[] snapshot()
   {
-      this.action = action;
-    //    System.out.println("Action updated to " + action);
+    return snapshot(true);
   }
   
-  public int actionPrice(String name)
+  /**
+   * Like {@code snapshot()}, but particles can be left out. They never 
+   * affect the outcome, and in a big battle there are many more of them
+   * than anything else, so leaving them out makes the snapshot much 
+   * quicker to take and smaller.
+   */
+  public byte[] snapshot(boolean withParticles)
+  {
+    return capture(withParticles).toByteArray(width, height);
+  }
+  
+  /**
+   * Does the part of {@code snapshot()} that needs the battle to stand
+   * still. What's left, building the table of unit types and putting the
+   * snapshot together, only reads what units never change, so it can be
+   * done later, on another thread, with {@code SnapshotWriter.toByteArray()}.
+   */
+  SnapshotWriter capture(boolean withParticles)
   {
-    for (String type : controlPanel.types())
+    synchronized (tickLock)
     {
-      if (type.startsWith("["))
+      synchronized (units)
       {
-//        System.out.println(type.substring(type.indexOf("]") + 2));
-        if (type.equals(name) || type.substring(type.indexOf("]") + 2).equals(name))
+        synchronized (projectiles)
         {
-          try
+          synchronized (particles)
           {
-//            System.out.println(type.substring(1, type.indexOf("]", 1)));
-            return Integer.parseInt(type.substring(1, type.indexOf("]", 1)));
+            int particleCount = withParticles? particles.size() : 0;
+            int unitCount = units.size() + revived.size();
+            for (int i = 0; i < fallen.size(); i++)
+              unitCount += fallen.get(i).size();
+            SnapshotWriter out = new SnapshotWriter(128 * unitCount 
+                + 96 * projectiles.size() + 56 * particleCount, unitCount);
+            out.setSummary(tick, units.size());
+            out.putLong(tick);
+            out.putLong(seed);
+            random.save(out);
+            particleRandom.save(out);
+            out.putInt(bannerTeam);
+            out.putInt(lastBannerTeam);
+            out.putLong(rollingHash);
+            out.putBoolean(fallenDirty);
+          
+            out.putUnits(units);
+            for (List<Unit> list : fallen)
+              out.putUnits(list);
+            out.putUnits(revived);
+          
+            out.numberProjectiles(projectiles);
+            out.putInt(projectiles.size());
+            for (int i = 0; i < projectiles.size(); i++)
+            {
+              Projectile p = projectiles.get(i);
+              out.putInt(projectileKind(p));
+              p.save(out);
+            }
+            out.putUnitStates();
+          
+            out.putInt(particleCount);
+            for (int i = 0; i < particleCount; i++)
+              particles.get(i).save(out);
+          
+            return out;
           }
-          catch (NumberFormatException ex)
+        }
+      }
+    }
+  }
+  
+  /**
+   * Puts the battle back as it was when the snapshot was taken, with new
+   * units, projectiles and particles in place of the old ones. Like 
+   * {@code snapshot()}, waits for the current tick to end.
+   * 
+   * @throws IllegalArgumentException If the snapshot isn't one of a 
+   *         battle of this size.
+   * @throws IllegalStateException If a replay is being recorded, 
+   *         since it can't follow the battle back.
+   */
+  public void restore(byte[] snapshot)
+  {
+    if (recorder != null)
+      throw new IllegalStateException("Can't restore while recording a replay");
+    
+    SnapshotReader in = new SnapshotReader(this, snapshot);
+    synchronized (tickLock)
+    {
+      synchronized (units)
+      {
+        synchronized (projectiles)
+        {
+          synchronized (particles)
           {
-            ex.printStackTrace();
+            tick = in.getLong();
+            seed = in.getLong();
+            random = BattleRandom.load(in);
+            particleRandom = BattleRandom.load(in);
+            bannerTeam = in.getInt();
+            lastBannerTeam = in.getInt();
+            rollingHash = in.getLong();
+            fallenDirty = in.getBoolean();
+          
+            if (store != null)
+              store.clear();
+            in.getUnits(units);
+            for (List<Unit> list : fallen)
+              in.getUnits(list);
+            in.getUnits(revived);
+          
+            for (int i = 0; i < projectiles.size(); i++)
+              projectiles.get(i).release();
+            projectiles.clear();
+            int n = in.getInt();
+            for (int i = 0; i < n; i++)
+            {
+              Projectile p = projectilePool(in.getInt()).obtain();
+              p.load(in);
+              projectiles.add(p);
+            }
+            in.getUnitStates();
+          
+            particles.clear();
+            n = in.getInt();
+            for (int i = 0; i < n; i++)
+            {
+              Particle p = new Particle(this, -1, new Vector2D(), new Vector2D(), 0, 0);
+              p.load(in);
+              particles.add(p);
+            }
           }
-          break;
         }
       }
     }
     
-    return 0;
+    mouseClick1 = null;
+    if (lineTool != null)
+      lineTool.dispose();
+    if (formationTool != null)
+      formationTool.dispose();
+  }
+  
+  private static int projectileKind(Projectile p)
+  {
+    if (p instanceof Cannonball)
+      return 1;
+    else if (p instanceof GuidedProjectile)
+      return 2;
+    else if (p instanceof LaserBeam)
+      return 3;
+    else
+      return 0;
+  }
+  
+  private ProjectilePool<?> projectilePool(int kind)
+  {
+    switch (kind)
+    {
+    case 1:
+      return cannonballPool;
+    case 2:
+      return guidedProjectilePool;
+    case 3:
+      return laserBeamPool;
+    default:
+      return projectilePool;
+    }
+  }
+
+  public void setAction(String action)
+  {
+      this.action = action;
+      actionType = UnitType.named(action);
+    //    System.out.println("Action updated to " + action);
+  }
+  
+  /**
+   * @return The type of unit the current action makes, or null if it
+   * doesn't make one.
+   */
+  public UnitType actionType()
+  {
+    return actionType;
+  }
+  
+  public int actionPrice(String name)
+  {
+    if (controlPanel == null) // nothing has a price
+      return 0;
+    
+    return controlPanel.prices().price(name);
   }
   
   /**
@@ -548,16 +1418,7 @@ implements MouseListener, MouseMotionListener, Runnable
   private boolean isBankrupt()
   {
     if (controlPanel instanceof CampaignPanel)
-    {
-      int resources = ((CampaignPanel)controlPanel).remainingResources();
-      for (String type : controlPanel.types)
-      {
-        int price = actionPrice(type);
-        if (0 < price && price <= resources)
-          return false; // can still afford something
-      }
-      return true;
-    }
+      return ((CampaignPanel)controlPanel).isBankrupt();
     else // not campaign mode
       return false;
   }
@@ -587,21 +1448,45 @@ implements MouseListener, MouseMotionListener, Runnable
     bannerTeam = team;
   }
   
+  /**
+   * @return How many times one team has been left standing, 
+   * counting again after each resurrection or new unit that 
+   * brings back an enemy.
+   */
+  public long battlesCompleted()
+  {
+    return battlesCompleted;
+  }
+  
   public void startLineTool()
   {
     lineToolActive = true;
+    formationToolActive = false;
   }
   
   public void refreshLineTool()
   {
     if (lineTool != null)
       lineTool.refresh();
+    if (formationTool != null)
+      formationTool.refresh();
   }
 
   public void disposeLineTool()
   {
     lineTool = null;
   }
+  
+  public void startFormationTool()
+  {
+    formationToolActive = true;
+    lineToolActive = false;
+  }
+
+  public void disposeFormationTool()
+  {
+    formationTool = null;
+  }
 
   public void mouseClicked(MouseEvent ev)
   {
@@ -623,22 +1508,44 @@ implements MouseListener, MouseMotionListener, Runnable
 
       return;
     }
+    
+    if (formationToolActive)
+    {
+      if (mouseClick1 != null)
+      {
+        formationTool = new FormationTool(this, mouseClick1, new Vector2D(ev.getPoint()), true);
+        controlPanel.setText("");
+        formationToolActive = false;
+        mouseClick1 = null;
+      }
+      else
+      {
+        mouseClick1 = new Vector2D(ev.getPoint());
+      }
+
+      return;
+    }
 
     lineTool = null;
+    formationTool = null;
     if (action.equals("None"))
     { 
       // this might do something eventually?
     }
     else if (action.equals("Remove (click target)"))
     {
-      for (Unit u : units)
+      // between ticks, so the unit found is still there to remove
+      synchronized (tickLock)
       {
-        if (u.isActive()
-            && u.hitbox().containsAbsPoint(new Vector2D(ev.getPoint())))
+        for (Unit u : units)
         {
-          remove(u);
-//          render();
-          return;
+          if (u.isActive()
+              && u.hitbox().containsAbsPoint(new Vector2D(ev.getPoint())))
+          {
+            remove(u);
+//            render();
+            return;
+          }
         }
       }
     }
@@ -655,17 +1562,21 @@ implements MouseListener, MouseMotionListener, Runnable
       ang = facing.angle();
     }
 
-    Unit u = unitHelper(pos, ang, autoFace, true);
+    // the unit draws from the battle's random numbers as it's created,
+    // so it's placed between ticks, as a replay would place it
+    synchronized (tickLock)
+    {
+      Unit u = unitHelper(pos, ang, autoFace, true);
 
-    if (u == null)
-      return;
+      if (u == null)
+        return;
 
-    u.resurrect();
+      u.resurrect();
+    }
 //    render();
   }
 
   /**
-   * Specifies the different types of units. All unit types must be specified here.
    * This method is called to create a new unit in the battle.
    * <P>
    * In campaign mode, this method will decrement the level resources by the price
@@ -683,7 +1594,11 @@ implements MouseListener, MouseMotionListener, Runnable
    */
   public Unit unitHelper(Vector2D pos, double ang, boolean autoFace, boolean addToBattle)
   {
-    if (teamArea != null && teamArea.containsAbsPoint(pos) && selectedTeam != 0 || action == null)
+    // snapped so that replays can record placements exactly
+    pos = new Vector2D(ReplayFormat.snapPosition(pos.x), ReplayFormat.snapPosition(pos.y));
+    ang = ReplayFormat.snapAngle(ang);
+    
+    if (!isPlaceable(pos) || action == null)
       return null;
     
     if (controlPanel instanceof CampaignPanel && selectedTeam != 0)
@@ -701,45 +1616,54 @@ implements MouseListener, MouseMotionListener, Runnable
     else
       b = null;
 
-    if (action.contains("Melee Unit"))
-    {
-      return new MeleeUnit(b, selectedTeam, new Vector2D(pos), ang);
-    }
-    else if (action.endsWith("Juggernaut"))
-    {
-      return new Juggernaut(b, selectedTeam, new Vector2D(pos), ang);
-    }
-    else if (action.endsWith("Smart Ranged Unit")) // careful, must be before Ranged Unit
-    {
-      return new SmartRangedUnit(b, selectedTeam, new Vector2D(pos), ang);
-    }
-    else if (action.endsWith("Ranged Unit"))
-    {
-      return new RangedUnit(b, selectedTeam, new Vector2D(pos), ang);
-    }
-    else if (action.endsWith("Laser Unit"))
-    {
-      return new LaserUnit(b, selectedTeam, new Vector2D(pos), ang);
-    }
-    else if (action.endsWith("Cannon"))
-    {
-      return new Cannon(b, selectedTeam, new Vector2D(pos), ang);
-    }
-    else if (action.endsWith("Shield Bearer"))
-    {
-      return new ShieldBearer(b, selectedTeam, new Vector2D(pos), ang);
-    }
-    else if (action.endsWith("Charger"))
-    {
-      return new Charger(b, selectedTeam, new Vector2D(pos), ang);
-    }
-    else if (action.endsWith("Resurrector"))
+    if (actionType == null)
+      return null;
+    return actionType.create(b, selectedTeam, pos, ang);
+  }
+  
+  /**
+   * @return Whether a unit of the selected team may be placed there,
+   * which it can't be inside an opposing team's area.
+   */
+  public boolean isPlaceable(Vector2D pos)
+  {
+    return !(teamArea != null && teamArea.containsAbsPoint(pos) && selectedTeam != 0);
+  }
+  
+  /**
+   * Pays for several units of the type named in {@code action} at once.
+   * Outside campaign mode, nothing has to be paid for.
+   * 
+   * @param count The number of units wanted.
+   * @return How many of them could be paid for, which in campaign mode
+   *         is as many as the remaining resources allow.
+   */
+  public int buyUnits(int count)
+  {
+    if (controlPanel instanceof CampaignPanel && selectedTeam != 0)
     {
-      return new Resurrector(b, selectedTeam, new Vector2D(pos), ang);
+      CampaignPanel campaign = (CampaignPanel) controlPanel;
+      int price = actionPrice(action);
+      if (price > 0)
+        count = Math.min(count, campaign.remainingResources() / price);
+      campaign.incrementResources(-price * count);
     }
-
-    else
-      return null;
+    return count;
+  }
+  
+  /**
+   * Creates a unit of the type named, as listed in {@code UnitType}.
+   * 
+   * @param type The type of unit, possibly with a price in front, as in 
+   *             the names of actions.
+   * @param b    The battle to add the unit to, or null for none.
+   * @param pos  Will be copied to determine the unit's position.
+   * @return The new unit, or null if there is no such type.
+   */
+  public static Unit createUnit(String type, Battle b, int team, Vector2D pos, double ang)
+  {
+    UnitType t = UnitType.named(type);
+    return (t == null)? null : t.create(b, team, pos, ang);
   }
 
   public void mousePressed(MouseEvent e){}
@@ -757,7 +1681,7 @@ implements MouseListener, MouseMotionListener, Runnable
 
   public void mouseMoved(MouseEvent e)
   {
-    if (lineToolActive)
+    if (lineToolActive || formationToolActive)
     {
       mousePos = new Vector2D(e.getPoint().getX(), e.getPoint().getY());
     }
@@ -0,0 +1,111 @@
+package mechanics;
+
+/**
+ * File: src/mechanics/BattleRandom.java
+ * <P>
+ * The random numbers of a battle. Gives exactly the same numbers as 
+ * {@code java.util.SplittableRandom} with the same seed (it is the same
+ * SplitMix64 generator), but its state can be saved and restored with 
+ * the rest of the battle, which {@code SplittableRandom} doesn't allow.
+ * Not thread-safe.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class BattleRandom
+{
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+  private long seed;
+  private final long gamma;
+
+  public BattleRandom(long seed)
+  {
+    this(seed, GOLDEN_GAMMA);
+  }
+
+  private BattleRandom(long seed, long gamma)
+  {
+    this.seed = seed;
+    this.gamma = gamma;
+  }
+
+  /**
+   * @return A new generator, seeded from this one, whose numbers 
+   * don't depend on how many more are taken from this one.
+   */
+  public BattleRandom split()
+  {
+    return new BattleRandom(nextLong(), mixGamma(nextSeed()));
+  }
+
+  public long nextLong()
+  {
+    return mix64(nextSeed());
+  }
+
+  /**
+   * @return A number from 0 (inclusive) to bound (exclusive).
+   */
+  public int nextInt(int bound)
+  {
+    if (bound <= 0)
+      throw new IllegalArgumentException("bound must be positive: " + bound);
+
+    int r = mix32(nextSeed());
+    int m = bound - 1;
+    if ((bound & m) == 0) // a power of two
+      return r & m;
+    for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1)
+      ;
+    return r;
+  }
+
+  /**
+   * @return A number from 0 (inclusive) to 1 (exclusive).
+   */
+  public double nextDouble()
+  {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+  public void save(SnapshotWriter out)
+  {
+    out.putLong(seed);
+    out.putLong(gamma);
+  }
+
+  public static BattleRandom load(SnapshotReader in)
+  {
+    long seed = in.getLong();
+    return new BattleRandom(seed, in.getLong());
+  }
+
+  private long nextSeed()
+  {
+    return seed += gamma;
+  }
+
+  private static long mix64(long z)
+  {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  private static int mix32(long z)
+  {
+    z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+    return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+  }
+
+  private static long mixGamma(long z)
+  {
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    z = (z ^ (z >>> 33)) | 1L;
+    int n = Long.bitCount(z ^ (z >>> 1));
+    return (n < 24)? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+  }
+}
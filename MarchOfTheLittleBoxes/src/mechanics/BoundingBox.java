@@ -4,7 +4,6 @@ package mechanics;
 import java.awt.Polygon;
 import java.awt.geom.Path2D;
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * File: src/mechanics/BoundingBox.java
@@ -22,6 +21,9 @@ public class BoundingBox
   public Vector2D position;
   public double xMax, xMin, yMax, yMin, angle;
   
+  // cos and sin of angle, valid while trigAngle == angle
+  private double cos, sin, trigAngle = Double.NaN;
+  
   /**
    * Creates a new BoundingBox based on all this stuff.
    */
@@ -66,10 +68,23 @@ public class BoundingBox
    */
   public Vector2D toRelative(Vector2D point)
   {
-    Vector2D p = new Vector2D(point);
-    p.subtract(this.position);
-    p.rotateBy(-this.angle); 
-    return p;
+    return toRelativeInto(point.x, point.y, new Vector2D());
+  }
+  
+  /**
+   * Like {@code toRelative()}, but stores the result in out 
+   * instead of creating a new vector.
+   * 
+   * @return out
+   */
+  public Vector2D toRelativeInto(double x, double y, Vector2D out)
+  {
+    double dx = x - position.x;
+    double dy = y - position.y;
+    double c = cos(), s = sin();
+    out.set(Vector2D.fixRounding(c * dx + s * dy), 
+        Vector2D.fixRounding(c * dy - s * dx));
+    return out;
   }
   
   /**
@@ -79,10 +94,21 @@ public class BoundingBox
    */
   public Vector2D toAbs(Vector2D point)
   {
-    Vector2D p = new Vector2D(point);
-    p.rotateBy(this.angle);
-    p.add(this.position);
-    return p;
+    return toAbsInto(point.x, point.y, new Vector2D());
+  }
+  
+  /**
+   * Like {@code toAbs()}, but stores the result in out 
+   * instead of creating a new vector.
+   * 
+   * @return out
+   */
+  public Vector2D toAbsInto(double x, double y, Vector2D out)
+  {
+    double c = cos(), s = sin();
+    out.set(Vector2D.fixRounding(c * x - s * y) + position.x, 
+        Vector2D.fixRounding(s * x + c * y) + position.y);
+    return out;
   }
   
   /**
@@ -91,12 +117,29 @@ public class BoundingBox
    */
   public boolean containsAbsPoint(Vector2D point)
   {
-    return containsRelPoint(toRelative(point));
+    return containsAbsPoint(point.x, point.y);
+  }
+  
+  /**
+   * Same as {@code containsAbsPoint(Vector2D)}, without creating any vectors.
+   */
+  public boolean containsAbsPoint(double x, double y)
+  {
+    double dx = x - position.x;
+    double dy = y - position.y;
+    double c = cos(), s = sin();
+    return containsRelPoint(Vector2D.fixRounding(c * dx + s * dy), 
+        Vector2D.fixRounding(c * dy - s * dx));
   }
   
   public boolean containsRelPoint(Vector2D point)
   {
-    return point.x <= xMax && point.x >= xMin && point.y <= yMax && point.y >= yMin;
+    return containsRelPoint(point.x, point.y);
+  }
+  
+  public boolean containsRelPoint(double x, double y)
+  {
+    return x <= xMax && x >= xMin && y <= yMax && y >= yMin;
   }
   
   /**
@@ -169,81 +212,91 @@ public class BoundingBox
    */
   public boolean detectOverlapOneWay(BoundingBox otherBox)
   {
-    Vector2D corner1 = otherBox.toAbs(new Vector2D(otherBox.xMax, otherBox.yMax));
-    Vector2D corner2 = otherBox.toAbs(new Vector2D(otherBox.xMax, otherBox.yMin));
-    Vector2D corner3 = otherBox.toAbs(new Vector2D(otherBox.xMin, otherBox.yMax));
-    Vector2D corner4 = otherBox.toAbs(new Vector2D(otherBox.xMin, otherBox.yMin));
-    
-    return (containsAbsPoint(corner1) || containsAbsPoint(corner2) || containsAbsPoint(corner3) || containsAbsPoint(corner4));
+    return containsCorner(otherBox, otherBox.xMax, otherBox.yMax) 
+        || containsCorner(otherBox, otherBox.xMax, otherBox.yMin) 
+        || containsCorner(otherBox, otherBox.xMin, otherBox.yMax) 
+        || containsCorner(otherBox, otherBox.xMin, otherBox.yMin);
   }
   
-/**
- * Returns the shortest absolute vector
- * that removes all corners of other from this box.
- * If other has no corners in this box, returns a zero vector.
- * @param other
- * @return
- */
-  private Vector2D calcCollisionOneWay(BoundingBox other)
+  /**
+   * @return Whether this contains the point (x, y) of otherBox, 
+   * in coordinates relative to otherBox.
+   */
+  private boolean containsCorner(BoundingBox otherBox, double x, double y)
+  {
+    double c = otherBox.cos(), s = otherBox.sin();
+    return containsAbsPoint(
+        Vector2D.fixRounding(c * x - s * y) + otherBox.position.x, 
+        Vector2D.fixRounding(s * x + c * y) + otherBox.position.y);
+  }
+  
+  /**
+   * Stores corner i of other, as in {@code relCorners()}, in out,
+   * relative to this.
+   */
+  private Vector2D otherCornerInto(BoundingBox other, int i, Vector2D out)
+  {
+    other.toAbsInto((i < 2)? other.xMin : other.xMax, 
+        (i == 1 || i == 2)? other.yMax : other.yMin, out);
+    return toRelativeInto(out.x, out.y, out);
+  }
+  
+  /**
+   * Stores in out the shortest absolute vector
+   * that removes all corners of other from this box.
+   * If other has no corners in this box, stores a zero vector.
+   * 
+   * @return out
+   */
+  private Vector2D calcCollisionOneWay(BoundingBox other, Vector2D out)
   {
     if (!detectOverlapOneWay(other))
-      return new Vector2D(); // a zero vector
+      return zero(out);
     
-    // if we proceed to this part, we know other has at least one corner in this box
-    // get corners of other that are in this box
-    ArrayList<Vector2D> corners = other.absCorners();
-    ArrayList<Vector2D> inCorners = new ArrayList<Vector2D>();
-    for (Vector2D c : corners)
+    // if we proceed to this part, we know other has at least one corner in this box.
+    // find how far the corners of other reach, relative to this box
+    double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < 4; i++)
     {
-      if (other.containsAbsPoint(c))
-      {
-        inCorners.add(toRelative(c));
-      }
+      otherCornerInto(other, i, out);
+      minX = Math.min(minX, out.x);
+      maxX = Math.max(maxX, out.x);
+      minY = Math.min(minY, out.y);
+      maxY = Math.max(maxY, out.y);
     }
     
     // the plan is to try moving other in each cardinal direction, find shortest move
-    Vector2D finalMoveDecision = new Vector2D();
-    Vector2D shortestMoveCandidate = new Vector2D();
-    Vector2D extremePoint = new Vector2D();
-    Vector2D north = new Vector2D(0, 1);
-    Vector2D south = new Vector2D(0, -1);
-    Vector2D east = new Vector2D(1, 0);
-    Vector2D west = new Vector2D(-1, 0);
-    
-    // examine each direction, comparing to see which direction is shortest
-    
-    // northward first
-    extremePoint.set(Vector2D.mostExtreme(inCorners, south));
-    
-    finalMoveDecision.y = yMax - extremePoint.y;
+    double moveX = 0, moveY = yMax - minY; // northward first
+    double shortest = Math.abs(moveY);
     
     // southward
-    extremePoint.set(Vector2D.mostExtreme(inCorners, north));
-    
-    shortestMoveCandidate.y = yMin - extremePoint.y;
-    if (shortestMoveCandidate.length() < finalMoveDecision.length())
-      finalMoveDecision.set(shortestMoveCandidate);
+    if (Math.abs(yMin - maxY) < shortest)
+    {
+      moveY = yMin - maxY;
+      shortest = Math.abs(moveY);
+    }
     
     // eastward
-    extremePoint = Vector2D.mostExtreme(inCorners, west);      
-    
-    shortestMoveCandidate.x = xMax - extremePoint.x;
-    shortestMoveCandidate.y = 0.0; // almost forgot this lol
-    if (shortestMoveCandidate.length() < finalMoveDecision.length())
-      finalMoveDecision.set(shortestMoveCandidate);
+    if (Math.abs(xMax - minX) < shortest)
+    {
+      moveX = xMax - minX;
+      moveY = 0;
+      shortest = Math.abs(moveX);
+    }
     
     // westward
-    extremePoint.set(Vector2D.mostExtreme(inCorners, east));      
-    
-    shortestMoveCandidate.x = xMin - extremePoint.x;
-    if (shortestMoveCandidate.length() < finalMoveDecision.length())
-      finalMoveDecision.set(shortestMoveCandidate);
+    if (Math.abs(xMin - maxX) < shortest)
+    {
+      moveX = xMin - maxX;
+      moveY = 0;
+    }
     
-    /* finalMoveDecision should now be set to the shortest relative move 
-     * that will take even the farthest corner of box2 out of this box */
-    finalMoveDecision.rotateBy(this.angle);
-    return finalMoveDecision;
-        // convert to absolute vector
+    /* (moveX, moveY) should now be the shortest relative move 
+     * that will take even the farthest corner of other out of this box */
+    out.set(moveX, moveY);
+    out.rotateBy(cos(), sin()); // convert to absolute vector
+    return out;
   }
   
    /**
@@ -256,25 +309,41 @@ public class BoundingBox
    */
   public static Vector2D calcCollisionTwoWay(BoundingBox box1, BoundingBox box2)
   {
+    return calcCollisionTwoWay(box1, box2, new Vector2D());
+  }
+  
+  /**
+   * Like {@code calcCollisionTwoWay(box1, box2)}, but stores the result 
+   * in out instead of creating new vectors.
+   * 
+   * @return out
+   */
+  public static Vector2D calcCollisionTwoWay(BoundingBox box1, BoundingBox box2,
+      Vector2D out)
+  {
+    // so we always get the vector that removes box2 from box1, 
+    // not the other way around
+    box2.calcCollisionOneWay(box1, out);
+    double box2X = -out.x, box2Y = -out.y;
+    double box2Length = Math.hypot(box2X, box2Y);
     
-    Vector2D box1Candidate = box1.calcCollisionOneWay(box2);
-    Vector2D box2Candidate = box2.calcCollisionOneWay(box1);
-    box2Candidate.scaleBy(-1); // so we always get the vector that removes box2 from box1, 
-                               // not the other way around
-//    System.out.println("Calculating two-way collision, with translation candidates "
-//        + box1Candidate + " and " + box2Candidate);
+    box1.calcCollisionOneWay(box2, out);
     
-    if (box2Candidate.length() == 0)
-      return box1Candidate; // even if box1Candidate is also 0, we want it to return 0 anyway
+    if (box2Length == 0)
+      return out; // even if box1's candidate is also 0, we want it to return 0 anyway
     // Btw, if they're both zero then that means the boxes don't intersect, 
-    // because that's how processCollisionOneWay works.
-    
-    if (box1Candidate.length() == 0)
-      return box2Candidate;
-    
-    return (box1Candidate.length() <= box2Candidate.length())
-     ? box1Candidate : box2Candidate;
+    // because that's how calcCollisionOneWay works.
     
+    double box1Length = out.length();
+    if (box1Length == 0 || box1Length > box2Length)
+      out.set(box2X, box2Y);
+    return out;
+  }
+  
+  private static Vector2D zero(Vector2D out)
+  {
+    out.set(0, 0);
+    return out;
   }
   
   public BoundingBox setAngle(double ang)
@@ -289,6 +358,94 @@ public class BoundingBox
     return this;
   }
   
+  /**
+   * Rotates by ang, whose cosine and sine are already known, 
+   * without calling any trig functions. Keeps the angle 
+   * between -pi and pi.
+   */
+  public BoundingBox rotateBy(double ang, double cosAng, double sinAng)
+  {
+    double c = cos(), s = sin();
+    double newCos = c * cosAng - s * sinAng;
+    double newSin = s * cosAng + c * sinAng;
+    
+    // correct the length, so rounding errors don't build up over many turns
+    double norm = 1.5 - 0.5 * (newCos * newCos + newSin * newSin);
+    cos = newCos * norm;
+    sin = newSin * norm;
+    
+    angle += ang;
+    if (angle > Math.PI)
+      angle -= 2 * Math.PI;
+    else if (angle < -Math.PI)
+      angle += 2 * Math.PI;
+    trigAngle = angle;
+    return this;
+  }
+  
+  /**
+   * Turns to face the direction (dirX, dirY), which doesn't have 
+   * to be normalized but must not be zero.
+   */
+  public BoundingBox setDirection(double dirX, double dirY)
+  {
+    double length = Math.hypot(dirX, dirY);
+    cos = dirX / length;
+    sin = dirY / length;
+    angle = MathProvider.get().atan2(dirY, dirX);
+    trigAngle = angle;
+    return this;
+  }
+  
+  /**
+   * @return The cosine of {@code angle}, only recalculated when it changes.
+   */
+  public double cos()
+  {
+    if (angle != trigAngle)
+      updateTrig();
+    return cos;
+  }
+  
+  /**
+   * @return The sine of {@code angle}, only recalculated when it changes.
+   */
+  public double sin()
+  {
+    if (angle != trigAngle)
+      updateTrig();
+    return sin;
+  }
+  
+  private void updateTrig()
+  {
+    MathProvider math = MathProvider.get();
+    cos = math.cos(angle);
+    sin = math.sin(angle);
+    trigAngle = angle;
+  }
+  
+  /**
+   * Saves the angle, with its cosine and sine as they are, since they 
+   * may differ slightly from what recalculating them would give. 
+   * The position and size belong to whoever owns this.
+   */
+  public void save(SnapshotWriter out)
+  {
+    out.putDouble(angle);
+    out.putDouble(cos);
+    out.putDouble(sin);
+    out.putDouble(trigAngle);
+  }
+  
+  public void load(SnapshotReader in)
+  {
+    angle = in.getDouble();
+    cos = in.getDouble();
+    sin = in.getDouble();
+    trigAngle = in.getDouble();
+  }
+  
   /**
    * 
    * @return Absolute coordinates.
@@ -333,9 +490,10 @@ public class BoundingBox
   public ArrayList<Vector2D> absCorners()
   {
     ArrayList<Vector2D> result = relCorners();
+    double c = cos(), s = sin();
     for (Vector2D v : result)
     {
-      v.rotateBy(angle);
+      v.rotateBy(c, s);
       v.add(position);
     }
     return result;
@@ -358,13 +516,14 @@ public class BoundingBox
    * @return An absolute position that will be somewhere inside
    * (or on relative -x and -y edge of) this.
    */
-  public Vector2D randomInteriorPos()
+  public Vector2D randomInteriorPos(BattleRandom random)
   {
-    Vector2D dx = new Vector2D(
-        Math.random() * (xMax - xMin) + xMin,
-        Math.random() * (yMax - yMin) + yMin);
-    dx.rotateBy(angle);
-    return position.plus(dx);
+    Vector2D pos = new Vector2D(
+        random.nextDouble() * (xMax - xMin) + xMin,
+        random.nextDouble() * (yMax - yMin) + yMin);
+    pos.rotateBy(cos(), sin());
+    pos.add(position);
+    return pos;
   }
   
   /**
@@ -378,47 +537,56 @@ public class BoundingBox
    */
   public Vector2D calcContainment(BoundingBox other)
   {
-    Vector2D trans = new Vector2D();
-    
-    List<Vector2D> corners = other.absCorners();
-    for (Vector2D c : corners)
-      c.set(toRelative(c)); // relative to this
+    return calcContainment(other, new Vector2D());
+  }
+  
+  /**
+   * Like {@code calcContainment(other)}, but stores the result in out
+   * instead of creating new vectors.
+   * 
+   * @return out
+   */
+  public Vector2D calcContainment(BoundingBox other, Vector2D out)
+  {
+    double transX = 0, transY = 0;
     
-    for (Vector2D c : corners)
+    for (int i = 0; i < 4; i++)
     {
+      Vector2D c = otherCornerInto(other, i, out); // relative to this
+      
       // x
       if (c.x > xMax)
       {
-        if (trans.x > 0)
-          return new Vector2D();
-        if (xMax - c.x < trans.x)
-          trans.x = xMax - c.x;
+        if (transX > 0)
+          return zero(out);
+        if (xMax - c.x < transX)
+          transX = xMax - c.x;
       }
       else if (c.x < xMin)
       {
-        if (trans.x < 0)
-          return new Vector2D();
-        if (xMin - c.x > trans.x)
-          trans.x = xMin - c.x;
+        if (transX < 0)
+          return zero(out);
+        if (xMin - c.x > transX)
+          transX = xMin - c.x;
       }
       
       // y
       if (c.y > yMax)
       {
-        if (trans.y > 0)
-          return new Vector2D();
-        if (yMax - c.y < trans.y)
-          trans.y = yMax - c.y;
+        if (transY > 0)
+          return zero(out);
+        if (yMax - c.y < transY)
+          transY = yMax - c.y;
       }
       else if (c.y < yMin)
       {
-        if (trans.y < 0)
-          return new Vector2D();
-        if (yMin - c.y > trans.y)
-          trans.y = yMin - c.y;
+        if (transY < 0)
+          return zero(out);
+        if (yMin - c.y > transY)
+          transY = yMin - c.y;
       }
     }
     
-    return toAbs(trans);
+    return toAbsInto(transX, transY, out);
   }
 }
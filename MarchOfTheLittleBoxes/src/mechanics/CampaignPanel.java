@@ -3,6 +3,7 @@ package mechanics;
 import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.List;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -16,7 +17,9 @@ import javax.swing.ListSelectionModel;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
-import mechanics.lineTool.LineTool;
+import mechanics.level.Level;
+import mechanics.level.LevelCache;
+import mechanics.metrics.jfr.FlightEvents;
 import runner.Main;
 
 /**
@@ -35,6 +38,7 @@ public class CampaignPanel extends ControlPanel
   protected JLabel resourceLabel;
   protected JList<String> levelList;
   protected JTabbedPane pane;
+  protected byte[] levelStart; // snapshot of the level as loaded
   
   public CampaignPanel(Battle battle, Main main, BattleWindow window)
   {
@@ -44,261 +48,55 @@ public class CampaignPanel extends ControlPanel
   }
 
   /** 
-   * Specifies the enemy arrangements, team zone, and
-   * background color on each campaign level.
+   * Sets up the enemy arrangements, team zone, and
+   * background color of a campaign level, from its level file.
    * <P>
    * This method will set {@code battle.selectedTeam} to 1 (blue/player team).
    * Additionally, the battle will be paused.
    */
-  protected void loadLevel(int level)
+  public void loadLevel(int level)
   {
+    Object event = FlightEvents.beginLevelLoad();
     battle.setPaused(true);
     battle.clearAll();
     battle.setSelectedTeam(0);
     
-    switch (level)
-    {
-    case 1: // the basics
-      levelResources = 5;
-      battle.setColor(Battle.GRASS);
-      battle.setAction("Melee Unit");
-      battle.newUnit(new Vector2D(400, 200), Math.PI/2, true);
-      break;
-    case 2: // divide and conquer
-      levelResources = 15;
-      battle.setColor(Battle.GRASS);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(300, 200), new Vector2D(500, 200), LineTool.EAST, 4);
-      battle.setTeamArea(new BoundingBox(new Vector2D(200, 100), new Vector2D(600, 300)));
-      break;
-    case 3: // hold the line?
-      levelResources = 35;
-      battle.setColor(Battle.GRASS);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(200, 100), new Vector2D(600, 100), LineTool.EAST, 10);
-      battle.setTeamArea(new BoundingBox(new Vector2D(), new Vector2D(799.9, 200)));
-      break;
-    case 4: // rapidfire
-      levelResources = 60;
-      battle.setColor(Battle.SAND);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(250, 200), new Vector2D(550, 200), LineTool.EAST, 5);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(325, 100), new Vector2D(475, 100), LineTool.EAST, 3);
-      battle.setTeamArea(new BoundingBox(new Vector2D(150, 0), new Vector2D(650, 300)));
-      break;
-    case 5: // monkey see
-      levelResources = 60;
-      battle.setColor(Battle.SAND);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(250, 100), new Vector2D(550, 100), LineTool.EAST, 5);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(200, 200), new Vector2D(600, 200), LineTool.EAST, 2);
-      battle.setTeamArea(new BoundingBox(new Vector2D(0, 0), new Vector2D(799.9, 300)));
-      break;
-    case 6: // monsters
-      levelResources = 40;
-      battle.setColor(Battle.SAND);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(250, 450), new Vector2D(550, 450), LineTool.EAST, 5);
-      battle.setAction("Juggernaut");
-      battle.newUnit(new Vector2D(400, 350), 0, true);
-      battle.setTeamArea(new BoundingBox(new Vector2D(150, 200), new Vector2D(650, 600)));
-      break;
-    case 7: // crossfire
-      levelResources = 100;
-      battle.setColor(Battle.SAND);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(250, 300), new Vector2D(380, 100), LineTool.EAST, 5);
-      LineTool.doLineTool(battle, new Vector2D(550, 300), new Vector2D(420, 100), LineTool.EAST, 5);
-      battle.setTeamArea(new BoundingBox(new Vector2D(150, 50), new Vector2D(650, 350)));
-      break;
-    case 8: // lateral
-      levelResources = 50;
-      battle.setColor(Battle.DIRT);
-      battle.setAction("Smart Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(100, 100), new Vector2D(200, 100), LineTool.EAST, 3);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D (500, 100), new Vector2D(700, 100), LineTool.EAST, 5);
-      battle.setTeamArea(new BoundingBox(new Vector2D(0, 0), new Vector2D(799.9, 200)));
-      break;
-    case 9: // from behind
-      levelResources = 100;
-      battle.setColor(Battle.DIRT);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(200, 100), new Vector2D(600, 100), LineTool.EAST, 7);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(150, 200), new Vector2D(650, 200), LineTool.EAST, 2);
-      battle.setAction("Smart Ranged Unit");
-      battle.newUnit(new Vector2D(400, 700), 0, true);
-      battle.setTeamArea(new BoundingBox(new Vector2D(0, 0), new Vector2D(799.9, 300)));
-      break;
-    case 10: // the horde
-      levelResources = 100;
-      battle.setColor(Battle.GRASS);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(100, 50), new Vector2D(700, 50), LineTool.EAST, 11);
-      LineTool.doLineTool(battle, new Vector2D(100, 100), new Vector2D(700, 100), LineTool.EAST, 11);
-      LineTool.doLineTool(battle, new Vector2D(100, 150), new Vector2D(700, 150), LineTool.EAST, 11);
-      battle.setTeamArea(new BoundingBox(new Vector2D(0, 0), new Vector2D(799.9, 200)));
-      break;
-    case 11: // stonewalling
-      levelResources = 100;
-      battle.setColor(Battle.GRASS);
-      battle.setAction("Shield Bearer");
-      LineTool.doLineTool(battle, new Vector2D(200, 100), new Vector2D(600, 100), LineTool.EAST, 7);
-      battle.setAction("Smart Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(267, 50), new Vector2D(533, 50), LineTool.EAST, 3);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(100, 100), new Vector2D(700, 100), LineTool.EAST, 2);
-      battle.setTeamArea(new BoundingBox(new Vector2D(0, 0), new Vector2D(799.9, 250)));
-      break;
-    case 12: // fight in the shade
-      levelResources = 100;
-      battle.setColor(Battle.STONE);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(100, 100), new Vector2D(700, 100), LineTool.EAST, 13);
-      battle.setTeamArea(new BoundingBox(new Vector2D(0, 0), new Vector2D(799.9, 200)));
-      break;
-    case 13: // unbalanced
-      levelResources = 100;
-      battle.setColor(Battle.SAND);
-      battle.setAction("Cannon");
-      LineTool.doLineTool(battle, new Vector2D(675, 100), new Vector2D(700, 100), LineTool.EAST, 2);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(200, 100), new Vector2D(600, 100), LineTool.EAST, 9);
-      battle.setAction("Juggernaut");
-      battle.newUnit(new Vector2D(100, 100), Math.PI/2, false);
-      battle.setTeamArea(new BoundingBox(new Vector2D(0, 0), new Vector2D(799.9, 200)));
-      break;
-    case 14: // bait
-      levelResources = 70;
-      battle.setColor(Battle.SAND);
-      battle.setAction("Cannon");
-      battle.newUnit(new Vector2D(400, 200), 0, true);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(200, 300), new Vector2D(300, 300), LineTool.EAST, 3);
-      LineTool.doLineTool(battle, new Vector2D(500, 300), new Vector2D(600, 300), LineTool.EAST, 3);
-      battle.setTeamArea(new BoundingBox(new Vector2D(100, 100), new Vector2D(700, 400)));
-      break;
-    case 15: // fish in a barrel?
-      levelResources = 70;
-      battle.setColor(Battle.STONE);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(350, 350), new Vector2D(450, 350), LineTool.EAST, 5);
-      LineTool.doLineTool(battle, new Vector2D(350, 375), new Vector2D(450, 375), LineTool.EAST, 5);
-      LineTool.doLineTool(battle, new Vector2D(350, 400), new Vector2D(450, 400), LineTool.EAST, 5);
-      LineTool.doLineTool(battle, new Vector2D(350, 425), new Vector2D(450, 425), LineTool.EAST, 5);
-      LineTool.doLineTool(battle, new Vector2D(350, 450), new Vector2D(450, 450), LineTool.EAST, 5);
-      battle.setTeamArea(new BoundingBox(new Vector2D(300, 300), new Vector2D(500, 500)));
-      break;
-    case 16: // hammer and anvil
-      levelResources = 100;
-      battle.setColor(Battle.SNOW);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(200, 100), new Vector2D(600, 100), LineTool.EAST, 9);
-      battle.setAction("Juggernaut");
-      battle.newUnit(new Vector2D(100, 100), Math.PI/2, false);
-      battle.newUnit(new Vector2D(700, 100), Math.PI/2, false);
-      battle.setAction("Charger");
-      LineTool.doLineTool(battle, new Vector2D(200, 790), new Vector2D(600, 790), LineTool.WEST, 5);
-      battle.setTeamArea(new BoundingBox(new Vector2D(), new Vector2D(799.9, 200)));
-      break;
-    case 17: // dropping like flies
-      levelResources = 100;
-      battle.setColor(Battle.SNOW);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(200, 100), new Vector2D(600, 100), LineTool.EAST, 9);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(100, 100), new Vector2D(700, 100), LineTool.EAST, 2);
-      battle.setAction("Laser Unit");
-      battle.newUnit(new Vector2D(400, 50), 0, true);
-      battle.setTeamArea(new BoundingBox(new Vector2D(), new Vector2D(799.9, 400)));
-      break;
-    case 18: // touch of death
-      levelResources = 100;
-      battle.setColor(Battle.GRASS);
-      battle.setAction("Melee Unit");
-      LineTool.doLineTool(battle, new Vector2D(200, 200), new Vector2D(600, 200), LineTool.EAST, 9);
-      LineTool.doLineTool(battle, new Vector2D(250, 250), new Vector2D(550, 250), LineTool.EAST, 7);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(200, 250), new Vector2D(600, 250), LineTool.EAST, 2);
-      battle.setAction("Resurrector");
-      battle.newUnit(new Vector2D(400, 100), 0, true);
-      battle.setTeamArea(new BoundingBox(new Vector2D(50, 0), new Vector2D(750, 400)));
-      break;
-    case 19: // postmortal
-      levelResources = 150;
-      battle.setColor(Battle.GRASS);
-      battle.setAction("Juggernaut");
-      LineTool.doLineTool(battle, new Vector2D(200, 100), new Vector2D(600, 100), LineTool.EAST, 5);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(100, 150), new Vector2D(200, 150), LineTool.EAST, 3);
-      LineTool.doLineTool(battle, new Vector2D(600, 150), new Vector2D(700, 150), LineTool.EAST, 3);
-      battle.setAction("Smart Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(300, 50), new Vector2D(500, 50), LineTool.EAST, 3);
-      battle.setTeamArea(new BoundingBox(new Vector2D(), new Vector2D(799.9, 200)));
-      break;
-    case 20: // columnar
-      levelResources = 100;
-      battle.setColor(Battle.SAND);
-      battle.setAction("Charger");
-      LineTool.doLineTool(battle, new Vector2D(400, 25), new Vector2D(400, 300), LineTool.NORTH, 12);
-      LineTool.doLineTool(battle, new Vector2D(300, 150), new Vector2D(300, 350), LineTool.EAST, 5);
-      LineTool.doLineTool(battle, new Vector2D(500, 150), new Vector2D(500, 350), LineTool.WEST, 5);
-      battle.setTeamArea(new BoundingBox(new Vector2D(100, 0), new Vector2D(700, 400)));
-      break;
-    case 21: // toeholds
-      levelResources = 100;
-      battle.setColor(Battle.SAND);
-      battle.setAction("Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(100, 350), new Vector2D(700, 350), LineTool.WEST, 7);
-      LineTool.doLineTool(battle, new Vector2D(100, 450), new Vector2D(700, 450), LineTool.EAST, 7);
-      battle.setTeamArea(new BoundingBox(new Vector2D(50, 50), new Vector2D(750, 750)));
-      break;
-    case 22: // propulsion
-      levelResources = 100;
-      battle.setColor(Battle.STONE);
-      battle.setAction("Shield Bearer");
-      LineTool.doLineTool(battle, new Vector2D(300, 150), new Vector2D(500, 150), LineTool.EAST, 7);
-      battle.setAction("Charger");
-      LineTool.doLineTool(battle, new Vector2D(300, 125), new Vector2D(500, 125), LineTool.EAST, 7);
-      battle.setTeamArea(new BoundingBox(new Vector2D(), new Vector2D(799.9, 200)));
-      break;
-    case 23: // crushers
-      levelResources = 100;
-      battle.setColor(Battle.DIRT);
-      battle.setAction("Juggernaut");
-      LineTool.doLineTool(battle, new Vector2D(100, 150), new Vector2D(700, 150), LineTool.EAST, 7);
-      battle.setTeamArea(new BoundingBox(new Vector2D(), new Vector2D(799.9, 200)));
-      break;
-    case 24: // autofocus
-      levelResources = 100;
-      battle.setColor(Battle.SAND);
-      battle.setAction("Smart Ranged Unit");
-      LineTool.doLineTool(battle, new Vector2D(100, 150), new Vector2D(700, 150), LineTool.EAST, 13);
-      battle.setTeamArea(new BoundingBox(new Vector2D(), new Vector2D(799.9, 300)));
-      break;
-    case 25: // who's who
-      levelResources = 100;
-      battle.setColor(Battle.GRASS);
-      setTypes(0);
-      for (int i = 0; i < types.length; i++)
-      {
-        battle.setAction(types[i]);
-        battle.newUnit(new Vector2D(100 + i * 600.0/types.length, 100), Math.PI/2, false);
-      }
-      battle.setTeamArea(new BoundingBox(new Vector2D(), new Vector2D(799.9, 200)));
-    }
+    Level data = LevelCache.campaign().get(level - 1);
+    levelResources = data.budget();
+    battle.setColor(data.background());
+    data.placeUnits(battle);
+    battle.setTeamArea(data.area());
     
     resources = levelResources;
     refreshResourceLabel();
     battle.setAction((String)actionList.getSelectedValue());
     battle.setSelectedTeam(1);
+    levelStart = battle.snapshot();
+    FlightEvents.endLevelLoad(event, level, battle.units().size());
+  }
+  
+  /**
+   * Puts the level back as it was when loaded, from a snapshot rather 
+   * than by building it again, so it also plays out the same as the 
+   * first time. The battle will be paused.
+   */
+  public void resetLevel()
+  {
+    if (levelStart == null)
+    {
+      loadLevel(level);
+      return;
+    }
+    
+    battle.setPaused(true);
+    battle.restore(levelStart);
+    resources = levelResources;
+    refreshResourceLabel();
   }
   
   /**
-   * Specifies different units available in each campaign level.
+   * Specifies different units available in each campaign level,
+   * as given in its level file.
    * The price of a unit is specified by the number in brackets.
    * <P>
    * Entries must be in the format {@code "[price] Unit Name"} for the
@@ -311,138 +109,9 @@ public class CampaignPanel extends ControlPanel
   {
     super.setTypes(level); // shouldn't be necessary in campaign mode
     
-    switch (level)
-    {
-    case 1: // the basics
-    case 2: // divide and conquer
-    case 3: // hold the line?
-    case 4: // rapidfire
-      types = new String[] {
-          "Remove (click target)", 
-          "[5] Melee Unit"
-      };
-      return;
-    case 5: // monkey see
-    case 6: // monsters
-      types = new String[] {
-          "Remove (click target)",
-          "[5] Melee Unit",
-          "[20] Ranged Unit"
-      };
-      return;
-    case 7: // crossfire
-      types = new String[] {
-          "Remove (click target)",
-          "[5] Melee Unit",
-          "[20] Ranged Unit",
-          "[25] Juggernaut"
-      };
-      return;
-    case 8: // lateral
-      types = new String[] {
-          "Remove (click target)",
-          "[8] Melee Unit",
-          "[12] Ranged Unit",
-          "[25] Juggernaut"
-      };
-    case 9: // from behind
-      types = new String[] {
-          "Remove (click target)",
-          "[10] Melee Unit",
-          "[20] Ranged Unit",
-          "[25] Juggernaut",
-          "[30] Smart Ranged Unit"
-      };
-      return;
-    case 10: // the horde
-    case 11: // stonewalling
-      types = new String[] {
-          "Remove (click target)",
-          "[5] Melee Unit",
-          "[25] Ranged Unit",
-          "[25] Juggernaut",
-          "[15] Smart Ranged Unit"
-      };
-      return;
-    case 12: // fight in the shade
-      types = new String[] {
-          "Remove (click target)",
-          "[5] Melee Unit",
-          "[25] Ranged Unit",
-          "[25] Juggernaut",
-          "[15] Smart Ranged Unit",
-          "[30] Shield Bearer"
-      };
-      return;
-    case 13: // unbalanced
-      types = new String[] {
-          "Remove (click target)",
-          "[5] Melee Unit",
-          "[20] Ranged Unit",
-          "[25] Juggernaut",
-          "[15] Smart Ranged Unit",
-          "[30] Shield Bearer"
-      };
-      return;
-    case 14: // bait
-    case 15: // fish in a barrel?
-    case 16: // hammer and anvil
-      types = new String[] {
-          "Remove (click target)",
-          "[5] Melee Unit",
-          "[20] Ranged Unit",
-          "[25] Juggernaut",
-          "[15] Smart Ranged Unit",
-          "[30] Shield Bearer",
-          "[30] Cannon"
-      };
-      return;
-    case 17: // dropping like flies
-      types = new String[] {
-          "Remove (click target)",
-          "[5] Melee Unit",
-          "[20] Ranged Unit",
-          "[25] Juggernaut",
-          "[15] Smart Ranged Unit",
-          "[30] Shield Bearer",
-          "[30] Cannon",
-          "[25] Charger"
-      };
-      return;
-    case 18: // touch of death
-      types = new String[] {
-        "Remove (click target)",
-        "[5] Melee Unit",
-        "[20] Ranged Unit",
-        "[25] Juggernaut",
-        "[15] Smart Ranged Unit",
-        "[30] Shield Bearer",
-        "[30] Cannon",
-        "[25] Charger",
-        "[35] Laser Unit"
-      };
-    return;
-    case 19: // postmortal
-    case 20: // columnar
-    case 21: // toeholds
-    case 22: // propulsion
-    case 23: // crushers
-    case 24: // autofocus
-    case 25: // who's who
-      types = new String[] {
-        "Remove (click target)",
-        "[5] Melee Unit",
-        "[15] Ranged Unit",
-        "[25] Juggernaut",
-        "[15] Smart Ranged Unit",
-        "[30] Shield Bearer",
-        "[30] Cannon",
-        "[25] Charger",
-        "[35] Laser Unit",
-        "[40] Resurrector"
-      };
-    return;
-    }
+    List<Level> levels = LevelCache.campaign();
+    if (level >= 1 && level <= levels.size())
+      types = levels.get(level - 1).actions();
   }
 
   /**
@@ -464,6 +133,15 @@ public class CampaignPanel extends ControlPanel
     return resources;
   }
   
+  /**
+   * @return Whether the remaining resources can't buy anything.
+   */
+  public boolean isBankrupt()
+  {
+    int cheapest = prices().cheapest();
+    return cheapest == 0 || cheapest > resources;
+  }
+  
   protected void refreshResourceLabel()
   {
     resourceLabel.setText("Remaining: " + resources + " / " + levelResources);
@@ -493,6 +171,14 @@ public class CampaignPanel extends ControlPanel
     this.add(back, BorderLayout.SOUTH);
   }
   
+  /**
+   * @return The number of campaign levels. Levels are numbered from 1.
+   */
+  public int levelCount()
+  {
+    return levelList.getModel().getSize();
+  }
+  
   /**
    * The level names are set in here.
    */
@@ -502,33 +188,10 @@ public class CampaignPanel extends ControlPanel
     levelTab.setLayout(new BoxLayout(levelTab, BoxLayout.Y_AXIS));
     levelTab.setBorder(BorderFactory.createTitledBorder("Campaign levels"));
     
-    String[] levelNames = {
-        "Level 1: The basics",
-        "Level 2: Divide and conquer",
-        "Level 3: Hold the line?",
-        "Level 4: Rapidfire",
-        "Level 5: Monkey see",
-        "Level 6: Monsters",
-        "Level 7: Crossfire",
-        "Level 8: Lateral",
-        "Level 9: From behind",
-        "Level 10: The horde",
-        "Level 11: Stonewalling",
-        "Level 12: Fight in the shade",
-        "Level 13: Unbalanced",
-        "Level 14: Bait",
-        "Level 15: Fish in a barrel?",
-        "Level 16: Hammer and anvil",
-        "Level 17: Dropping like flies",
-        "Level 18: Touch of death",
-        "Level 19: Postmortal",
-        "Level 20: Columnar",
-        "Level 21: Toeholds",
-        "Level 22: Propulsion",
-        "Level 23: Crushers",
-        "Level 24: Autofocus",
-        "Level 25: Who's who"
-    };
+    List<Level> levels = LevelCache.campaign();
+    String[] levelNames = new String[levels.size()];
+    for (int i = 0; i < levelNames.length; i++)
+      levelNames[i] = "Level " + (i + 1) + ": " + levels.get(i).name();
     
     levelList = new JList<String>(levelNames);
     levelList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -599,7 +262,7 @@ public class CampaignPanel extends ControlPanel
     {
       public void actionPerformed(ActionEvent e)
       {
-        loadLevel(level);
+        resetLevel();
       }
     });
     
@@ -616,6 +279,10 @@ public class CampaignPanel extends ControlPanel
     lineTool.setActionCommand("line tool");
     lineTool.addActionListener(this);
     
+    JButton formationTool = new JButton("Formation Tool");
+    formationTool.setActionCommand("formation tool");
+    formationTool.addActionListener(this);
+    
     messageHint = new JLabel();
     JButton levels = new JButton("Back to level select");
     levels.addActionListener(new ActionListener() 
@@ -638,6 +305,8 @@ public class CampaignPanel extends ControlPanel
     addLeft(resourceLabel, playTab);
     addSpace(12, playTab);
     addLeft(lineTool, playTab);
+    addSpace(5, playTab);
+    addLeft(formationTool, playTab);
     addSpace(12, playTab);
     bottom.add(messageHint, BorderLayout.NORTH);
     bottom.add(levels, BorderLayout.SOUTH);
@@ -5,17 +5,20 @@ import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
@@ -34,7 +37,10 @@ public class ControlPanel extends JPanel
   implements ActionListener
 {
   protected Battle battle;
-  private JButton startStop, clearAll, resurrectAll, graphicsOptions, lineTool, backToMenu;
+  private JButton startStop, clearAll, resurrectAll, graphicsOptions, lineTool, formationTool, backToMenu;
+  private JButton save, load;
+  private JComboBox<String> slotSelector;
+  private SaveSlots saveSlots;
   private JLabel previewLabel;
   protected JScrollPane actionSelector, teamSelector;
   protected JList<String> actionList, teamList;
@@ -42,6 +48,7 @@ public class ControlPanel extends JPanel
   protected JPanel bottom;
   protected JLabel messageHint;
   protected String[] types;
+  private volatile PriceList prices;
   protected Main main;
   protected BattleWindow window;
   protected GraphicsOptions graphicsDialog;
@@ -119,6 +126,30 @@ public class ControlPanel extends JPanel
     lineTool.setActionCommand("line tool");
     lineTool.addActionListener(this);
     
+    formationTool = new JButton("Formation tool");
+    formationTool.setActionCommand("formation tool");
+    formationTool.addActionListener(this);
+    
+    saveSlots = new SaveSlots(battle);
+    slotSelector = new JComboBox<String>();
+    refreshSlots();
+    slotSelector.setMaximumSize(new Dimension(180, 
+        slotSelector.getPreferredSize().height));
+    
+    save = new JButton("Quick save");
+    save.setActionCommand("save");
+    save.addActionListener(this);
+    
+    load = new JButton("Load");
+    load.setActionCommand("load");
+    load.addActionListener(this);
+    
+    JPanel saveButtons = new JPanel();
+    saveButtons.setLayout(new BoxLayout(saveButtons, BoxLayout.X_AXIS));
+    saveButtons.add(save);
+    saveButtons.add(Box.createRigidArea(new Dimension(5, 0)));
+    saveButtons.add(load);
+    
     bottom = new JPanel(new BorderLayout());
     
     messageHint = new JLabel();
@@ -145,6 +176,12 @@ public class ControlPanel extends JPanel
     addSpace(12, this);
     addLeft(lineTool, this);
     addSpace(5, this);
+    addLeft(formationTool, this);
+    addSpace(12, this);
+    addLeft(slotSelector, this);
+    addSpace(5, this);
+    addLeft(saveButtons, this);
+    addSpace(5, this);
     bottom.add(messageHint, BorderLayout.NORTH);
 //    bottom.add(Box.createRigidArea(new Dimension(0, 12)), BorderLayout.SOUTH);
     bottom.add(backToMenu, BorderLayout.SOUTH);
@@ -213,12 +250,87 @@ public class ControlPanel extends JPanel
       setText("Click line endpoints");
       battle.startLineTool();
     }
+    else if (e.getActionCommand().equals("formation tool"))
+    {
+      setText("Click opposite corners");
+      battle.startFormationTool();
+    }
+    else if (e.getActionCommand().equals("save"))
+    {
+      saveToSlot(slotSelector.getSelectedIndex() + 1);
+    }
+    else if (e.getActionCommand().equals("load"))
+    {
+      loadFromSlot(slotSelector.getSelectedIndex() + 1);
+    }
     else if (e.getActionCommand().equals("menu"))
     {
       backToMain();
     }
   }
   
+  /**
+   * Saves the battle to the slot. The battle carries on while the
+   * save is written.
+   */
+  private void saveToSlot(final int slot)
+  {
+    setText("Saving...");
+    saveSlots.save(slot, new SaveSlots.Callback()
+    {
+      public void finished(final IOException error)
+      {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+          public void run()
+          {
+            if (error != null)
+            {
+              error.printStackTrace();
+              setText("Couldn't save to slot " + slot);
+            }
+            else
+            {
+              setText("Saved to slot " + slot);
+            }
+            refreshSlots();
+          }
+        });
+      }
+    });
+  }
+  
+  private void loadFromSlot(int slot)
+  {
+    try
+    {
+      if (saveSlots.load(slot))
+        setText("Loaded slot " + slot);
+      else
+        setText("Slot " + slot + " is empty");
+    }
+    catch (IOException ex)
+    {
+      ex.printStackTrace();
+      setText("Couldn't load slot " + slot);
+    }
+  }
+  
+  /**
+   * Updates the slot names with what is saved in them.
+   */
+  private void refreshSlots()
+  {
+    int selected = Math.max(slotSelector.getSelectedIndex(), 0);
+    slotSelector.removeAllItems();
+    for (int i = 1; i <= saveSlots.slots(); i++)
+    {
+      String saved = saveSlots.describe(i);
+      slotSelector.addItem("Slot " + i + ": " + ((saved == null)? "empty" : saved));
+    }
+    slotSelector.setSelectedIndex(selected);
+  }
+  
   public void setText(String s)
   {
     messageHint.setText(s);
@@ -262,6 +374,17 @@ public class ControlPanel extends JPanel
     return types;
   }
   
+  /**
+   * @return The prices in {@code types}, read again only when it changes.
+   */
+  public PriceList prices()
+  {
+    PriceList p = prices;
+    if (p == null || !p.isFor(types))
+      prices = p = new PriceList(types);
+    return p;
+  }
+  
   public void clearGraphicsDialog()
   {
     graphicsDialog = null;
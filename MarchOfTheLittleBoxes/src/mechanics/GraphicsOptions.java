@@ -18,7 +18,8 @@ import javax.swing.JPanel;
  * File: src/mechanics/GraphicsOptions.java
  * <P>
  * A small pop-up dialog to control options 
- * for particles and antialiasing.
+ * for particles, antialiasing, the math mode
+ * and the performance overlay.
  * 
  * @author Samuel Tan
  *
@@ -26,7 +27,7 @@ import javax.swing.JPanel;
 public class GraphicsOptions extends JDialog
 {
   private Battle battle;
-  private JButton particles, antialiasing;
+  private JButton particles, antialiasing, math, overlay;
   
   public GraphicsOptions(JFrame window, Battle battle, ControlPanel controlPanel)
   {
@@ -72,8 +73,33 @@ public class GraphicsOptions extends JDialog
       }
     });
     
+    math = new JButton();
+    updateMathButton();
+    math.addActionListener(new ActionListener()
+    {
+      public void actionPerformed(ActionEvent e)
+      {
+        MathProvider.set((MathProvider.get() == MathProvider.FAST)? 
+            MathProvider.STRICT : MathProvider.FAST);
+        updateMathButton();
+      }
+    });
+    
+    overlay = new JButton();
+    updateOverlayButton();
+    overlay.addActionListener(new ActionListener()
+    {
+      public void actionPerformed(ActionEvent e)
+      {
+        battle.setProfilerOverlay(!battle.profilerOverlay());
+        updateOverlayButton();
+      }
+    });
+    
     buttons.add(particles);
     buttons.add(antialiasing);
+    buttons.add(math);
+    buttons.add(overlay);
     buttons.setBorder(BorderFactory.createTitledBorder("Options"));
     
     content.add(buttons, BorderLayout.CENTER);
@@ -91,7 +117,7 @@ public class GraphicsOptions extends JDialog
     bottom.add(ok);
     content.add(bottom, BorderLayout.SOUTH);
     
-    content.setPreferredSize(new Dimension(200, 130));
+    content.setPreferredSize(new Dimension(220, 190));
     
     setContentPane(content);
     pack();
@@ -109,4 +135,15 @@ public class GraphicsOptions extends JDialog
     String newString = (battle.antialiasing())? "Enabled" : "Disabled";
     antialiasing.setText("Antialiasing: " + newString);
   }
+  
+  private void updateMathButton()
+  {
+    math.setText("Math: " + MathProvider.get().name());
+  }
+  
+  private void updateOverlayButton()
+  {
+    String newString = (battle.profilerOverlay())? "Shown" : "Hidden";
+    overlay.setText("Performance: " + newString);
+  }
 }
@@ -0,0 +1,159 @@
+package mechanics;
+
+/**
+ * File: src/mechanics/MathProvider.java
+ * <P>
+ * The trig functions used by the game's geometry ({@code Vector2D} and
+ * {@code BoundingBox}). There are two modes:
+ * <ul>
+ * <li>{@code STRICT} passes everything to {@code java.lang.Math}.</li>
+ * <li>{@code FAST} looks sin and cos up in a table and approximates
+ * atan2 with a polynomial. It is accurate to within {@code SIN_COS_ERROR}
+ * and {@code ATAN2_ERROR}, which is far below a pixel, but the results
+ * are not identical to strict mode.</li>
+ * </ul>
+ * The mode is global and can be switched at any time with {@code set()}.
+ * {@code runner.MathCheck} checks that {@code FAST} keeps to its bounds.
+ *
+ * @author Samuel Tan
+ *
+ */
+public abstract class MathProvider
+{
+  /**
+   * The most that {@code FAST.sin()} and {@code FAST.cos()} can differ
+   * from the exact value, for angles between -1000 and 1000 radians.
+   */
+  public static final double SIN_COS_ERROR = 3.0e-7;
+
+  /**
+   * The most that {@code FAST.atan2()} can differ from the exact value,
+   * in radians.
+   */
+  public static final double ATAN2_ERROR = 2.0e-6;
+
+  public static final MathProvider STRICT = new MathProvider()
+  {
+    public double sin(double a)
+    {
+      return Math.sin(a);
+    }
+
+    public double cos(double a)
+    {
+      return Math.cos(a);
+    }
+
+    public double atan2(double y, double x)
+    {
+      return Math.atan2(y, x);
+    }
+
+    public String name()
+    {
+      return "Strict";
+    }
+  };
+
+  public static final MathProvider FAST = new FastMath();
+
+  private static volatile MathProvider current = STRICT;
+
+  /**
+   * @return The provider currently in use.
+   */
+  public static MathProvider get()
+  {
+    return current;
+  }
+
+  public static void set(MathProvider provider)
+  {
+    current = provider;
+  }
+
+  public abstract double sin(double a);
+
+  public abstract double cos(double a);
+
+  /**
+   * @return The angle of (x, y), as in {@code Math.atan2}.
+   */
+  public abstract double atan2(double y, double x);
+
+  /**
+   * @return A short name for the mode, for display.
+   */
+  public abstract String name();
+
+  /**
+   * Tabulated sin and cos, with linear interpolation between entries,
+   * and an odd polynomial for atan on [0, 1].
+   */
+  private static class FastMath extends MathProvider
+  {
+    private static final int SIZE = 4096; // must be a power of 2
+    private static final double SCALE = SIZE / (2 * Math.PI);
+
+    // minimax coefficients for atan(z), 0 <= z <= 1
+    private static final double
+      A1 = 0.99997726, A3 = -0.33262347, A5 = 0.19354346,
+      A7 = -0.11643287, A9 = 0.05265332, A11 = -0.01172120;
+
+    private final double[] table; // sin, with one extra entry to interpolate to
+
+    private FastMath()
+    {
+      table = new double[SIZE + 1];
+      for (int i = 0; i <= SIZE; i++)
+        table[i] = Math.sin(i / SCALE);
+    }
+
+    public double sin(double a)
+    {
+      return lookup(a * SCALE, 0);
+    }
+
+    public double cos(double a)
+    {
+      return lookup(a * SCALE, SIZE / 4);
+    }
+
+    /**
+     * @param t Angle measured in table entries.
+     * @param offset Entries to shift by; a quarter turn gives cos.
+     */
+    private double lookup(double t, int offset)
+    {
+      double floor = Math.floor(t);
+      double frac = t - floor;
+      int i = (int) ((long) floor + offset) & (SIZE - 1);
+      return table[i] + frac * (table[i + 1] - table[i]);
+    }
+
+    public double atan2(double y, double x)
+    {
+      double ax = Math.abs(x), ay = Math.abs(y);
+      double max = Math.max(ax, ay), min = Math.min(ax, ay);
+
+      // zeros, infinities and NaN
+      if (!(max > 0 && max < Double.POSITIVE_INFINITY) || min != min)
+        return Math.atan2(y, x);
+
+      double z = min / max;
+      double z2 = z * z;
+      double a = z * (A1 + z2 * (A3 + z2 * (A5 + z2 * (A7 + z2 * (A9 + z2 * A11)))));
+
+      if (ay > ax)
+        a = Math.PI / 2 - a;
+      if (x < 0)
+        a = Math.PI - a;
+      return Math.copySign(a, y);
+    }
+
+    public String name()
+    {
+      return "Fast";
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package mechanics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * File: src/mechanics/PriceList.java
+ * <P>
+ * The prices in a list of actions, each in the format
+ * {@code "[price] Unit Name"}, read once so that looking up a price
+ * doesn't have to parse the list again. Prices can be looked up by
+ * the action or by the unit's name; anything else costs nothing.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class PriceList
+{
+  private final String[] actions;
+  private final Map<String, Integer> prices;
+  private final int cheapest;
+
+  public PriceList(String[] actions)
+  {
+    this.actions = actions;
+    prices = new HashMap<String, Integer>();
+
+    int min = 0;
+    for (String action : actions)
+    {
+      if (!action.startsWith("["))
+        continue;
+
+      int end = action.indexOf("]", 1);
+      int price;
+      try
+      {
+        price = Integer.parseInt(action.substring(1, end));
+      }
+      catch (NumberFormatException | StringIndexOutOfBoundsException ex)
+      {
+        ex.printStackTrace();
+        continue;
+      }
+
+      // the first entry for a name is the one that counts
+      if (!prices.containsKey(action))
+        prices.put(action, price);
+      String name = action.substring(Math.min(end + 2, action.length()));
+      if (!prices.containsKey(name))
+        prices.put(name, price);
+
+      if (price > 0 && (min == 0 || price < min))
+        min = price;
+    }
+    cheapest = min;
+  }
+
+  /**
+   * @param name An action, or the name of a unit type.
+   * @return Its price, or 0 if it has none.
+   */
+  public int price(String name)
+  {
+    Integer p = prices.get(name);
+    return (p == null)? 0 : p;
+  }
+
+  /**
+   * @return The lowest price above 0, or 0 if nothing has one.
+   */
+  public int cheapest()
+  {
+    return cheapest;
+  }
+
+  /**
+   * @return Whether this is the price list of exactly that array of actions.
+   */
+  public boolean isFor(String[] actions)
+  {
+    return this.actions == actions;
+  }
+}
@@ -0,0 +1,274 @@
+package mechanics;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * File: src/mechanics/SaveSlots.java
+ * <P>
+ * Quick-save slots for a battle, kept as files in a directory, by default
+ * {@code ~/.motlb/saves} (or {@code -Dmotlb.saveDir}). Saving takes a
+ * snapshot of the battle between ticks, without pausing it, and finishes
+ * and writes it on a background thread, so the battle only waits for
+ * its state to be copied. Particles are left out. Each file is a short header
+ * followed by the snapshot:
+ * <pre>
+ * MAGIC VERSION savedAt(ms) tick units snapshotLength snapshot
+ * </pre>
+ * A file is written under another name and then moved into place, so
+ * a slot never holds half a save.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class SaveSlots
+{
+  public static final int DEFAULT_SLOTS = 5;
+  private static final int MAGIC = 0x4D4F4C51; // "MOLQ"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+
+  private final Battle battle;
+  private final Path directory;
+  private final int slots;
+  private final ExecutorService writer;
+
+  public SaveSlots(Battle battle)
+  {
+    this(battle, defaultDirectory(), DEFAULT_SLOTS);
+  }
+
+  public SaveSlots(Battle battle, Path directory, int slots)
+  {
+    this.battle = battle;
+    this.directory = directory;
+    this.slots = slots;
+    writer = Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r, "save writer");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  public static Path defaultDirectory()
+  {
+    String dir = System.getProperty("motlb.saveDir");
+    if (dir != null)
+      return Paths.get(dir);
+    return Paths.get(System.getProperty("user.home"), ".motlb", "saves");
+  }
+
+  /**
+   * Saves the battle to a slot, replacing what was there. Returns once
+   * the battle's state is copied; the snapshot is put together and the
+   * file written in the background.
+   *
+   * @param done Run on the background thread once the file is written
+   *             (with null) or couldn't be (with the exception). May be null.
+   */
+  public void save(final int slot, final Callback done)
+  {
+    checkSlot(slot);
+    final SnapshotWriter snapshot = battle.capture(false);
+    final long savedAt = System.currentTimeMillis();
+
+    writer.execute(new Runnable()
+    {
+      public void run()
+      {
+        IOException error = null;
+        try
+        {
+          write(slot, snapshot.toByteArray(battle.width(), battle.height()),
+              savedAt, snapshot.tick(), snapshot.unitCount());
+        }
+        catch (IOException ex)
+        {
+          error = ex;
+        }
+        if (done != null)
+          done.finished(error);
+      }
+    });
+  }
+
+  private void write(int slot, byte[] snapshot, long savedAt, long tick, int units)
+      throws IOException
+  {
+    Files.createDirectories(directory);
+    Path temp = directory.resolve("slot" + slot + ".tmp");
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC);
+    header.putInt(VERSION);
+    header.putLong(savedAt);
+    header.putLong(tick);
+    header.putInt(units);
+    header.putInt(snapshot.length);
+    header.flip();
+
+    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+    {
+      ByteBuffer[] buffers = { header, ByteBuffer.wrap(snapshot) };
+      while (buffers[1].hasRemaining())
+        out.write(buffers);
+      out.force(false);
+    }
+    Files.move(temp, file(slot), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Restores the battle from a slot. Waits for any saves still being
+   * written first, so the latest save is the one loaded.
+   *
+   * @return false if the slot is empty.
+   * @throws IOException If the file couldn't be read, or isn't a save.
+   */
+  public boolean load(int slot) throws IOException
+  {
+    checkSlot(slot);
+    flush();
+    if (!Files.exists(file(slot)))
+      return false;
+
+    byte[] snapshot;
+    try (DataInputStream in = open(slot))
+    {
+      in.readLong(); // saved at
+      in.readLong(); // tick
+      in.readInt(); // units
+      snapshot = new byte[in.readInt()];
+      in.readFully(snapshot);
+    }
+
+    try
+    {
+      battle.restore(snapshot);
+    }
+    catch (IllegalArgumentException ex)
+    {
+      throw new IOException("Slot " + slot + " can't be loaded: " + ex.getMessage(), ex);
+    }
+    return true;
+  }
+
+  /**
+   * @return A short description of what's in the slot, read from
+   * the header only, or null if it's empty or unreadable.
+   */
+  public String describe(int slot)
+  {
+    checkSlot(slot);
+    if (!Files.exists(file(slot)))
+      return null;
+
+    try (DataInputStream in = open(slot))
+    {
+      long savedAt = in.readLong();
+      long tick = in.readLong();
+      int units = in.readInt();
+      return String.format("tick %d, %d units, %tR", tick, units, savedAt);
+    }
+    catch (IOException ex)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Opens the slot's file, positioned after the magic number and version.
+   */
+  private DataInputStream open(int slot) throws IOException
+  {
+    InputStream stream = Files.newInputStream(file(slot));
+    DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+    try
+    {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        throw new IOException(file(slot) + " is not a saved battle");
+      return in;
+    }
+    catch (IOException ex)
+    {
+      in.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Waits for every save already started to be written.
+   */
+  public void flush()
+  {
+    final Object marker = new Object();
+    synchronized (marker)
+    {
+      writer.execute(new Runnable()
+      {
+        public void run()
+        {
+          synchronized (marker)
+          {
+            marker.notifyAll();
+          }
+        }
+      });
+      try
+      {
+        marker.wait();
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  public Path file(int slot)
+  {
+    return directory.resolve("slot" + slot + ".save");
+  }
+
+  /**
+   * @return The number of slots, which are numbered from 1.
+   */
+  public int slots()
+  {
+    return slots;
+  }
+
+  private void checkSlot(int slot)
+  {
+    if (slot < 1 || slot > slots)
+      throw new IllegalArgumentException("No save slot " + slot);
+  }
+
+  /**
+   * Told when a save has been written.
+   */
+  public interface Callback
+  {
+    /**
+     * @param error Why the save couldn't be written, or null if it was.
+     */
+    void finished(IOException error);
+  }
+}
@@ -0,0 +1,140 @@
+package mechanics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import entity.projectile.Projectile;
+import entity.unit.Unit;
+
+/**
+ * File: src/mechanics/SnapshotReader.java
+ * <P>
+ * Decodes a snapshot made by {@code Battle.snapshot()} (see
+ * {@code SnapshotWriter}) for {@code Battle.restore()}. Every unit 
+ * in the snapshot is created up front, so that references to units
+ * can be resolved in any order.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class SnapshotReader
+{
+  private final Battle battle;
+  private final ByteBuffer in;
+  private final Unit[] units;
+
+  /**
+   * @throws IllegalArgumentException If the snapshot isn't one, or was
+   *         made from a battle of a different size.
+   */
+  SnapshotReader(Battle battle, byte[] snapshot)
+  {
+    this.battle = battle;
+    in = ByteBuffer.wrap(snapshot);
+
+    if (snapshot.length < 20 || in.getInt() != SnapshotWriter.MAGIC)
+      throw new IllegalArgumentException("Not a battle snapshot");
+    int version = in.getInt();
+    if (version != SnapshotWriter.VERSION)
+      throw new IllegalArgumentException("Unsupported snapshot version " + version);
+    int width = in.getInt(), height = in.getInt();
+    if (width != battle.width() || height != battle.height())
+      throw new IllegalArgumentException("Snapshot of a " + width + "x" + height 
+          + " battle, not " + battle.width() + "x" + battle.height());
+
+    String[] types = new String[in.getInt()];
+    for (int i = 0; i < types.length; i++)
+    {
+      byte[] name = new byte[in.getInt()];
+      in.get(name);
+      types[i] = new String(name, StandardCharsets.UTF_8);
+    }
+
+    units = new Unit[in.getInt()];
+    for (int i = 0; i < units.length; i++)
+    {
+      String type = types[in.getShort()];
+      units[i] = Battle.createUnit(type, null, 0, new Vector2D(), 0);
+      if (units[i] == null)
+        throw new IllegalArgumentException("Unknown unit type " + type);
+    }
+  }
+
+  /**
+   * @return The battle being restored, which entities belong to.
+   */
+  public Battle battle()
+  {
+    return battle;
+  }
+
+  public int getInt()
+  {
+    return in.getInt();
+  }
+
+  public long getLong()
+  {
+    return in.getLong();
+  }
+
+  public double getDouble()
+  {
+    return in.getDouble();
+  }
+
+  public boolean getBoolean()
+  {
+    return in.get() != 0;
+  }
+
+  /**
+   * Reads a vector into v.
+   */
+  public void getVector(Vector2D v)
+  {
+    v.x = in.getDouble();
+    v.y = in.getDouble();
+  }
+
+  /**
+   * @return The unit written with {@code putUnit()}, which may be null.
+   */
+  public Unit getUnit()
+  {
+    int n = in.getInt();
+    return (n < 0)? null : units[n];
+  }
+
+  /**
+   * Replaces the contents of list with the units written with 
+   * {@code putUnits()}.
+   */
+  public void getUnits(List<Unit> list)
+  {
+    list.clear();
+    int n = in.getInt();
+    for (int i = 0; i < n; i++)
+      list.add(getUnit());
+  }
+
+  /**
+   * @return The projectile written with {@code putProjectile()}, which
+   * may be null. Only valid once the battle's projectiles are restored.
+   */
+  public Projectile getProjectile()
+  {
+    int n = in.getInt();
+    return (n < 0)? null : battle.projectiles().get(n);
+  }
+
+  /**
+   * Reads the state of every unit in the snapshot.
+   */
+  void getUnitStates()
+  {
+    for (Unit u : units)
+      u.load(this);
+  }
+}
@@ -0,0 +1,228 @@
+package mechanics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import entity.projectile.Projectile;
+import entity.unit.Unit;
+
+/**
+ * File: src/mechanics/SnapshotWriter.java
+ * <P>
+ * Encodes the state of a battle for {@code Battle.snapshot()}. Entities
+ * write their own fields with the {@code put} methods, in the order their
+ * {@code load()} reads them back with a {@code SnapshotReader}. 
+ * <P>
+ * Units are written as numbers, given out in the order units are first
+ * mentioned. Any unit mentioned has its state written too, even if it's 
+ * no longer in the battle (e.g. the target of a projectile, after the 
+ * target was removed), and the table of unit types goes at the front, 
+ * so all units can be created before any of them is read.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class SnapshotWriter
+{
+  static final int MAGIC = 0x4D4F5353; // "MOSS"
+  static final int VERSION = 1;
+
+  private ByteBuffer body;
+  private long tick;
+  private int unitCount; // in the battle, not counting fallen units
+
+  private final Map<Unit, Integer> unitNumbers;
+  private final List<Unit> units;
+  private final Map<Projectile, Integer> projectileNumbers;
+
+  /**
+   * @param units About how many units will be written, so that the
+   *              table of them doesn't have to grow while the battle waits.
+   */
+  SnapshotWriter(int capacity, int units)
+  {
+    body = ByteBuffer.allocate(Math.max(capacity, 64));
+    unitNumbers = new IdentityHashMap<Unit, Integer>(units);
+    this.units = new ArrayList<Unit>(units);
+    projectileNumbers = new IdentityHashMap<Projectile, Integer>();
+  }
+
+  /**
+   * Notes the tick being written, and how many units the battle has,
+   * while the battle stands still.
+   */
+  void setSummary(long tick, int unitCount)
+  {
+    this.tick = tick;
+    this.unitCount = unitCount;
+  }
+
+  /**
+   * @return The tick of the battle written.
+   */
+  long tick()
+  {
+    return tick;
+  }
+
+  /**
+   * @return How many units the battle had, as {@code Battle.units()}.
+   */
+  int unitCount()
+  {
+    return unitCount;
+  }
+
+  public void putInt(int v)
+  {
+    ensure(4);
+    body.putInt(v);
+  }
+
+  public void putLong(long v)
+  {
+    ensure(8);
+    body.putLong(v);
+  }
+
+  public void putDouble(double v)
+  {
+    ensure(8);
+    body.putDouble(v);
+  }
+
+  public void putBoolean(boolean b)
+  {
+    ensure(1);
+    body.put((byte) (b? 1 : 0));
+  }
+
+  public void putVector(Vector2D v)
+  {
+    putDouble(v.x);
+    putDouble(v.y);
+  }
+
+  /**
+   * Writes which unit u is. u may be null.
+   */
+  public void putUnit(Unit u)
+  {
+    putInt((u == null)? -1 : number(u));
+  }
+
+  /**
+   * Writes which units are in the list, in order.
+   */
+  public void putUnits(List<Unit> list)
+  {
+    putInt(list.size());
+    for (int i = 0; i < list.size(); i++)
+      putUnit(list.get(i));
+  }
+
+  /**
+   * Writes which of the battle's projectiles p is. A projectile that 
+   * isn't in the battle (e.g. one that was spent) is written as null.
+   */
+  public void putProjectile(Projectile p)
+  {
+    Integer n = (p == null)? null : projectileNumbers.get(p);
+    putInt((n == null)? -1 : n);
+  }
+
+  private int number(Unit u)
+  {
+    Integer n = unitNumbers.get(u);
+    if (n == null)
+    {
+      n = units.size();
+      unitNumbers.put(u, n);
+      units.add(u);
+    }
+    return n;
+  }
+
+  /**
+   * Numbers the battle's projectiles, in order, so that units can refer 
+   * to them before they are written.
+   */
+  void numberProjectiles(List<Projectile> projectiles)
+  {
+    for (int i = 0; i < projectiles.size(); i++)
+      projectileNumbers.put(projectiles.get(i), i);
+  }
+
+  /**
+   * Writes the state of every unit mentioned so far, including those 
+   * first mentioned while doing so.
+   */
+  void putUnitStates()
+  {
+    for (int i = 0; i < units.size(); i++)
+      units.get(i).save(this);
+  }
+
+  /**
+   * @return The snapshot: a header and the table of unit types,
+   * followed by everything written.
+   */
+  byte[] toByteArray(int width, int height)
+  {
+    Map<String, Integer> typeNumbers = new HashMap<String, Integer>();
+    List<byte[]> typeNames = new ArrayList<byte[]>();
+    int[] unitTypes = new int[units.size()];
+    int headerSize = 5 * 4;
+    for (int i = 0; i < unitTypes.length; i++)
+    {
+      String type = units.get(i).type();
+      Integer n = typeNumbers.get(type);
+      if (n == null)
+      {
+        n = typeNames.size();
+        typeNumbers.put(type, n);
+        byte[] name = type.getBytes(StandardCharsets.UTF_8);
+        typeNames.add(name);
+        headerSize += 4 + name.length;
+      }
+      unitTypes[i] = n;
+    }
+    headerSize += 4 + 2 * unitTypes.length;
+
+    ByteBuffer out = ByteBuffer.allocate(headerSize + body.position());
+    out.putInt(MAGIC);
+    out.putInt(VERSION);
+    out.putInt(width);
+    out.putInt(height);
+    out.putInt(typeNames.size());
+    for (byte[] name : typeNames)
+    {
+      out.putInt(name.length);
+      out.put(name);
+    }
+    out.putInt(unitTypes.length);
+    for (int t : unitTypes)
+      out.putShort((short) t);
+
+    body.flip();
+    out.put(body);
+    return out.array();
+  }
+
+  private void ensure(int bytes)
+  {
+    if (body.remaining() < bytes)
+    {
+      ByteBuffer bigger = ByteBuffer.allocate(
+          Math.max(2 * body.capacity(), body.position() + bytes));
+      body.flip();
+      bigger.put(body);
+      body = bigger;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package mechanics;
+
+import java.util.List;
+
+import entity.projectile.Projectile;
+import entity.unit.Unit;
+
+/**
+ * File: src/mechanics/StateHasher.java
+ * <P>
+ * Hashes the state of a battle, so that two runs can be checked for 
+ * giving exactly the same results. Every double is hashed by its bits,
+ * so any difference at all, however small, changes the hash.
+ * <P>
+ * Units are hashed by position, velocity, angle, health, cooldown, team
+ * and whether they're active; projectiles by position, velocity, team 
+ * and whether they're active. Particles are only for show, and aren't 
+ * hashed.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public final class StateHasher
+{
+  private static final long SEED = 0x6A09E667F3BCC908L;
+  
+  private StateHasher()
+  {
+  }
+  
+  /**
+   * @return h combined with v. Cheap, but every bit of v 
+   * affects every bit of the result.
+   */
+  public static long mix(long h, long v)
+  {
+    h ^= v;
+    h *= 0x9E3779B97F4A7C15L;
+    h ^= h >>> 31;
+    h *= 0xBF58476D1CE4E5B9L;
+    return h ^ (h >>> 29);
+  }
+  
+  private static long mix(long h, double d)
+  {
+    return mix(h, Double.doubleToLongBits(d));
+  }
+  
+  public static long hash(Unit u)
+  {
+    long h = SEED;
+    h = mix(h, u.position().x);
+    h = mix(h, u.position().y);
+    h = mix(h, u.velocity().x);
+    h = mix(h, u.velocity().y);
+    h = mix(h, u.hitbox().angle);
+    h = mix(h, u.health());
+    h = mix(h, u.attackCooldown());
+    h = mix(h, u.team());
+    return mix(h, u.isActive()? 1 : 0);
+  }
+  
+  public static long hash(Projectile p)
+  {
+    long h = ~SEED;
+    h = mix(h, p.position().x);
+    h = mix(h, p.position().y);
+    h = mix(h, p.velocity().x);
+    h = mix(h, p.velocity().y);
+    h = mix(h, p.team());
+    return mix(h, p.isActive()? 1 : 0);
+  }
+  
+  /**
+   * @return A hash of every unit and projectile in the battle, 
+   * in order, and the tick.
+   */
+  public static long hash(Battle battle)
+  {
+    return mix(hashEntities(battle), battle.tick());
+  }
+  
+  /**
+   * @return A hash of every unit and projectile in the battle, in order,
+   * which doesn't depend on how many ticks the battle has had.
+   */
+  public static long hashEntities(Battle battle)
+  {
+    long h = SEED;
+    
+    List<Unit> units = battle.units();
+    synchronized (units)
+    {
+      h = mix(h, units.size());
+      for (int i = 0; i < units.size(); i++)
+        h = mix(h, hash(units.get(i)));
+    }
+    
+    List<Projectile> projectiles = battle.projectiles();
+    synchronized (projectiles)
+    {
+      h = mix(h, projectiles.size());
+      for (int i = 0; i < projectiles.size(); i++)
+        h = mix(h, hash(projectiles.get(i)));
+    }
+    return h;
+  }
+}
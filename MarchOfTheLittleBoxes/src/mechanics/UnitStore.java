@@ -0,0 +1,375 @@
+package mechanics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import entity.unit.Unit;
+import entity.unit.UnitStats;
+
+/**
+ * File: src/mechanics/UnitStore.java
+ * <P>
+ * Keeps the state of every unit in a battle in parallel arrays of
+ * primitives, so that loops over all units (targeting and collision)
+ * can read contiguous memory instead of following references from
+ * each {@code Unit} to its vectors and hitbox.
+ * <P>
+ * The {@code Unit} objects remain the actual units; the store is filled
+ * from them at the start of every tick, and each unit writes its changes
+ * back to its slot as it moves, rotates or takes damage. Used by the
+ * {@code battle} only in data-oriented mode.
+ * <P>
+ * The distance and containment kernels work through the candidates in
+ * blocks of {@code LANES}, with no branches inside a block, which lets the
+ * JIT compile them to SIMD instructions. Running with
+ * {@code -Dmotlb.scalarKernels=true} selects plain one-at-a-time loops
+ * instead, for comparison.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class UnitStore
+{
+  public static final int LANES = 16;
+  private static final boolean SCALAR = Boolean.getBoolean("motlb.scalarKernels");
+  
+  private int size;
+
+  private double[] x, y, vx, vy, angle, cos, sin, health, extent;
+  private double[] xMin, xMax, yMin, yMax; // hitbox, relative to the unit
+  private int[] cooldown, team, type;
+  private boolean[] active;
+  private Unit[] views;
+  
+  // scratch space for one block of candidates
+  private double[] blockDist;
+  private boolean[] blockHit;
+
+  // unit types seen so far, indexed by type number
+  private List<UnitStats> types;
+
+  public UnitStore()
+  {
+    types = new ArrayList<UnitStats>();
+    blockDist = new double[LANES];
+    blockHit = new boolean[LANES];
+    allocate(64);
+  }
+
+  private void allocate(int capacity)
+  {
+    x = new double[capacity];
+    y = new double[capacity];
+    vx = new double[capacity];
+    vy = new double[capacity];
+    angle = new double[capacity];
+    cos = new double[capacity];
+    sin = new double[capacity];
+    health = new double[capacity];
+    extent = new double[capacity];
+    xMin = new double[capacity];
+    xMax = new double[capacity];
+    yMin = new double[capacity];
+    yMax = new double[capacity];
+    cooldown = new int[capacity];
+    team = new int[capacity];
+    type = new int[capacity];
+    active = new boolean[capacity];
+    views = new Unit[capacity];
+  }
+
+  /**
+   * Fills the store from the given units, replacing whatever it held before.
+   * Each unit is told its slot. Must hold the lock on {@code units}.
+   */
+  public void load(List<Unit> units)
+  {
+    clear();
+
+    int n = units.size();
+    if (n > views.length)
+      allocate(Math.max(n, 2 * views.length));
+
+    for (int i = 0; i < n; i++)
+    {
+      Unit u = units.get(i);
+      views[i] = u;
+      team[i] = u.team();
+      type[i] = typeIndex(u.stats());
+      BoundingBox box = u.hitbox();
+      xMin[i] = box.xMin;
+      xMax[i] = box.xMax;
+      yMin[i] = box.yMin;
+      yMax[i] = box.yMax;
+      extent[i] = Math.hypot(Math.max(box.xMax, -box.xMin), 
+          Math.max(box.yMax, -box.yMin));
+      angle[i] = Double.NaN; // forces cos and sin to be computed
+      u.setStoreIndex(i);
+      sync(i, u);
+    }
+    size = n;
+  }
+
+  /**
+   * Copies the current state of u into slot i.
+   */
+  public void sync(int i, Unit u)
+  {
+    x[i] = u.position().x;
+    y[i] = u.position().y;
+    vx[i] = u.velocity().x;
+    vy[i] = u.velocity().y;
+    health[i] = u.health();
+    cooldown[i] = u.attackCooldown();
+    active[i] = u.isActive();
+
+    BoundingBox box = u.hitbox();
+    if (box.angle != angle[i])
+    {
+      angle[i] = box.angle;
+      cos[i] = box.cos();
+      sin[i] = box.sin();
+    }
+  }
+
+  /**
+   * Marks u as no longer taking part, e.g. after it was removed from the battle.
+   */
+  public void remove(Unit u)
+  {
+    int i = u.storeIndex();
+    if (i >= 0 && i < size && views[i] == u)
+      active[i] = false;
+  }
+
+  /**
+   * Empties the store, releasing every unit from its slot.
+   */
+  public void clear()
+  {
+    int n = size;
+    size = 0;
+    for (int i = 0; i < n; i++)
+    {
+      if (views[i].storeIndex() == i)
+        views[i].setStoreIndex(-1);
+    }
+  }
+
+  private int typeIndex(UnitStats stats)
+  {
+    for (int i = 0; i < types.size(); i++)
+      if (types.get(i) == stats)
+        return i;
+    types.add(stats);
+    return types.size() - 1;
+  }
+
+  /**
+   * Targeting kernel.
+   *
+   * @return The closest active unit that isn't on the same team as
+   * the unit in slot i, or null if there are none. Ties go to the unit
+   * that comes first in the battle.
+   */
+  public Unit nearestEnemy(int i)
+  {
+    double px = x[i], py = y[i];
+    int t = team[i];
+
+    int best = -1;
+    double bestDist = Double.POSITIVE_INFINITY;
+    int j = 0;
+    
+    if (!SCALAR)
+    {
+      for (; j + LANES <= size; j += LANES)
+      {
+        distancesSq(px, py, j, blockDist);
+        for (int k = 0; k < LANES; k++)
+        {
+          if (blockDist[k] < bestDist && team[j + k] != t && active[j + k])
+          {
+            bestDist = blockDist[k];
+            best = j + k;
+          }
+        }
+      }
+    }
+    
+    for (; j < size; j++)
+    {
+      if (team[j] != t && active[j])
+      {
+        double dx = x[j] - px;
+        double dy = y[j] - py;
+        double dist = dx * dx + dy * dy;
+        if (dist < bestDist)
+        {
+          bestDist = dist;
+          best = j;
+        }
+      }
+    }
+    return (best == -1)? null : views[best];
+  }
+  
+  /**
+   * Distance kernel. Writes the squared distances from (px, py) to 
+   * the units in slots {@code from} to {@code from + LANES - 1} into out.
+   */
+  private void distancesSq(double px, double py, int from, double[] out)
+  {
+    for (int k = 0; k < LANES; k++)
+    {
+      double dx = x[from + k] - px;
+      double dy = y[from + k] - py;
+      out[k] = dx * dx + dy * dy;
+    }
+  }
+  
+  /**
+   * Containment kernel. Finds the first active unit, starting at slot 
+   * {@code from}, whose hitbox contains the point (px, py). 
+   * Being on the edge counts as inside.
+   * 
+   * @param excludeTeam Units on this team are skipped; 
+   *                    -1 to include all teams.
+   * @return The slot of the unit, or -1 if there is none.
+   */
+  public int firstContaining(double px, double py, int from, int excludeTeam)
+  {
+    int i = from;
+    
+    if (!SCALAR)
+    {
+      for (; i + LANES <= size; i += LANES)
+      {
+        containsBlock(px, py, i, blockHit);
+        for (int k = 0; k < LANES; k++)
+          if (blockHit[k] && active[i + k] && team[i + k] != excludeTeam)
+            return i + k;
+      }
+    }
+    
+    for (; i < size; i++)
+    {
+      if (active[i] && team[i] != excludeTeam && contains(i, px, py))
+        return i;
+    }
+    return -1;
+  }
+  
+  /**
+   * Writes whether each hitbox in slots {@code from} to 
+   * {@code from + LANES - 1} contains (px, py) into out.
+   */
+  private void containsBlock(double px, double py, int from, boolean[] out)
+  {
+    for (int k = 0; k < LANES; k++)
+    {
+      int j = from + k;
+      double dx = px - x[j];
+      double dy = py - y[j];
+      // rotate by -angle to get coordinates relative to the hitbox
+      double rx = cos[j] * dx + sin[j] * dy;
+      double ry = cos[j] * dy - sin[j] * dx;
+      out[k] = rx <= xMax[j] & rx >= xMin[j] & ry <= yMax[j] & ry >= yMin[j];
+    }
+  }
+  
+  private boolean contains(int j, double px, double py)
+  {
+    double dx = px - x[j];
+    double dy = py - y[j];
+    double rx = cos[j] * dx + sin[j] * dy;
+    double ry = cos[j] * dy - sin[j] * dx;
+    return rx <= xMax[j] && rx >= xMin[j] && ry <= yMax[j] && ry >= yMin[j];
+  }
+
+  /**
+   * Collision kernel: a cheap test using the circles around each hitbox.
+   *
+   * @return false if the hitboxes in slots i and j certainly don't overlap.
+   */
+  public boolean mayOverlap(int i, int j)
+  {
+    double dx = x[j] - x[i];
+    double dy = y[j] - y[i];
+    double reach = extent[i] + extent[j] + 1.0e-9;
+    return dx * dx + dy * dy <= reach * reach;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public Unit unit(int i)
+  {
+    return views[i];
+  }
+
+  public boolean isActive(int i)
+  {
+    return active[i];
+  }
+
+  public int team(int i)
+  {
+    return team[i];
+  }
+
+  /**
+   * @return A number identifying the type (stats) of the unit in slot i.
+   */
+  public int type(int i)
+  {
+    return type[i];
+  }
+
+  public double x(int i)
+  {
+    return x[i];
+  }
+
+  public double y(int i)
+  {
+    return y[i];
+  }
+
+  public double vx(int i)
+  {
+    return vx[i];
+  }
+
+  public double vy(int i)
+  {
+    return vy[i];
+  }
+
+  public double angle(int i)
+  {
+    return angle[i];
+  }
+
+  public double cos(int i)
+  {
+    return cos[i];
+  }
+
+  public double sin(int i)
+  {
+    return sin[i];
+  }
+
+  public double health(int i)
+  {
+    return health[i];
+  }
+
+  public int cooldown(int i)
+  {
+    return cooldown[i];
+  }
+}
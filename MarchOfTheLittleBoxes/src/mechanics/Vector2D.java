@@ -75,13 +75,40 @@ public class Vector2D
     return Math.hypot(x, y);
   }
   
+  /**
+   * @return The square of the magnitude, which is cheaper to compute.
+   */
+  public double lengthSq()
+  {
+    return x * x + y * y;
+  }
+  
+  /**
+   * @return The distance between the tips of this vector and the other.
+   */
+  public double distance(Vector2D other)
+  {
+    return Math.hypot(other.x - x, other.y - y);
+  }
+  
+  /**
+   * @return The square of the distance between the tips of this vector
+   * and the other, which is cheaper to compute.
+   */
+  public double distanceSq(Vector2D other)
+  {
+    double dx = other.x - x;
+    double dy = other.y - y;
+    return dx * dx + dy * dy;
+  }
+  
   /** 
    * @return The angle of the vector measured in radians,
    * counterclockwise from the positive x-axis.
    */  
   public double angle()
   {
-    return Math.atan2(y, x);
+    return MathProvider.get().atan2(y, x);
   }
   
   /**
@@ -104,13 +131,25 @@ public class Vector2D
    * @param angle Measured in radians.
    */
   public void rotateBy(double angle)
+  {
+    MathProvider math = MathProvider.get();
+    rotateBy(math.cos(angle), math.sin(angle));
+  }
+  
+  /**
+   * Rotates the current vector counterclockwise around (0,0) by the angle
+   * with the given cosine and sine, without calling any trig functions.
+   * Automatically calls fixRounding().
+   */
+  public void rotateBy(double cosAngle, double sinAngle)
   {
     double oldX = x;
     double oldY = y;
-    x = Math.cos(angle) * oldX - Math.sin(angle) * oldY;
-    y = Math.sin(angle) * oldX + Math.cos(angle) * oldY;
+    x = cosAngle * oldX - sinAngle * oldY;
+    y = sinAngle * oldX + cosAngle * oldY;
     fixRounding();
   }
+  
   /**
    * Rotates the current vector around (0,0) so that it is pointing 
    * at the given angle.
@@ -135,6 +174,15 @@ public class Vector2D
     return v1.x * v2.x + v1.y * v2.y;
   }
   
+  /**
+   * @return The z-component of the cross product of the given vectors.
+   *         Positive if v2 is counterclockwise from v1.
+   */
+  public static double crossProduct(Vector2D v1, Vector2D v2)
+  {
+    return v1.x * v2.y - v1.y * v2.x;
+  }
+  
   /**
    * Adds the given vector to the current vector.
    * 
@@ -152,6 +200,17 @@ public class Vector2D
     this.y += y;
   }
   
+  /**
+   * Adds the given vector, scaled by the given ratio, to the current 
+   * vector. Same as {@code add(v.scaledBy(scalar))}, without creating
+   * a new vector.
+   */
+  public void addScaled(Vector2D v, double scalar)
+  {
+    x += v.x * scalar;
+    y += v.y * scalar;
+  }
+  
   /**
    * Doesn't modify this vector.
    * @param other
@@ -185,6 +244,26 @@ public class Vector2D
     return result;
   }
   
+  /**
+   * Doesn't modify this vector. Stores this minus other in result,
+   * which may be this or other, and returns it.
+   */
+  public Vector2D minusInto(Vector2D other, Vector2D result)
+  {
+    result.set(x - other.x, y - other.y);
+    return result;
+  }
+  
+  /**
+   * Doesn't modify this vector. Stores this scaled by the given ratio
+   * in result, which may be this, and returns it.
+   */
+  public Vector2D scaledInto(double scalar, Vector2D result)
+  {
+    result.set(x * scalar, y * scalar);
+    return result;
+  }
+  
   /**
    * Scales the current vector by the given ratio.
    * @param scalar
@@ -298,10 +377,19 @@ public class Vector2D
    */
   public void fixRounding()
   {
-    if (Math.abs(Math.round(x) - x) < 1.0e-12)
-      x = Math.round(x);
-    if (Math.abs(Math.round(y) - y) < 1.0e-12)
-      y = Math.round(y);
+    x = fixRounding(x);
+    y = fixRounding(y);
+  }
+  
+  /**
+   * @return The given value, rounded if it is within 10^-12 of a 
+   * whole number, as in {@code fixRounding()}.
+   */
+  public static double fixRounding(double d)
+  {
+    if (Math.abs(Math.round(d) - d) < 1.0e-12)
+      return Math.round(d);
+    return d;
   }
   
   /**
@@ -328,10 +416,10 @@ public class Vector2D
    * @return A vector with the specified length,
    * pointing in a random direction.
    */
-  public static Vector2D randomDirection(double length)
+  public static Vector2D randomDirection(double length, BattleRandom random)
   {
     Vector2D res = new Vector2D(length, 0);
-    res.rotateBy(Math.random() * 2 * Math.PI);
+    res.rotateBy(random.nextDouble() * 2 * Math.PI);
     return res;
   }
 }
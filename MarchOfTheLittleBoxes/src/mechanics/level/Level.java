@@ -0,0 +1,140 @@
+package mechanics.level;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import entity.unit.Unit;
+import entity.unit.UnitType;
+import mechanics.Battle;
+import mechanics.BoundingBox;
+import mechanics.Vector2D;
+import mechanics.replay.ReplayFormat;
+
+/**
+ * File: src/mechanics/level/Level.java
+ * <P>
+ * A campaign level as compiled by {@code LevelParser}: its budget,
+ * background, enemy area, the types the player can buy, and every enemy
+ * to place, with lines already laid out. The enemies are kept as arrays
+ * of type numbers, and positions and angles in whole quanta (see
+ * {@code ReplayFormat}), which is how {@code LevelCache} stores them too,
+ * so loading a level only has to place the units.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class Level
+{
+  /**
+   * In place of an angle, for a unit that faces away from the nearest edge.
+   */
+  public static final int FACE_CENTER = Integer.MIN_VALUE;
+
+  public static final String REMOVE_ACTION = "Remove (click target)";
+
+  final String name;
+  final int budget;
+  final Color background;
+  final double[] area; // x1, y1, x2, y2, or null for none
+
+  final String[] buyable;
+  final int[] prices;
+
+  final String[] unitTypes;
+  final byte[] type; // of each unit, indexes unitTypes
+  final int[] x, y, angle; // in quanta
+
+  Level(String name, int budget, Color background, double[] area,
+      String[] buyable, int[] prices,
+      String[] unitTypes, byte[] type, int[] x, int[] y, int[] angle)
+  {
+    this.name = name;
+    this.budget = budget;
+    this.background = background;
+    this.area = area;
+    this.buyable = buyable;
+    this.prices = prices;
+    this.unitTypes = unitTypes;
+    this.type = type;
+    this.x = x;
+    this.y = y;
+    this.angle = angle;
+  }
+
+  /**
+   * Places the level's units in the battle, for team 0, all at once.
+   */
+  public void placeUnits(Battle battle)
+  {
+    UnitType[] types = new UnitType[unitTypes.length];
+    for (int t = 0; t < types.length; t++)
+      types[t] = UnitType.named(unitTypes[t]);
+    
+    List<Unit> batch = new ArrayList<Unit>(type.length);
+    for (int i = 0; i < type.length; i++)
+    {
+      Vector2D pos = new Vector2D(x[i] * ReplayFormat.POSITION_QUANTUM,
+          y[i] * ReplayFormat.POSITION_QUANTUM);
+
+      double ang;
+      if (angle[i] == FACE_CENTER)
+      {
+        Vector2D facing = battle.borders().findClosestEdge(pos);
+        facing.scaleBy(-1);
+        ang = ReplayFormat.snapAngle(facing.angle());
+      }
+      else
+        ang = angle[i] * ReplayFormat.ANGLE_QUANTUM;
+
+      batch.add(types[type[i]].create(null, 0, pos, ang));
+    }
+    battle.addAll(batch);
+  }
+
+  public String name()
+  {
+    return name;
+  }
+
+  public int budget()
+  {
+    return budget;
+  }
+
+  public Color background()
+  {
+    return background;
+  }
+
+  /**
+   * @return A new box for the enemy's area, or null if there is none.
+   */
+  public BoundingBox area()
+  {
+    if (area == null)
+      return null;
+    return new BoundingBox(new Vector2D(area[0], area[1]), new Vector2D(area[2], area[3]));
+  }
+
+  /**
+   * @return The actions for the level's list, in the format
+   * {@code "[price] Unit Name"}, after removing.
+   */
+  public String[] actions()
+  {
+    String[] actions = new String[buyable.length + 1];
+    actions[0] = REMOVE_ACTION;
+    for (int i = 0; i < buyable.length; i++)
+      actions[i + 1] = "[" + prices[i] + "] " + buyable[i];
+    return actions;
+  }
+
+  /**
+   * @return The number of enemy units.
+   */
+  public int unitCount()
+  {
+    return type.length;
+  }
+}
@@ -0,0 +1,272 @@
+package mechanics.level;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * File: src/mechanics/level/LevelCache.java
+ * <P>
+ * Keeps compiled levels in a binary cache file, so that a level file is
+ * only parsed again when it changes. The cache holds a checksum of the
+ * file it was compiled from, and each level's units as the arrays
+ * {@code Level} keeps them in:
+ * <pre>
+ * MAGIC VERSION checksum(8 bytes) levelCount, then per level:
+ *   name budget rgb hasArea [x1 y1 x2 y2]
+ *   buyableCount (name price)... unitTypeCount name...
+ *   unitCount types[] x[] y[] angles[]
+ * </pre>
+ * The campaign is read from {@code levels/campaign.levels} on the
+ * classpath, or the file named by {@code -Dmotlb.levels}, and cached in
+ * {@code ~/.motlb/cache} (or {@code -Dmotlb.cacheDir}).
+ *
+ * @author Samuel Tan
+ *
+ */
+public final class LevelCache
+{
+  private static final int MAGIC = 0x4D4F4C4C; // "MOLL"
+  private static final int VERSION = 1;
+  private static final String CAMPAIGN = "/levels/campaign.levels";
+
+  private static List<Level> campaign;
+
+  private LevelCache()
+  {
+  }
+
+  /**
+   * @return The campaign's levels, which are loaded the first time.
+   * If they can't be, there are none.
+   */
+  public static synchronized List<Level> campaign()
+  {
+    if (campaign == null)
+    {
+      try
+      {
+        campaign = Collections.unmodifiableList(loadCampaign());
+      }
+      catch (IOException ex)
+      {
+        ex.printStackTrace();
+        campaign = Collections.emptyList();
+      }
+    }
+    return campaign;
+  }
+
+  private static List<Level> loadCampaign() throws IOException
+  {
+    String file = System.getProperty("motlb.levels");
+    byte[] source;
+    String name;
+    if (file != null)
+    {
+      Path path = Paths.get(file);
+      source = Files.readAllBytes(path);
+      name = path.getFileName().toString();
+    }
+    else
+    {
+      InputStream in = LevelCache.class.getResourceAsStream(CAMPAIGN);
+      if (in == null)
+        throw new IOException(CAMPAIGN + " is missing");
+      source = readAll(in);
+      name = "campaign.levels";
+    }
+    return load(source, cacheDirectory().resolve(name + ".bin"));
+  }
+
+  /**
+   * Loads the levels in source from the cache file if it was compiled
+   * from the same source, or else parses them and writes the cache.
+   * Failing to write the cache isn't an error.
+   */
+  public static List<Level> load(byte[] source, Path cache) throws IOException
+  {
+    CRC32 crc = new CRC32();
+    crc.update(source);
+    long checksum = crc.getValue();
+
+    if (Files.exists(cache))
+    {
+      try
+      {
+        List<Level> levels = read(cache, checksum);
+        if (levels != null)
+          return levels;
+      }
+      catch (IOException ex)
+      {
+        ex.printStackTrace(); // compile it again
+      }
+    }
+
+    List<Level> levels = LevelParser.parse(new InputStreamReader(
+        new ByteArrayInputStream(source), StandardCharsets.UTF_8));
+    try
+    {
+      write(levels, checksum, cache);
+    }
+    catch (IOException ex)
+    {
+      ex.printStackTrace();
+    }
+    return levels;
+  }
+
+  public static Path cacheDirectory()
+  {
+    String dir = System.getProperty("motlb.cacheDir");
+    if (dir != null)
+      return Paths.get(dir);
+    return Paths.get(System.getProperty("user.home"), ".motlb", "cache");
+  }
+
+  /**
+   * Writes the levels to a file under another name, then moves it into
+   * place, so the cache is never left half written.
+   */
+  public static void write(List<Level> levels, long checksum, Path cache) throws IOException
+  {
+    if (cache.getParent() != null)
+      Files.createDirectories(cache.getParent());
+    Path temp = cache.resolveSibling(cache.getFileName() + ".tmp");
+
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temp))))
+    {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(checksum);
+      out.writeInt(levels.size());
+      for (Level level : levels)
+        write(level, out);
+    }
+    Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void write(Level level, DataOutputStream out) throws IOException
+  {
+    out.writeUTF(level.name);
+    out.writeInt(level.budget);
+    out.writeInt(level.background.getRGB());
+    out.writeBoolean(level.area != null);
+    if (level.area != null)
+      for (double d : level.area)
+        out.writeDouble(d);
+
+    out.writeShort(level.buyable.length);
+    for (int i = 0; i < level.buyable.length; i++)
+    {
+      out.writeUTF(level.buyable[i]);
+      out.writeInt(level.prices[i]);
+    }
+    out.writeShort(level.unitTypes.length);
+    for (String type : level.unitTypes)
+      out.writeUTF(type);
+
+    int n = level.type.length;
+    out.writeInt(n);
+    out.write(level.type);
+    for (int i = 0; i < n; i++)
+      out.writeInt(level.x[i]);
+    for (int i = 0; i < n; i++)
+      out.writeInt(level.y[i]);
+    for (int i = 0; i < n; i++)
+      out.writeInt(level.angle[i]);
+  }
+
+  /**
+   * @return The levels in the cache, or null if it was compiled from
+   * a different source or by a different version.
+   */
+  public static List<Level> read(Path cache, long checksum) throws IOException
+  {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(cache))))
+    {
+      if (in.readInt() != MAGIC)
+        throw new IOException(cache + " is not a level cache");
+      if (in.readInt() != VERSION || in.readLong() != checksum)
+        return null;
+
+      int count = in.readInt();
+      List<Level> levels = new ArrayList<Level>(count);
+      for (int i = 0; i < count; i++)
+        levels.add(read(in));
+      return levels;
+    }
+  }
+
+  private static Level read(DataInputStream in) throws IOException
+  {
+    String name = in.readUTF();
+    int budget = in.readInt();
+    Color background = new Color(in.readInt(), true);
+    double[] area = null;
+    if (in.readBoolean())
+    {
+      area = new double[4];
+      for (int i = 0; i < 4; i++)
+        area[i] = in.readDouble();
+    }
+
+    String[] buyable = new String[in.readShort()];
+    int[] prices = new int[buyable.length];
+    for (int i = 0; i < buyable.length; i++)
+    {
+      buyable[i] = in.readUTF();
+      prices[i] = in.readInt();
+    }
+    String[] unitTypes = new String[in.readShort()];
+    for (int i = 0; i < unitTypes.length; i++)
+      unitTypes[i] = in.readUTF();
+
+    int n = in.readInt();
+    byte[] type = new byte[n];
+    in.readFully(type);
+    int[] x = new int[n], y = new int[n], angle = new int[n];
+    for (int i = 0; i < n; i++)
+      x[i] = in.readInt();
+    for (int i = 0; i < n; i++)
+      y[i] = in.readInt();
+    for (int i = 0; i < n; i++)
+      angle[i] = in.readInt();
+
+    return new Level(name, budget, background, area, buyable, prices,
+        unitTypes, type, x, y, angle);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException
+  {
+    try (InputStream stream = in)
+    {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = stream.read(buffer)) != -1)
+        bytes.write(buffer, 0, n);
+      return bytes.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package mechanics.level;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import entity.unit.UnitType;
+import mechanics.Battle;
+import mechanics.Vector2D;
+import mechanics.lineTool.LineTool;
+import mechanics.replay.ReplayFormat;
+
+/**
+ * File: src/mechanics/level/LevelParser.java
+ * <P>
+ * Compiles a level file (see {@code levels/campaign.levels} for the
+ * format) into {@code Level}s. Lines of units are laid out here, the
+ * same way the line tool does it, and every placement is snapped to
+ * the quanta the battle would snap it to, so a compiled level places
+ * exactly the units the file describes.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class LevelParser
+{
+  private final List<Level> levels = new ArrayList<Level>();
+  private int lineNumber;
+
+  // the level being read
+  private String name;
+  private int budget;
+  private Color background;
+  private double[] area;
+  private List<String> buyable = new ArrayList<String>();
+  private int[] prices = new int[8];
+  private List<String> unitTypes = new ArrayList<String>();
+  private int units;
+  private byte[] type = new byte[64];
+  private int[] x = new int[64], y = new int[64], angle = new int[64];
+
+  private LevelParser()
+  {
+  }
+
+  /**
+   * @throws IOException If it couldn't be read, or isn't a valid level
+   *                     file, with the line at fault.
+   */
+  public static List<Level> parse(Reader source) throws IOException
+  {
+    LevelParser parser = new LevelParser();
+    BufferedReader in = new BufferedReader(source);
+    String line;
+    while ((line = in.readLine()) != null)
+    {
+      parser.lineNumber++;
+      parser.parseLine(line.trim());
+    }
+    parser.finishLevel();
+    return parser.levels;
+  }
+
+  private void parseLine(String line) throws IOException
+  {
+    if (line.isEmpty() || line.startsWith("#"))
+      return;
+
+    String keyword = line.split("\\s+", 2)[0];
+    if (keyword.equals("level"))
+    {
+      finishLevel();
+      name = fields(line, 2)[1];
+      return;
+    }
+    if (name == null)
+      throw error("expected a level first");
+
+    switch (keyword)
+    {
+    case "budget":
+      budget = toInt(fields(line, 2)[1]);
+      break;
+    case "background":
+      background = color(fields(line, 2)[1]);
+      break;
+    case "area":
+      String[] a = fields(line, 5);
+      area = new double[] { toDouble(a[1]), toDouble(a[2]), toDouble(a[3]), toDouble(a[4]) };
+      break;
+    case "buy":
+      String[] b = fields(line, 3);
+      if (buyable.size() == prices.length)
+        prices = Arrays.copyOf(prices, 2 * prices.length);
+      prices[buyable.size()] = toInt(b[1]);
+      buyable.add(checkType(b[2]));
+      break;
+    case "unit":
+      String[] u = fields(line, 5);
+      int ang = u[3].equals("face")? Level.FACE_CENTER
+          : (int) ReplayFormat.angleSteps(Math.toRadians(toDouble(u[3])));
+      addUnit(u[4], new Vector2D(toDouble(u[1]), toDouble(u[2])), ang);
+      break;
+    case "line":
+      String[] l = fields(line, 8);
+      addLine(l[7], new Vector2D(toDouble(l[1]), toDouble(l[2])),
+          new Vector2D(toDouble(l[3]), toDouble(l[4])), facing(l[5]), toInt(l[6]));
+      break;
+    default:
+      throw error("unknown keyword " + keyword);
+    }
+  }
+
+  /**
+   * Lays out a line of units as {@code LineTool.makeLine} does.
+   */
+  private void addLine(String unitType, Vector2D start, Vector2D end, int facingSteps, int count)
+      throws IOException
+  {
+    if (count < 1)
+      throw error("a line needs at least one unit");
+
+    Vector2D ray = end.minus(start);
+    Vector2D facing = new Vector2D(ray);
+    facing.normalize();
+    facing.rotateBy(Math.PI/2);
+    for (int i = 0; i < facingSteps; i++)
+      facing.rotateBy(Math.PI/2);
+    int ang = (int) ReplayFormat.angleSteps(facing.angle());
+
+    if (count == 1)
+    {
+      addUnit(unitType, start.plus(ray.scaledBy(0.5)), ang);
+      return;
+    }
+
+    Vector2D interval = ray.scaledBy(1.0 / (count - 1));
+    Vector2D point = new Vector2D(start);
+    for (int i = 0; i < count; i++)
+    {
+      addUnit(unitType, point, ang);
+      point.add(interval);
+    }
+  }
+
+  private void addUnit(String unitType, Vector2D pos, int ang) throws IOException
+  {
+    int t = unitTypes.indexOf(unitType);
+    if (t == -1)
+    {
+      t = unitTypes.size();
+      if (t > Byte.MAX_VALUE)
+        throw error("too many unit types in one level");
+      unitTypes.add(checkType(unitType));
+    }
+
+    if (units == type.length)
+    {
+      type = Arrays.copyOf(type, 2 * units);
+      x = Arrays.copyOf(x, 2 * units);
+      y = Arrays.copyOf(y, 2 * units);
+      angle = Arrays.copyOf(angle, 2 * units);
+    }
+    type[units] = (byte) t;
+    x[units] = (int) ReplayFormat.positionSteps(pos.x);
+    y[units] = (int) ReplayFormat.positionSteps(pos.y);
+    angle[units] = ang;
+    units++;
+  }
+
+  private void finishLevel() throws IOException
+  {
+    if (name == null)
+      return;
+    if (background == null)
+      throw error("level " + name + " has no background");
+
+    levels.add(new Level(name, budget, background, area,
+        buyable.toArray(new String[buyable.size()]), Arrays.copyOf(prices, buyable.size()),
+        unitTypes.toArray(new String[unitTypes.size()]), Arrays.copyOf(type, units),
+        Arrays.copyOf(x, units), Arrays.copyOf(y, units), Arrays.copyOf(angle, units)));
+
+    name = null;
+    budget = 0;
+    background = null;
+    area = null;
+    buyable.clear();
+    unitTypes.clear();
+    units = 0;
+  }
+
+  private String checkType(String unitType) throws IOException
+  {
+    if (UnitType.named(unitType) == null)
+      throw error("unknown unit type " + unitType);
+    return unitType;
+  }
+
+  private Color color(String s) throws IOException
+  {
+    switch (s)
+    {
+    case "grass":
+      return Battle.GRASS;
+    case "sand":
+      return Battle.SAND;
+    case "dirt":
+      return Battle.DIRT;
+    case "snow":
+      return Battle.SNOW;
+    case "stone":
+      return Battle.STONE;
+    default:
+      throw error("unknown background " + s);
+    }
+  }
+
+  private int facing(String s) throws IOException
+  {
+    switch (s)
+    {
+    case "east":
+      return LineTool.EAST;
+    case "south":
+      return LineTool.SOUTH;
+    case "west":
+      return LineTool.WEST;
+    case "north":
+      return LineTool.NORTH;
+    default:
+      throw error("unknown facing " + s);
+    }
+  }
+
+  /**
+   * Splits the line into the given number of fields, the last taking
+   * the rest of the line, as names may have spaces.
+   */
+  private String[] fields(String line, int count) throws IOException
+  {
+    String[] fields = line.split("\\s+", count);
+    if (fields.length < count)
+      throw error("expected " + (count - 1) + " values after " + fields[0]);
+    return fields;
+  }
+
+  private int toInt(String s) throws IOException
+  {
+    try
+    {
+      return Integer.parseInt(s);
+    }
+    catch (NumberFormatException ex)
+    {
+      throw error("expected a whole number, not " + s);
+    }
+  }
+
+  private double toDouble(String s) throws IOException
+  {
+    try
+    {
+      return Double.parseDouble(s);
+    }
+    catch (NumberFormatException ex)
+    {
+      throw error("expected a number, not " + s);
+    }
+  }
+
+  private IOException error(String message)
+  {
+    return new IOException("Line " + lineNumber + ": " + message);
+  }
+}
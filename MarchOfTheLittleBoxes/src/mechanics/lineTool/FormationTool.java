@@ -0,0 +1,338 @@
+package mechanics.lineTool;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.JDialog;
+
+import entity.Entity;
+import entity.unit.Unit;
+import entity.unit.UnitStats;
+import entity.unit.UnitType;
+import mechanics.Battle;
+import mechanics.Vector2D;
+import mechanics.replay.ReplayFormat;
+
+/**
+ * File: src/mechanics/lineTool/FormationTool.java
+ * <P>
+ * Fills a box, drawn with two clicks, with a formation of units: a
+ * filled or hollow rectangle, a circle, or a wedge pointing the way the
+ * units face. Until it is confirmed, the formation is only previewed,
+ * as outlines of where the units would go, so it can be changed and
+ * redrawn cheaply however many units it has. Confirming creates the
+ * units and adds them to the battle all at once.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class FormationTool implements ActionListener
+{
+  public enum Shape
+  {
+    BLOCK("Filled rectangle"),
+    HOLLOW("Hollow rectangle"),
+    CIRCLE("Circle"),
+    WEDGE("Wedge");
+
+    private final String label;
+
+    private Shape(String label)
+    {
+      this.label = label;
+    }
+
+    @Override
+    public String toString()
+    {
+      return label;
+    }
+  }
+
+  public static final int MAX_UNITS = 20000;
+  public static final double MIN_SPACING = 4;
+  private static final double GAP = 4; // between units, by default
+
+  private Battle battle;
+  private double xMin, yMin, xMax, yMax;
+  private Vector2D facing; // always along an axis
+  private Shape shape = Shape.BLOCK;
+  private double spacing;
+  private JDialog dialog;
+
+  // the current layout
+  private double[] xs = new double[64], ys = new double[64];
+  private int count;
+  private volatile Path2D.Double ghosts; // replaced, never changed
+  private volatile Color ghostColor;
+
+  public FormationTool(Battle battle, Vector2D corner1, Vector2D corner2, boolean showDialog)
+  {
+    this.battle = battle;
+    xMin = Math.min(corner1.x, corner2.x);
+    xMax = Math.max(corner1.x, corner2.x);
+    yMin = Math.min(corner1.y, corner2.y);
+    yMax = Math.max(corner1.y, corner2.y);
+
+    // face away from the nearest edge, as units placed by clicking do
+    Vector2D center = new Vector2D((xMin + xMax) / 2, (yMin + yMax) / 2);
+    facing = battle.borders().findClosestEdge(center);
+    facing.scaleBy(-1);
+    facing.normalize();
+
+    spacing = defaultSpacing();
+    refresh();
+
+    if (showDialog)
+      dialog = new FormationToolDialog(battle.getWindow(), this);
+  }
+
+  /**
+   * @return Enough room for the selected type of unit, whichever way
+   * it faces.
+   */
+  public double defaultSpacing()
+  {
+    UnitType type = battle.actionType();
+    if (type == null)
+      return 2 * GAP;
+    UnitStats stats = type.stats();
+    return 2 * Math.max(stats.halfLength, stats.halfWidth) + GAP;
+  }
+
+  public void setShape(Shape shape)
+  {
+    this.shape = shape;
+    refresh();
+  }
+
+  public Shape shape()
+  {
+    return shape;
+  }
+
+  public void setSpacing(double spacing)
+  {
+    this.spacing = Math.max(spacing, MIN_SPACING);
+    refresh();
+  }
+
+  public double spacing()
+  {
+    return spacing;
+  }
+
+  /**
+   * Turns the way the units face by a quarter turn, clockwise.
+   */
+  public void rotate()
+  {
+    facing.rotateBy(Math.PI/2);
+    // keep it exactly along an axis
+    facing = new Vector2D(Math.rint(facing.x), Math.rint(facing.y));
+    refresh();
+  }
+
+  /**
+   * @return The number of units in the formation.
+   */
+  public int count()
+  {
+    return count;
+  }
+
+  /**
+   * Lays out the formation again, and rebuilds the preview. Call after
+   * the selected type or team changes.
+   */
+  public void refresh()
+  {
+    count = 0;
+    switch (shape)
+    {
+    case BLOCK:
+    case HOLLOW:
+      layOutRectangle(shape == Shape.HOLLOW);
+      break;
+    case CIRCLE:
+      layOutCircle();
+      break;
+    case WEDGE:
+      layOutWedge();
+      break;
+    }
+    buildGhosts();
+  }
+
+  private void layOutRectangle(boolean hollow)
+  {
+    int cols = (int) ((xMax - xMin) / spacing) + 1;
+    int rows = (int) ((yMax - yMin) / spacing) + 1;
+    double x0 = (xMin + xMax - (cols - 1) * spacing) / 2; // centered in the box
+    double y0 = (yMin + yMax - (rows - 1) * spacing) / 2;
+
+    for (int j = 0; j < rows; j++)
+      for (int i = 0; i < cols; i++)
+        if (!hollow || i == 0 || j == 0 || i == cols - 1 || j == rows - 1)
+          add(x0 + i * spacing, y0 + j * spacing);
+  }
+
+  /**
+   * Fills the largest circle that fits in the box with rings of units.
+   */
+  private void layOutCircle()
+  {
+    double cx = (xMin + xMax) / 2, cy = (yMin + yMax) / 2;
+    double radius = Math.min(xMax - xMin, yMax - yMin) / 2;
+
+    add(cx, cy);
+    for (int ring = 1; ring * spacing <= radius; ring++)
+    {
+      double r = ring * spacing;
+      int n = (int) (2 * Math.PI * r / spacing);
+      for (int i = 0; i < n; i++)
+      {
+        double a = 2 * Math.PI * i / n;
+        add(cx + r * Math.cos(a), cy + r * Math.sin(a));
+      }
+    }
+  }
+
+  /**
+   * Rows that widen by one unit on each side going back from a point
+   * at the front of the box, as far as the box allows.
+   */
+  private void layOutWedge()
+  {
+    Vector2D side = new Vector2D(-facing.y, facing.x);
+    boolean horizontal = facing.y == 0;
+    double depth = horizontal? xMax - xMin : yMax - yMin;
+    double breadth = horizontal? yMax - yMin : xMax - xMin;
+
+    double tipX = (xMin + xMax) / 2 + facing.x * depth / 2;
+    double tipY = (yMin + yMax) / 2 + facing.y * depth / 2;
+    for (int row = 0; row * spacing <= depth; row++)
+    {
+      double rowX = tipX - facing.x * row * spacing;
+      double rowY = tipY - facing.y * row * spacing;
+      for (int i = -row; i <= row; i++)
+        if (Math.abs(i * spacing) <= breadth / 2)
+          add(rowX + side.x * i * spacing, rowY + side.y * i * spacing);
+    }
+  }
+
+  /**
+   * Adds a place for a unit, unless it's somewhere units can't be placed,
+   * or there are already {@code MAX_UNITS}.
+   */
+  private void add(double x, double y)
+  {
+    if (count == MAX_UNITS || !battle.isPlaceable(new Vector2D(x, y)))
+      return;
+    if (count == xs.length)
+    {
+      xs = Arrays.copyOf(xs, 2 * count);
+      ys = Arrays.copyOf(ys, 2 * count);
+    }
+    xs[count] = x;
+    ys[count] = y;
+    count++;
+  }
+
+  /**
+   * Builds the preview as one shape: a box the size of the selected
+   * type of unit at each place, turned the way it would face.
+   */
+  private void buildGhosts()
+  {
+    UnitType type = battle.actionType();
+    Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO, 4 * count + 4);
+    if (type != null)
+    {
+      UnitStats stats = type.stats();
+      boolean horizontal = facing.y == 0;
+      double hx = horizontal? stats.halfLength : stats.halfWidth;
+      double hy = horizontal? stats.halfWidth : stats.halfLength;
+      for (int i = 0; i < count; i++)
+        path.append(new Rectangle2D.Double(xs[i] - hx, ys[i] - hy, 2 * hx, 2 * hy), false);
+    }
+
+    Color c = Entity.teamColor(battle.selectedTeam());
+    ghostColor = new Color(c.getRed(), c.getGreen(), c.getBlue(), 96);
+    ghosts = path;
+  }
+
+  public void render(Graphics2D g)
+  {
+    // the box
+    g.setColor(Color.BLACK);
+    g.draw(new Rectangle2D.Double(xMin, yMin, xMax - xMin, yMax - yMin));
+
+    // facing, from the middle
+    double cx = (xMin + xMax) / 2, cy = (yMin + yMax) / 2;
+    Path2D.Double arrow = new Path2D.Double();
+    arrow.moveTo(cx, cy);
+    arrow.lineTo(cx + facing.x * 20, cy + facing.y * 20);
+    g.draw(arrow);
+
+    Path2D.Double path = ghosts;
+    if (path != null)
+    {
+      g.setColor(ghostColor);
+      g.fill(path);
+    }
+  }
+
+  /**
+   * Creates the units and adds them to the battle. In campaign mode,
+   * only as many as the remaining resources pay for are added.
+   */
+  public void confirm()
+  {
+    UnitType type = battle.actionType();
+    if (type != null)
+    {
+      int n = battle.buyUnits(count);
+      int team = battle.selectedTeam();
+      double ang = ReplayFormat.snapAngle(facing.angle());
+
+      // snapped as unitHelper() does, so replays record them exactly
+      List<Unit> batch = new ArrayList<Unit>(n);
+      for (int i = 0; i < n; i++)
+        batch.add(type.create(null, team, new Vector2D(ReplayFormat.snapPosition(xs[i]),
+            ReplayFormat.snapPosition(ys[i])), ang));
+      battle.addAll(batch);
+    }
+    dispose();
+  }
+
+  public void actionPerformed(ActionEvent e)
+  {
+    if (e.getActionCommand().equals("OK"))
+    {
+      confirm();
+    }
+    else if (e.getActionCommand().equals("Cancel"))
+    {
+      dispose();
+    }
+    else if (e.getActionCommand().equals("Rotate"))
+    {
+      rotate();
+    }
+  }
+
+  public void dispose()
+  {
+    battle.disposeFormationTool();
+    if (dialog != null)
+      dialog.dispose();
+  }
+}
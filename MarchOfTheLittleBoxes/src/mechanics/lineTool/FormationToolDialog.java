@@ -0,0 +1,143 @@
+package mechanics.lineTool;
+
+import java.awt.BorderLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
+/**
+ * File: src/mechanics/lineTool/FormationToolDialog.java
+ * <P>
+ * Allows the user to control a {@code FormationTool}.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class FormationToolDialog extends JDialog implements ActionListener
+{
+  private FormationTool formationTool;
+  private JComboBox<FormationTool.Shape> shapes;
+  private JButton plus;
+  private JButton minus;
+  private JButton rotate;
+  private JButton cancel;
+  private JButton confirm;
+  private JTextField field;
+  private JLabel countLabel;
+
+  public FormationToolDialog(Frame window, FormationTool formationTool)
+  {
+    super(window, "Formation Tool: Options");
+
+    this.formationTool = formationTool;
+
+    setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+    addWindowListener(new WindowAdapter()
+    {
+      public void windowClosing(WindowEvent e)
+      {
+        formationTool.dispose();
+      }
+    });
+
+    JPanel content = new JPanel(new BorderLayout());
+    JPanel adjuster = new JPanel();
+    JPanel actions = new JPanel();
+
+    shapes = new JComboBox<FormationTool.Shape>(FormationTool.Shape.values());
+    shapes.setSelectedItem(formationTool.shape());
+    shapes.addActionListener(this);
+
+    field = new JTextField(format(formationTool.spacing()), 3);
+    field.addActionListener(this);
+
+    plus = makeButton("+");
+    minus = makeButton("-");
+    rotate = makeButton("Rotate");
+    cancel = makeButton("Cancel");
+    confirm = makeButton("OK");
+    countLabel = new JLabel();
+    refreshCount();
+
+    adjuster.add(shapes);
+    adjuster.add(rotate);
+    adjuster.add(new JLabel("Spacing:"));
+    adjuster.add(field);
+    adjuster.add(plus);
+    adjuster.add(minus);
+    content.add(adjuster, BorderLayout.CENTER);
+
+    actions.add(countLabel);
+    actions.add(cancel);
+    actions.add(confirm);
+
+    content.add(actions, BorderLayout.PAGE_END);
+
+    this.setContentPane(content);
+    pack();
+    setResizable(false);
+    setLocationRelativeTo(window);
+    setVisible(true);
+  }
+
+  /**
+   * helper method
+   */
+  private JButton makeButton(String name)
+  {
+    JButton b = new JButton(name);
+    b.setActionCommand(name);
+    b.addActionListener(formationTool);
+    b.addActionListener(this);
+    return b;
+  }
+
+  private static String format(double spacing)
+  {
+    return "" + (int) Math.round(spacing);
+  }
+
+  private void refreshCount()
+  {
+    countLabel.setText(formationTool.count() + " units");
+  }
+
+  public void actionPerformed(ActionEvent e)
+  {
+    if (e.getSource() == shapes)
+    {
+      formationTool.setShape((FormationTool.Shape) shapes.getSelectedItem());
+    }
+    else if (e.getSource() == plus)
+    {
+      formationTool.setSpacing(formationTool.spacing() + 1);
+    }
+    else if (e.getSource() == minus)
+    {
+      formationTool.setSpacing(formationTool.spacing() - 1);
+    }
+    else if (e.getSource() == field)
+    {
+      try
+      {
+        formationTool.setSpacing(Double.parseDouble(field.getText()));
+      }
+      catch (NumberFormatException ex)
+      {
+        // put back the spacing in use
+      }
+    }
+
+    field.setText(format(formationTool.spacing()));
+    refreshCount();
+  }
+}
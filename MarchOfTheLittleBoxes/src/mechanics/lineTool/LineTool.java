@@ -14,6 +14,7 @@ import javax.swing.JDialog;
 import entity.unit.Unit;
 import mechanics.Battle;
 import mechanics.Vector2D;
+import mechanics.metrics.jfr.FlightEvents;
 
 /**
  * File: src/mechanics/lineTool/LineTool.java
@@ -122,6 +123,7 @@ public class LineTool implements ActionListener
     if (num < 1)
       return;
     count = num;
+    Object event = FlightEvents.beginLineTool();
     
     for (Unit u : list)
       battle.refund(u);
@@ -133,13 +135,14 @@ public class LineTool implements ActionListener
     {
       Vector2D point = start.plus(ray.scaledBy(0.5)); // midpoint
       Unit u = battle.unitHelper(point, ang, false, false);
-      if (u == null)
-        return;
-      u.setActive(true);
-      
-      synchronized(list)
+      if (u != null)
       {
-        list.add(u);
+        u.setActive(true);
+        
+        synchronized(list)
+        {
+          list.add(u);
+        }
       }
     }
     else
@@ -159,13 +162,17 @@ public class LineTool implements ActionListener
         point.add(interval);
       }
     }
+    
+    FlightEvents.endLineTool(event, count, list.size());
   }
   
   public void confirm()
   {
-    for (Unit u : list)
-      u.addBattle(battle);
-    list.clear();
+    synchronized (list)
+    {
+      battle.addAll(list);
+      list.clear();
+    }
     dispose();
   }
   
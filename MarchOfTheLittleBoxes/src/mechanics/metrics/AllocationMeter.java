@@ -0,0 +1,132 @@
+package mechanics.metrics;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * File: src/mechanics/metrics/AllocationMeter.java
+ * <P>
+ * Counts the bytes allocated by a battle's thread during each 
+ * {@code Phase} of {@code Battle.update()} and {@code render()}. 
+ * Add it to the battle with {@code addPhaseListener()}.
+ * <P>
+ * Relies on {@code com.sun.management.ThreadMXBean}, which HotSpot 
+ * provides. Bytes allocated outside of any phase aren't counted.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public class AllocationMeter implements PhaseListener
+{
+  private final com.sun.management.ThreadMXBean threads;
+  private final long[] bytes;
+  private long ticks;
+  
+  private Phase current;
+  private long mark; // allocated bytes when the current phase started
+  private long overhead; // bytes allocated by reading the counter itself
+  
+  /**
+   * @throws UnsupportedOperationException If the JVM can't count
+   * allocated bytes per thread.
+   */
+  public AllocationMeter()
+  {
+    if (!(ManagementFactory.getThreadMXBean() 
+        instanceof com.sun.management.ThreadMXBean))
+      throw new UnsupportedOperationException(
+          "Allocation counting needs com.sun.management.ThreadMXBean");
+    
+    threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (!threads.isThreadAllocatedMemorySupported())
+      throw new UnsupportedOperationException(
+          "Allocation counting is not supported by this JVM");
+    threads.setThreadAllocatedMemoryEnabled(true);
+    
+    bytes = new long[Phase.values().length];
+    
+    // some JVMs allocate while reading the counter
+    overhead = Long.MAX_VALUE;
+    for (int i = 0; i < 100; i++)
+    {
+      long before = allocatedBytes();
+      overhead = Math.min(overhead, allocatedBytes() - before);
+    }
+  }
+  
+  private long allocatedBytes()
+  {
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+  
+  public void phaseStarted(Phase phase)
+  {
+    long now = allocatedBytes();
+    if (current != null)
+      bytes[current.ordinal()] += Math.max(0, now - mark - overhead);
+    current = phase;
+    mark = now;
+  }
+  
+  public void phaseEnded()
+  {
+    if (current != null)
+      bytes[current.ordinal()] += Math.max(0, allocatedBytes() - mark - overhead);
+    current = null;
+  }
+  
+  /**
+   * Only time is passed on for nested phases, so what was allocated in 
+   * them stays counted in {@code UNITS}.
+   */
+  public void phaseTimed(Phase phase, long nanos)
+  {
+  }
+  
+  public void tickEnded()
+  {
+    ticks++;
+  }
+  
+  /**
+   * Forgets everything counted so far.
+   */
+  public void reset()
+  {
+    for (int i = 0; i < bytes.length; i++)
+      bytes[i] = 0;
+    ticks = 0;
+  }
+  
+  public long ticks()
+  {
+    return ticks;
+  }
+  
+  /**
+   * @return Total bytes allocated during the given phase.
+   */
+  public long bytes(Phase phase)
+  {
+    return bytes[phase.ordinal()];
+  }
+  
+  /**
+   * @return Average bytes allocated per tick during the given phase,
+   * or 0 if no ticks have been counted.
+   */
+  public double bytesPerTick(Phase phase)
+  {
+    return (ticks == 0)? 0 : (double) bytes(phase) / ticks;
+  }
+  
+  /**
+   * @return Average bytes allocated per tick, over all phases.
+   */
+  public double bytesPerTick()
+  {
+    double total = 0;
+    for (Phase p : Phase.values())
+      total += bytesPerTick(p);
+    return total;
+  }
+}
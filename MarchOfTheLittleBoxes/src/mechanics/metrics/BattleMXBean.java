@@ -0,0 +1,74 @@
+package mechanics.metrics;
+
+import java.util.Map;
+
+/**
+ * File: src/mechanics/metrics/BattleMXBean.java
+ * <P>
+ * The management interface of a running battle, for watching and tuning
+ * it from JConsole or any other JMX client. Each battle is registered 
+ * under {@code motlb:type=Battle,id=<n>} while its loop is running.
+ * <P>
+ * Counts are indexed by team. Measured rates and phase timings come from 
+ * the battle's {@code TickProfiler}, which is only started the first 
+ * time one of them is read, so they are zero until it has had a second 
+ * to measure.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public interface BattleMXBean
+{
+  long getTick();
+  
+  boolean isPaused();
+  
+  /**
+   * @return The number of ticks per second the battle aims for.
+   */
+  int getTargetTps();
+  
+  double getMeasuredTps();
+  
+  double getMeasuredFps();
+  
+  boolean isParticlesEnabled();
+  
+  boolean isAntialiasing();
+  
+  /**
+   * @return Active units on each team.
+   */
+  int[] getUnitCounts();
+  
+  int[] getProjectileCounts();
+  
+  /**
+   * @return Particles belonging to each team. Most particles belong 
+   * to no team, and are only counted in {@code getParticleCount()}.
+   */
+  int[] getParticleCounts();
+  
+  int getParticleCount();
+  
+  /**
+   * @return Median time of each phase, in nanoseconds, keyed by phase name.
+   */
+  Map<String, Long> getPhaseMedianNanos();
+  
+  Map<String, Long> getPhaseP99Nanos();
+  
+  Map<String, Long> getPhaseMaxNanos();
+  
+  void pause();
+  
+  void resume();
+  
+  void setTargetTps(int tps);
+  
+  void toggleParticles();
+  
+  void toggleAntialiasing();
+  
+  void clearParticles();
+}
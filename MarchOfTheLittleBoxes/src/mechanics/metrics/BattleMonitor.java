@@ -0,0 +1,226 @@
+package mechanics.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import entity.Entity;
+import entity.Particle;
+import entity.projectile.Projectile;
+import entity.unit.Unit;
+import mechanics.Battle;
+
+/**
+ * File: src/mechanics/metrics/BattleMonitor.java
+ * <P>
+ * Implements {@code BattleMXBean} for one battle, and registers it with
+ * the platform MBean server. {@code Battle.start()} and {@code stop()}
+ * do this for the battle loop; headless runs can call {@code register()}
+ * and {@code unregister()} themselves.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public class BattleMonitor implements BattleMXBean
+{
+  private static final AtomicInteger nextId = new AtomicInteger(1);
+  
+  private final Battle battle;
+  private ObjectName name;
+  
+  public BattleMonitor(Battle battle)
+  {
+    this.battle = battle;
+  }
+  
+  /**
+   * Registers this monitor under a new name. Failures are reported 
+   * but otherwise ignored, since the battle works fine without it.
+   */
+  public synchronized void register()
+  {
+    if (name != null)
+      return;
+    try
+    {
+      ObjectName n = new ObjectName("motlb:type=Battle,id=" + nextId.getAndIncrement());
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, n);
+      name = n;
+    }
+    catch (JMException ex)
+    {
+      ex.printStackTrace();
+    }
+  }
+  
+  public synchronized void unregister()
+  {
+    if (name == null)
+      return;
+    try
+    {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(name))
+        server.unregisterMBean(name);
+    }
+    catch (JMException ex)
+    {
+      ex.printStackTrace();
+    }
+    name = null;
+  }
+  
+  /**
+   * @return The name this monitor is registered under, or null if it isn't.
+   */
+  public synchronized ObjectName name()
+  {
+    return name;
+  }
+  
+  public long getTick()
+  {
+    return battle.tick();
+  }
+  
+  public boolean isPaused()
+  {
+    return battle.isPaused();
+  }
+  
+  public int getTargetTps()
+  {
+    return battle.tps();
+  }
+  
+  public double getMeasuredTps()
+  {
+    return battle.profiler().tps();
+  }
+  
+  public double getMeasuredFps()
+  {
+    return battle.profiler().fps();
+  }
+  
+  public boolean isParticlesEnabled()
+  {
+    return battle.particlesEnabled();
+  }
+  
+  public boolean isAntialiasing()
+  {
+    return battle.antialiasing();
+  }
+  
+  public int[] getUnitCounts()
+  {
+    int[] counts = new int[Entity.TEAMS];
+    List<Unit> units = battle.units();
+    synchronized (units)
+    {
+      for (int i = 0; i < units.size(); i++)
+      {
+        Unit u = units.get(i);
+        if (u.isActive())
+          counts[u.team()]++;
+      }
+    }
+    return counts;
+  }
+  
+  public int[] getProjectileCounts()
+  {
+    int[] counts = new int[Entity.TEAMS];
+    List<Projectile> projectiles = battle.projectiles();
+    synchronized (projectiles)
+    {
+      for (int i = 0; i < projectiles.size(); i++)
+        count(counts, projectiles.get(i).team());
+    }
+    return counts;
+  }
+  
+  public int[] getParticleCounts()
+  {
+    int[] counts = new int[Entity.TEAMS];
+    List<Particle> particles = battle.particles();
+    synchronized (particles)
+    {
+      for (int i = 0; i < particles.size(); i++)
+        count(counts, particles.get(i).team());
+    }
+    return counts;
+  }
+  
+  private static void count(int[] counts, int team)
+  {
+    if (team >= 0 && team < counts.length)
+      counts[team]++;
+  }
+  
+  public int getParticleCount()
+  {
+    return battle.particles().size();
+  }
+  
+  public Map<String, Long> getPhaseMedianNanos()
+  {
+    Map<String, Long> map = new TreeMap<String, Long>();
+    for (Phase p : Phase.values())
+      map.put(p.name(), battle.profiler().median(p));
+    return map;
+  }
+  
+  public Map<String, Long> getPhaseP99Nanos()
+  {
+    Map<String, Long> map = new TreeMap<String, Long>();
+    for (Phase p : Phase.values())
+      map.put(p.name(), battle.profiler().p99(p));
+    return map;
+  }
+  
+  public Map<String, Long> getPhaseMaxNanos()
+  {
+    Map<String, Long> map = new TreeMap<String, Long>();
+    for (Phase p : Phase.values())
+      map.put(p.name(), battle.profiler().max(p));
+    return map;
+  }
+  
+  public void pause()
+  {
+    battle.setPaused(true);
+  }
+  
+  public void resume()
+  {
+    battle.setPaused(false);
+  }
+  
+  public void setTargetTps(int tps)
+  {
+    battle.setTps(tps);
+  }
+  
+  public void toggleParticles()
+  {
+    battle.setParticlesEnabled(!battle.particlesEnabled());
+  }
+  
+  public void toggleAntialiasing()
+  {
+    battle.setAntialiasing(!battle.antialiasing());
+  }
+  
+  public void clearParticles()
+  {
+    battle.clearParticles();
+  }
+}
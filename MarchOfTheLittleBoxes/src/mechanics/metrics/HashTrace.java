@@ -0,0 +1,244 @@
+package mechanics.metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import entity.Entity;
+import entity.projectile.Projectile;
+import entity.unit.Unit;
+import mechanics.Battle;
+import mechanics.StateHasher;
+
+/**
+ * File: src/mechanics/metrics/HashTrace.java
+ * <P>
+ * Records the battle's rolling hash after every tick, along with a hash
+ * of each unit and projectile, or compares them with a trace recorded
+ * earlier. When comparing, the first tick that differs is kept, with
+ * the first unit or projectile that differs in it, so that a change
+ * that alters the simulation can be tracked down.
+ * <P>
+ * Each line of a trace is
+ * <pre>
+ * &lt;tick&gt; &lt;rolling hash&gt; U &lt;unit hashes&gt; P &lt;projectile hashes&gt;
+ * </pre>
+ * with the hashes in hexadecimal.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class HashTrace implements PhaseListener
+{
+  private final Battle battle;
+  private final PrintWriter out; // when recording
+  private final BufferedReader golden; // when comparing
+
+  private long divergentTick = -1;
+  private String divergence;
+
+  private HashTrace(Battle battle, PrintWriter out, BufferedReader golden)
+  {
+    this.battle = battle;
+    this.out = out;
+    this.golden = golden;
+    battle.setHashing(true);
+  }
+
+  /**
+   * Starts writing the trace of the battle to out.
+   */
+  public static HashTrace record(Battle battle, PrintWriter out)
+  {
+    HashTrace trace = new HashTrace(battle, out, null);
+    battle.addPhaseListener(trace);
+    return trace;
+  }
+
+  /**
+   * Starts comparing the battle with the trace read from golden.
+   */
+  public static HashTrace compare(Battle battle, BufferedReader golden)
+  {
+    HashTrace trace = new HashTrace(battle, null, golden);
+    battle.addPhaseListener(trace);
+    return trace;
+  }
+
+  public void phaseStarted(Phase phase)
+  {
+  }
+
+  public void phaseEnded()
+  {
+  }
+
+  public void phaseTimed(Phase phase, long nanos)
+  {
+  }
+
+  public void tickEnded()
+  {
+    String line = traceLine();
+    if (out != null)
+    {
+      out.println(line);
+      return;
+    }
+
+    if (divergence != null)
+      return; // only the first is interesting
+
+    String expected;
+    try
+    {
+      expected = golden.readLine();
+    }
+    catch (IOException ex)
+    {
+      throw new UncheckedIOException(ex);
+    }
+
+    if (expected == null)
+      diverge("the recorded trace has ended");
+    else if (!expected.equals(line))
+      diverge(describe(expected.split(" "), line.split(" ")));
+  }
+
+  private String traceLine()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append(battle.tick()).append(' ').append(Long.toHexString(battle.rollingHash()));
+
+    sb.append(" U");
+    List<Unit> units = battle.units();
+    synchronized (units)
+    {
+      for (int i = 0; i < units.size(); i++)
+        sb.append(' ').append(Long.toHexString(StateHasher.hash(units.get(i))));
+    }
+
+    sb.append(" P");
+    List<Projectile> projectiles = battle.projectiles();
+    synchronized (projectiles)
+    {
+      for (int i = 0; i < projectiles.size(); i++)
+        sb.append(' ').append(Long.toHexString(StateHasher.hash(projectiles.get(i))));
+    }
+    return sb.toString();
+  }
+
+  private void diverge(String description)
+  {
+    divergentTick = battle.tick();
+    divergence = "Tick " + divergentTick + ": " + description;
+  }
+
+  /**
+   * @return What differs between the expected and actual trace lines.
+   */
+  private String describe(String[] expected, String[] actual)
+  {
+    if (!expected[0].equals(actual[0]))
+      return "expected tick " + expected[0] + " in the recorded trace";
+
+    List<String> expectedUnits = section(expected, "U", "P");
+    List<String> actualUnits = section(actual, "U", "P");
+    int i = firstDifference(expectedUnits, actualUnits);
+    if (i >= 0)
+    {
+      if (i == Math.min(expectedUnits.size(), actualUnits.size()))
+        return count(expectedUnits, actualUnits, "units");
+
+      String diff = "unit #" + i + " differs";
+      List<Unit> units = battle.units();
+      synchronized (units)
+      {
+        Unit u = units.get(i);
+        diff += " (" + u.type() + ", " + Entity.teamName(u.team())
+            + " team, now at " + u.position() + ")";
+      }
+      return diff;
+    }
+
+    List<String> expectedProjectiles = section(expected, "P", null);
+    List<String> actualProjectiles = section(actual, "P", null);
+    i = firstDifference(expectedProjectiles, actualProjectiles);
+    if (i >= 0)
+    {
+      if (i == Math.min(expectedProjectiles.size(), actualProjectiles.size()))
+        return count(expectedProjectiles, actualProjectiles, "projectiles");
+      return "projectile #" + i + " differs";
+    }
+
+    return "the rolling hash differs from an earlier tick";
+  }
+
+  private static String count(List<String> expected, List<String> actual, String what)
+  {
+    return String.format("expected %d %s, but there are %d",
+        expected.size(), what, actual.size());
+  }
+
+  private static List<String> section(String[] line, String start, String end)
+  {
+    List<String> result = new ArrayList<String>();
+    boolean inside = false;
+    for (String s : line)
+    {
+      if (s.equals(end))
+        break;
+      if (inside)
+        result.add(s);
+      if (s.equals(start))
+        inside = true;
+    }
+    return result;
+  }
+
+  /**
+   * @return The index of the first entry that differs, the length of the 
+   * shorter list if one only has extra entries, or -1 if they're equal.
+   */
+  private static int firstDifference(List<String> expected, List<String> actual)
+  {
+    int n = Math.min(expected.size(), actual.size());
+    for (int i = 0; i < n; i++)
+      if (!expected.get(i).equals(actual.get(i)))
+        return i;
+    return (expected.size() == actual.size())? -1 : n;
+  }
+
+  /**
+   * @return A description of the first difference from the recorded
+   * trace, or null if there hasn't been one.
+   */
+  public String divergence()
+  {
+    return divergence;
+  }
+
+  /**
+   * @return The first tick that differed from the recorded trace,
+   * or -1 if none has.
+   */
+  public long divergentTick()
+  {
+    return divergentTick;
+  }
+
+  /**
+   * Stops tracing, and closes the file.
+   */
+  public void close() throws IOException
+  {
+    battle.removePhaseListener(this);
+    if (out != null)
+      out.close();
+    if (golden != null)
+      golden.close();
+  }
+}
@@ -0,0 +1,410 @@
+package mechanics.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import mechanics.Battle;
+
+/**
+ * File: src/mechanics/metrics/MetricsExporter.java
+ * <P>
+ * Serves counters for the tracked battles at {@code /metrics} on a
+ * loopback port, in the Prometheus text format, so a local scraper can
+ * follow throughput across long or headless runs. For each battle:
+ * <ul>
+ * <li>{@code motlb_ticks_total}, ticks simulated</li>
+ * <li>{@code motlb_battles_completed_total}, times a team has won</li>
+ * <li>{@code motlb_tps}, a histogram of ticks per second, measured
+ * over each second that the battle was running</li>
+ * <li>{@code motlb_phase_seconds_total}, time spent in each phase</li>
+ * <li>{@code motlb_allocated_bytes_total}, bytes allocated in each phase,
+ * and {@code motlb_allocated_bytes_per_tick}, the average since tracking
+ * started</li>
+ * <li>{@code motlb_entities}, current numbers of units, projectiles
+ * and particles</li>
+ * </ul>
+ * Measurements come from the battle's phase listeners.
+ * {@code Battle.start()} tracks the battle with the exporter on the port
+ * given by {@code -Dmotlb.metricsPort}, if set. Headless runs can create
+ * an exporter and track battles themselves; the server's thread keeps the
+ * JVM alive until {@code stop()} is called. {@code runner.MetricsScrape}
+ * checks the output as a scraper would see it.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class MetricsExporter
+{
+  public static final String PORT_PROPERTY = "motlb.metricsPort";
+
+  /**
+   * Upper bounds of the buckets of the ticks per second histogram.
+   */
+  public static final double[] TPS_BUCKETS = {
+      5, 15, 30, 45, 55, 59, 61, 90, 120, 240, 480, 960, 1920
+  };
+
+  // values() copies the array, and the collectors use it every tick
+  private static final Phase[] PHASES = Phase.values();
+
+  private static MetricsExporter global;
+  private static boolean globalChecked;
+
+  private final HttpServer server;
+  private final List<Collector> collectors;
+  private final AtomicInteger nextId;
+
+  /**
+   * Binds to the given port on the loopback address, without starting
+   * to serve yet.
+   *
+   * @param port The port, or 0 for any free port.
+   */
+  public MetricsExporter(int port) throws IOException
+  {
+    collectors = new CopyOnWriteArrayList<Collector>();
+    nextId = new AtomicInteger(1);
+
+    server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/metrics", new HttpHandler()
+    {
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+            "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+    });
+  }
+
+  /**
+   * @return The exporter on the port given by {@code motlb.metricsPort},
+   * started when first asked for, or null if the property isn't set or
+   * the port can't be used.
+   */
+  public static synchronized MetricsExporter global()
+  {
+    if (!globalChecked)
+    {
+      globalChecked = true;
+      String port = System.getProperty(PORT_PROPERTY);
+      if (port != null)
+      {
+        try
+        {
+          global = new MetricsExporter(Integer.parseInt(port.trim()));
+          global.start();
+        }
+        catch (IOException | NumberFormatException ex)
+        {
+          ex.printStackTrace();
+        }
+      }
+    }
+    return global;
+  }
+
+  public void start()
+  {
+    server.start();
+  }
+
+  public void stop()
+  {
+    server.stop(0);
+  }
+
+  /**
+   * @return The port being listened on.
+   */
+  public int port()
+  {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Starts measuring the battle, labelled with a new id.
+   * Does nothing if it's already tracked.
+   */
+  public synchronized void track(Battle battle)
+  {
+    for (Collector c : collectors)
+      if (c.battle == battle)
+        return;
+
+    Collector c = new Collector(battle, nextId.getAndIncrement());
+    collectors.add(c);
+    battle.addPhaseListener(c);
+  }
+
+  public synchronized void untrack(Battle battle)
+  {
+    for (Collector c : collectors)
+    {
+      if (c.battle == battle)
+      {
+        battle.removePhaseListener(c);
+        collectors.remove(c);
+      }
+    }
+  }
+
+  /**
+   * @return The current values of all metrics, in the text format.
+   */
+  public String scrape()
+  {
+    StringBuilder sb = new StringBuilder();
+
+    header(sb, "motlb_ticks_total", "counter", "Ticks simulated.");
+    for (Collector c : collectors)
+      sample(sb, "motlb_ticks_total", c.labels, c.ticks());
+
+    header(sb, "motlb_battles_completed_total", "counter",
+        "Times one team was left standing.");
+    for (Collector c : collectors)
+      sample(sb, "motlb_battles_completed_total", c.labels,
+          c.battle.battlesCompleted());
+
+    header(sb, "motlb_tps", "histogram",
+        "Ticks per second, measured over each second of simulation.");
+    for (Collector c : collectors)
+      c.writeTps(sb);
+
+    header(sb, "motlb_phase_seconds_total", "counter",
+        "Time spent in each phase of the battle.");
+    for (Collector c : collectors)
+      for (Phase p : PHASES)
+        sample(sb, "motlb_phase_seconds_total", phaseLabels(c, p),
+            c.phaseNanos(p) / 1.0e9);
+
+    header(sb, "motlb_allocated_bytes_total", "counter",
+        "Bytes allocated by the battle thread in each phase.");
+    for (Collector c : collectors)
+      if (c.meter != null)
+        for (Phase p : PHASES)
+          sample(sb, "motlb_allocated_bytes_total", phaseLabels(c, p),
+              c.allocatedBytes(p));
+
+    header(sb, "motlb_allocated_bytes_per_tick", "gauge",
+        "Average bytes allocated per tick since tracking started.");
+    for (Collector c : collectors)
+      if (c.meter != null)
+        sample(sb, "motlb_allocated_bytes_per_tick", c.labels,
+            c.allocatedBytesPerTick());
+
+    header(sb, "motlb_entities", "gauge",
+        "Units, projectiles and particles in the battle.");
+    for (Collector c : collectors)
+    {
+      sample(sb, "motlb_entities", c.labels + ",kind=\"unit\"",
+          c.battle.units().size());
+      sample(sb, "motlb_entities", c.labels + ",kind=\"projectile\"",
+          c.battle.projectiles().size());
+      sample(sb, "motlb_entities", c.labels + ",kind=\"particle\"",
+          c.battle.particles().size());
+    }
+
+    return sb.toString();
+  }
+
+  private static String phaseLabels(Collector c, Phase p)
+  {
+    return c.labels + ",phase=\"" + p.name().toLowerCase(Locale.ROOT) + "\"";
+  }
+
+  private static void header(StringBuilder sb, String name, String type, String help)
+  {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder sb, String name, String labels, double value)
+  {
+    sb.append(name).append('{').append(labels).append("} ");
+    if (value == Math.rint(value) && Math.abs(value) < 1.0e15)
+      sb.append((long) value);
+    else
+      sb.append(value);
+    sb.append('\n');
+  }
+
+  /**
+   * Measures one battle. The listener methods run on the battle's thread
+   * and publish their results under the collector's lock, which scrapes
+   * take while reading.
+   */
+  private static class Collector implements PhaseListener
+  {
+    private final Battle battle;
+    private final String labels;
+    private final AllocationMeter meter; // null if not supported
+
+    // used only by the battle thread
+    private final long[] nanos;
+    private Phase current;
+    private long mark;
+    private long secondStart;
+    private int ticksThisSecond;
+
+    // published
+    private long ticks;
+    private final long[] phaseNanos;
+    private final long[] allocated;
+    private final long[] tpsBuckets;
+    private long tpsCount;
+    private double tpsSum;
+
+    Collector(Battle battle, int id)
+    {
+      this.battle = battle;
+      labels = "battle=\"" + id + "\"";
+
+      AllocationMeter m = null;
+      try
+      {
+        m = new AllocationMeter();
+      }
+      catch (UnsupportedOperationException ex)
+      {
+        // allocation metrics are left out
+      }
+      meter = m;
+
+      int phases = PHASES.length;
+      nanos = new long[phases];
+      phaseNanos = new long[phases];
+      allocated = new long[phases];
+      tpsBuckets = new long[TPS_BUCKETS.length];
+      secondStart = System.nanoTime();
+    }
+
+    public void phaseStarted(Phase phase)
+    {
+      if (meter != null)
+        meter.phaseStarted(phase);
+
+      long now = System.nanoTime();
+      if (current != null)
+        nanos[current.ordinal()] += now - mark;
+      current = phase;
+      mark = now;
+    }
+
+    public void phaseEnded()
+    {
+      if (meter != null)
+        meter.phaseEnded();
+
+      if (current != null)
+        nanos[current.ordinal()] += System.nanoTime() - mark;
+      current = null;
+
+      // once per tick or frame
+      synchronized (this)
+      {
+        for (int i = 0; i < nanos.length; i++)
+        {
+          phaseNanos[i] += nanos[i];
+          nanos[i] = 0;
+        }
+        if (meter != null)
+          for (Phase p : PHASES)
+            allocated[p.ordinal()] = meter.bytes(p);
+      }
+    }
+
+    public void phaseTimed(Phase phase, long nanos)
+    {
+      this.nanos[phase.ordinal()] += nanos;
+      if (current != null)
+        this.nanos[current.ordinal()] -= nanos;
+    }
+
+    public void tickEnded()
+    {
+      if (meter != null)
+        meter.tickEnded();
+
+      long now = System.nanoTime();
+      ticksThisSecond++;
+
+      synchronized (this)
+      {
+        ticks++;
+
+        long elapsed = now - secondStart;
+        if (elapsed >= 1000000000L)
+        {
+          // a long pause (e.g. the battle being paused) isn't a slow second
+          if (elapsed < 2000000000L)
+            observeTps(ticksThisSecond * 1.0e9 / elapsed);
+          ticksThisSecond = 0;
+          secondStart = now;
+        }
+      }
+    }
+
+    private void observeTps(double tps)
+    {
+      for (int i = 0; i < TPS_BUCKETS.length; i++)
+        if (tps <= TPS_BUCKETS[i])
+          tpsBuckets[i]++;
+      tpsCount++;
+      tpsSum += tps;
+    }
+
+    synchronized long ticks()
+    {
+      return ticks;
+    }
+
+    synchronized long phaseNanos(Phase p)
+    {
+      return phaseNanos[p.ordinal()];
+    }
+
+    synchronized long allocatedBytes(Phase p)
+    {
+      return allocated[p.ordinal()];
+    }
+
+    synchronized double allocatedBytesPerTick()
+    {
+      if (ticks == 0)
+        return 0;
+      long total = 0;
+      for (long b : allocated)
+        total += b;
+      return (double) total / ticks;
+    }
+
+    synchronized void writeTps(StringBuilder sb)
+    {
+      for (int i = 0; i < TPS_BUCKETS.length; i++)
+      {
+        sample(sb, "motlb_tps_bucket",
+            labels + ",le=\"" + TPS_BUCKETS[i] + "\"", tpsBuckets[i]);
+      }
+      sample(sb, "motlb_tps_bucket", labels + ",le=\"+Inf\"", tpsCount);
+      sample(sb, "motlb_tps_sum", labels, tpsSum);
+      sample(sb, "motlb_tps_count", labels, tpsCount);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package mechanics.metrics;
+
+/**
+ * File: src/mechanics/metrics/Phase.java
+ * <P>
+ * The parts of a battle tick that are measured separately, plus 
+ * {@code RENDER}, which is drawing a frame and happens between ticks.
+ * {@code TARGETING} (checking health and picking a target) and 
+ * {@code COLLISION} happen in the middle of {@code UNITS}, as each unit is
+ * updated. Rather than start and end them for every unit, the battle times
+ * them itself and tells its listeners the totals with 
+ * {@code PhaseListener.phaseTimed()}; that time is not counted in 
+ * {@code UNITS}.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public enum Phase
+{
+  UNITS, TARGETING, COLLISION, PROJECTILES, PARTICLES, RENDER
+}
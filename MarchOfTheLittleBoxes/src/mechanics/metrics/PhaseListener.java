@@ -0,0 +1,37 @@
+package mechanics.metrics;
+
+/**
+ * File: src/mechanics/metrics/PhaseListener.java
+ * <P>
+ * Told by a {@code Battle} whenever its thread moves from one 
+ * {@code Phase} to another. All methods are called on the battle's thread,
+ * so they should be quick and shouldn't create objects.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public interface PhaseListener
+{
+  /**
+   * The given phase has started, ending the previous one, if any.
+   */
+  void phaseStarted(Phase phase);
+  
+  /**
+   * The current phase has ended, without another one starting.
+   */
+  void phaseEnded();
+  
+  /**
+   * Some of the time since the current phase started was spent in the 
+   * given phase, which the battle timed itself rather than starting and
+   * ending it (see {@code Phase}). That time should be counted in the 
+   * given phase instead of the current one.
+   */
+  void phaseTimed(Phase phase, long nanos);
+  
+  /**
+   * A call to {@code Battle.update()} has finished.
+   */
+  void tickEnded();
+}
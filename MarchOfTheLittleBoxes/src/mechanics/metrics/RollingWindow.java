@@ -0,0 +1,80 @@
+package mechanics.metrics;
+
+import java.util.Arrays;
+
+/**
+ * File: src/mechanics/metrics/RollingWindow.java
+ * <P>
+ * Keeps the most recent samples of some measurement, such as the time 
+ * taken by each tick, and reports percentiles over them. Once full, 
+ * each new sample replaces the oldest one.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public class RollingWindow
+{
+  private final long[] samples;
+  private final long[] sorted; // reused when computing percentiles
+  private int count, next;
+  
+  public RollingWindow(int capacity)
+  {
+    samples = new long[capacity];
+    sorted = new long[capacity];
+  }
+  
+  public synchronized void add(long sample)
+  {
+    samples[next] = sample;
+    next = (next + 1) % samples.length;
+    if (count < samples.length)
+      count++;
+  }
+  
+  /**
+   * @param p Between 0 and 1; for example 0.99 for the 99th percentile.
+   * @return The smallest sample that is at least as large as a fraction p
+   * of the samples, or 0 if there are none.
+   */
+  public synchronized long percentile(double p)
+  {
+    if (count == 0)
+      return 0;
+    
+    System.arraycopy(samples, 0, sorted, 0, count);
+    Arrays.sort(sorted, 0, count);
+    int i = (int) Math.ceil(p * count) - 1;
+    return sorted[Math.max(0, Math.min(count - 1, i))];
+  }
+  
+  public synchronized long max()
+  {
+    long max = 0;
+    for (int i = 0; i < count; i++)
+      max = Math.max(max, samples[i]);
+    return max;
+  }
+  
+  public synchronized double mean()
+  {
+    if (count == 0)
+      return 0;
+    
+    double total = 0;
+    for (int i = 0; i < count; i++)
+      total += samples[i];
+    return total / count;
+  }
+  
+  public synchronized int size()
+  {
+    return count;
+  }
+  
+  public synchronized void clear()
+  {
+    count = 0;
+    next = 0;
+  }
+}
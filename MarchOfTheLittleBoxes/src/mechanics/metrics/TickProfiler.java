@@ -0,0 +1,229 @@
+package mechanics.metrics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import mechanics.Battle;
+
+/**
+ * File: src/mechanics/metrics/TickProfiler.java
+ * <P>
+ * Times each {@code Phase} of a battle with {@code System.nanoTime}, 
+ * keeping the times of the last {@code WINDOW} ticks (or frames, for 
+ * {@code RENDER}) so that the median, 99th percentile and maximum can be
+ * reported. Also keeps ticks and frames per second, and how many units,
+ * projectiles and particles there were at the end of the last tick.
+ * <P>
+ * Get the battle's profiler with {@code Battle.profiler()}. It can be 
+ * shown on screen from the graphics options.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public class TickProfiler implements PhaseListener
+{
+  public static final int WINDOW = 600; // 10 seconds at 60 ticks per second
+  
+  private final Battle battle;
+  private final RollingWindow[] windows;
+  private final long[] nanos; // spent in each phase so far this tick
+  
+  private Phase current;
+  private long mark; // when the current phase started
+  
+  private volatile int units, projectiles, particles;
+  
+  private long rateStart;
+  private int ticksCounted, framesCounted;
+  private volatile double tps, fps;
+  
+  public TickProfiler(Battle battle)
+  {
+    this.battle = battle;
+    
+    windows = new RollingWindow[Phase.values().length];
+    for (int i = 0; i < windows.length; i++)
+      windows[i] = new RollingWindow(WINDOW);
+    nanos = new long[windows.length];
+    
+    rateStart = System.nanoTime();
+  }
+  
+  public void phaseStarted(Phase phase)
+  {
+    long now = System.nanoTime();
+    if (current != null)
+      nanos[current.ordinal()] += now - mark;
+    current = phase;
+    mark = now;
+  }
+  
+  public void phaseEnded()
+  {
+    if (current == null)
+      return;
+    
+    long now = System.nanoTime();
+    nanos[current.ordinal()] += now - mark;
+    
+    // rendering happens between ticks, so each frame is one sample
+    if (current == Phase.RENDER)
+    {
+      int r = Phase.RENDER.ordinal();
+      windows[r].add(nanos[r]);
+      nanos[r] = 0;
+      framesCounted++;
+      updateRates(now);
+    }
+    current = null;
+  }
+  
+  public void phaseTimed(Phase phase, long nanos)
+  {
+    this.nanos[phase.ordinal()] += nanos;
+    if (current != null)
+      this.nanos[current.ordinal()] -= nanos;
+  }
+  
+  public void tickEnded()
+  {
+    int render = Phase.RENDER.ordinal();
+    for (int i = 0; i < nanos.length; i++)
+    {
+      if (i != render)
+      {
+        windows[i].add(nanos[i]);
+        nanos[i] = 0;
+      }
+    }
+    
+    units = battle.units().size();
+    projectiles = battle.projectiles().size();
+    particles = battle.particles().size();
+    
+    ticksCounted++;
+    updateRates(System.nanoTime());
+  }
+  
+  private void updateRates(long now)
+  {
+    long elapsed = now - rateStart;
+    if (elapsed >= 1000000000L)
+    {
+      tps = ticksCounted * 1.0e9 / elapsed;
+      fps = framesCounted * 1.0e9 / elapsed;
+      ticksCounted = 0;
+      framesCounted = 0;
+      rateStart = now;
+    }
+  }
+  
+  /**
+   * @return The times recorded for the given phase, in nanoseconds.
+   */
+  public RollingWindow window(Phase phase)
+  {
+    return windows[phase.ordinal()];
+  }
+  
+  public long median(Phase phase)
+  {
+    return window(phase).percentile(0.5);
+  }
+  
+  public long p99(Phase phase)
+  {
+    return window(phase).percentile(0.99);
+  }
+  
+  public long max(Phase phase)
+  {
+    return window(phase).max();
+  }
+  
+  /**
+   * @return Ticks per second, measured over the last full second.
+   */
+  public double tps()
+  {
+    return tps;
+  }
+  
+  /**
+   * @return Frames per second, measured over the last full second.
+   */
+  public double fps()
+  {
+    return fps;
+  }
+  
+  public int units()
+  {
+    return units;
+  }
+  
+  public int projectiles()
+  {
+    return projectiles;
+  }
+  
+  public int particles()
+  {
+    return particles;
+  }
+  
+  /**
+   * Forgets all recorded times.
+   */
+  public void clear()
+  {
+    for (RollingWindow w : windows)
+      w.clear();
+  }
+  
+  /**
+   * @return A summary of the measurements, one line per entry.
+   */
+  public List<String> report()
+  {
+    List<String> lines = new ArrayList<String>();
+    lines.add(String.format("TPS %.1f   FPS %.1f", tps, fps));
+    lines.add(String.format("Units %d   Projectiles %d   Particles %d", 
+        units, projectiles, particles));
+    lines.add("Phase (ms)      p50      p99      max");
+    for (Phase p : Phase.values())
+    {
+      lines.add(String.format("%-11s %7.3f  %7.3f  %7.3f", p, 
+          median(p) / 1.0e6, p99(p) / 1.0e6, max(p) / 1.0e6));
+    }
+    return lines;
+  }
+  
+  /**
+   * Draws the report in the top left corner.
+   */
+  public void render(Graphics2D g)
+  {
+    Font oldFont = g.getFont();
+    g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    
+    List<String> lines = report();
+    int lineHeight = g.getFontMetrics().getHeight();
+    int width = 0;
+    for (String s : lines)
+      width = Math.max(width, g.getFontMetrics().stringWidth(s));
+    
+    int x = 5, y = 25;
+    g.setColor(new Color(0, 0, 0, 160));
+    g.fillRect(x, y, width + 10, lineHeight * lines.size() + 6);
+    
+    g.setColor(Color.WHITE);
+    for (int i = 0; i < lines.size(); i++)
+      g.drawString(lines.get(i), x + 5, y + lineHeight * (i + 1));
+    
+    g.setFont(oldFont);
+  }
+}
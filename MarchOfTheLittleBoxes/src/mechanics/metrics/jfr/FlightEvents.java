@@ -0,0 +1,160 @@
+package mechanics.metrics.jfr;
+
+import jdk.jfr.EventType;
+import mechanics.Battle;
+
+/**
+ * File: src/mechanics/metrics/jfr/FlightEvents.java
+ * <P>
+ * Emits JDK Flight Recorder events for battle ticks and for heavy 
+ * operations, so they can be lined up with GC, JIT and lock activity
+ * in JDK Mission Control. Events are only created while a recording
+ * has them enabled.
+ * <P>
+ * The JFR API is only available on Java 8u262 or later, so the event
+ * classes are never loaded unless it's present; on older JVMs every 
+ * method here does nothing. Heavy operations are recorded by calling 
+ * {@code beginXxx()}, which returns a handle (possibly null), then
+ * passing the handle to {@code endXxx()}.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public final class FlightEvents
+{
+  public static final boolean ENABLED = jfrAvailable();
+  
+  private FlightEvents()
+  {
+  }
+  
+  /**
+   * Types of the events that happen during ticks, so that whether they're
+   * being recorded can be checked without creating one. Only loaded once
+   * JFR is known to be available.
+   */
+  private static final class TickTypes
+  {
+    static final EventType LASER_FIRE = EventType.getEventType(LaserFireEvent.class);
+    static final EventType RESURRECTION = EventType.getEventType(ResurrectionEvent.class);
+  }
+  
+  private static boolean jfrAvailable()
+  {
+    try
+    {
+      Class<?> recorder = Class.forName("jdk.jfr.FlightRecorder");
+      return (Boolean) recorder.getMethod("isAvailable").invoke(null);
+    }
+    catch (Exception | LinkageError ex)
+    {
+      return false;
+    }
+  }
+  
+  /**
+   * Starts emitting a tick event for each tick of the battle.
+   */
+  public static void attach(Battle battle)
+  {
+    if (ENABLED)
+      battle.addPhaseListener(new TickRecorder(battle));
+  }
+  
+  public static Object beginLevelLoad()
+  {
+    if (!ENABLED)
+      return null;
+    LevelLoadEvent e = new LevelLoadEvent();
+    e.begin();
+    return e;
+  }
+  
+  public static void endLevelLoad(Object handle, int level, int units)
+  {
+    if (handle == null)
+      return;
+    LevelLoadEvent e = (LevelLoadEvent) handle;
+    e.end();
+    if (e.shouldCommit())
+    {
+      e.level = level;
+      e.units = units;
+      e.commit();
+    }
+  }
+  
+  public static Object beginLineTool()
+  {
+    if (!ENABLED)
+      return null;
+    LineToolEvent e = new LineToolEvent();
+    e.begin();
+    return e;
+  }
+  
+  public static void endLineTool(Object handle, int requested, int created)
+  {
+    if (handle == null)
+      return;
+    LineToolEvent e = (LineToolEvent) handle;
+    e.end();
+    if (e.shouldCommit())
+    {
+      e.requested = requested;
+      e.created = created;
+      e.commit();
+    }
+  }
+  
+  public static Object beginLaserFire()
+  {
+    if (!ENABLED || !TickTypes.LASER_FIRE.isEnabled())
+      return null;
+    LaserFireEvent e = new LaserFireEvent();
+    e.begin();
+    return e;
+  }
+  
+  public static void endLaserFire(Object handle, int team, int steps, int hits)
+  {
+    if (handle == null)
+      return;
+    LaserFireEvent e = (LaserFireEvent) handle;
+    e.end();
+    if (e.shouldCommit())
+    {
+      e.team = team;
+      e.steps = steps;
+      e.hits = hits;
+      e.commit();
+    }
+  }
+  
+  public static Object beginResurrection()
+  {
+    if (!ENABLED || !TickTypes.RESURRECTION.isEnabled())
+      return null;
+    ResurrectionEvent e = new ResurrectionEvent();
+    e.begin();
+    return e;
+  }
+  
+  /**
+   * @param team The team resurrected, or -1 for all teams.
+   */
+  public static void endResurrection(Object handle, String cause, int team, int count)
+  {
+    if (handle == null)
+      return;
+    ResurrectionEvent e = (ResurrectionEvent) handle;
+    e.end();
+    if (e.shouldCommit())
+    {
+      e.cause = cause;
+      e.team = team;
+      e.count = count;
+      e.commit();
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package mechanics.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * File: src/mechanics/metrics/jfr/LaserFireEvent.java
+ * <P>
+ * A {@code LaserBeam} tracing its path across the battle, 
+ * which happens all at once.
+ * 
+ * @author Samuel Tan
+ *
+ */
+@Name("motlb.LaserFire")
+@Label("Laser Fire")
+@Category({"March of the Little Boxes", "Simulation"})
+class LaserFireEvent extends jdk.jfr.Event
+{
+  @Label("Team")
+  int team;
+  
+  @Label("Steps")
+  int steps;
+  
+  @Label("Units Hit")
+  int hits;
+}
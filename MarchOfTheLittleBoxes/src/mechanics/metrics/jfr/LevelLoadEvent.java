@@ -0,0 +1,25 @@
+package mechanics.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * File: src/mechanics/metrics/jfr/LevelLoadEvent.java
+ * <P>
+ * Loading a campaign level with {@code CampaignPanel.loadLevel()}.
+ * 
+ * @author Samuel Tan
+ *
+ */
+@Name("motlb.LevelLoad")
+@Label("Level Load")
+@Category({"March of the Little Boxes", "Campaign"})
+class LevelLoadEvent extends jdk.jfr.Event
+{
+  @Label("Level")
+  int level;
+  
+  @Label("Enemy Units")
+  int units;
+}
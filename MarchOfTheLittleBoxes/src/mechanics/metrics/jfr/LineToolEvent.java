@@ -0,0 +1,25 @@
+package mechanics.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * File: src/mechanics/metrics/jfr/LineToolEvent.java
+ * <P>
+ * Creating a line of units with {@code LineTool.makeLine()}.
+ * 
+ * @author Samuel Tan
+ *
+ */
+@Name("motlb.LineTool")
+@Label("Line Tool")
+@Category({"March of the Little Boxes", "Spawning"})
+class LineToolEvent extends jdk.jfr.Event
+{
+  @Label("Units Requested")
+  int requested;
+  
+  @Label("Units Created")
+  int created;
+}
@@ -0,0 +1,29 @@
+package mechanics.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * File: src/mechanics/metrics/jfr/ResurrectionEvent.java
+ * <P>
+ * Many units being resurrected at once, either by "Resurrect all" 
+ * or by a {@code Resurrector}.
+ * 
+ * @author Samuel Tan
+ *
+ */
+@Name("motlb.Resurrection")
+@Label("Mass Resurrection")
+@Category({"March of the Little Boxes", "Simulation"})
+class ResurrectionEvent extends jdk.jfr.Event
+{
+  @Label("Cause")
+  String cause;
+  
+  @Label("Team")
+  int team;
+  
+  @Label("Units Resurrected")
+  int count;
+}
@@ -0,0 +1,56 @@
+package mechanics.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * File: src/mechanics/metrics/jfr/TickEvent.java
+ * <P>
+ * One call to {@code Battle.update()}.
+ * 
+ * @author Samuel Tan
+ *
+ */
+@Name("motlb.Tick")
+@Label("Battle Tick")
+@Description("One update of a battle, with the time spent in each phase")
+@Category({"March of the Little Boxes", "Simulation"})
+@StackTrace(false)
+class TickEvent extends jdk.jfr.Event
+{
+  @Label("Tick")
+  long tick;
+  
+  @Label("Units")
+  @Timespan(Timespan.NANOSECONDS)
+  long unitsTime;
+  
+  @Label("Targeting")
+  @Timespan(Timespan.NANOSECONDS)
+  long targetingTime;
+  
+  @Label("Collision")
+  @Timespan(Timespan.NANOSECONDS)
+  long collisionTime;
+  
+  @Label("Projectiles")
+  @Timespan(Timespan.NANOSECONDS)
+  long projectilesTime;
+  
+  @Label("Particles")
+  @Timespan(Timespan.NANOSECONDS)
+  long particlesTime;
+  
+  @Label("Unit Count")
+  int units;
+  
+  @Label("Projectile Count")
+  int projectiles;
+  
+  @Label("Particle Count")
+  int particles;
+}
@@ -0,0 +1,96 @@
+package mechanics.metrics.jfr;
+
+import jdk.jfr.EventType;
+import mechanics.Battle;
+import mechanics.metrics.Phase;
+import mechanics.metrics.PhaseListener;
+
+/**
+ * File: src/mechanics/metrics/jfr/TickRecorder.java
+ * <P>
+ * Emits a {@code TickEvent} for every tick of a battle, while a 
+ * recording has the event enabled. Otherwise it does almost nothing.
+ * 
+ * @author Samuel Tan
+ *
+ */
+class TickRecorder implements PhaseListener
+{
+  private static final EventType TYPE = EventType.getEventType(TickEvent.class);
+  
+  private final Battle battle;
+  private final long[] nanos;
+  
+  private TickEvent event; // null unless recording this tick
+  private Phase current;
+  private long mark;
+  
+  TickRecorder(Battle battle)
+  {
+    this.battle = battle;
+    nanos = new long[Phase.values().length];
+  }
+  
+  public void phaseStarted(Phase phase)
+  {
+    if (event == null)
+    {
+      // a tick starts with UNITS; rendering isn't part of a tick
+      if (current != null || phase != Phase.UNITS || !TYPE.isEnabled())
+        return;
+      event = new TickEvent();
+      event.begin();
+    }
+    
+    long now = System.nanoTime();
+    if (current != null)
+      nanos[current.ordinal()] += now - mark;
+    current = (phase == Phase.RENDER)? null : phase;
+    mark = now;
+  }
+  
+  public void phaseEnded()
+  {
+    if (event == null)
+      return;
+    
+    if (current != null)
+      nanos[current.ordinal()] += System.nanoTime() - mark;
+    current = null;
+  }
+  
+  public void phaseTimed(Phase phase, long nanos)
+  {
+    if (event == null)
+      return;
+    
+    this.nanos[phase.ordinal()] += nanos;
+    if (current != null)
+      this.nanos[current.ordinal()] -= nanos;
+  }
+  
+  public void tickEnded()
+  {
+    if (event == null)
+      return;
+    
+    event.end();
+    if (event.shouldCommit())
+    {
+      event.tick = battle.tick();
+      event.unitsTime = nanos[Phase.UNITS.ordinal()];
+      event.targetingTime = nanos[Phase.TARGETING.ordinal()];
+      event.collisionTime = nanos[Phase.COLLISION.ordinal()];
+      event.projectilesTime = nanos[Phase.PROJECTILES.ordinal()];
+      event.particlesTime = nanos[Phase.PARTICLES.ordinal()];
+      event.units = battle.units().size();
+      event.projectiles = battle.projectiles().size();
+      event.particles = battle.particles().size();
+      event.commit();
+    }
+    
+    for (int i = 0; i < nanos.length; i++)
+      nanos[i] = 0;
+    event = null;
+  }
+}
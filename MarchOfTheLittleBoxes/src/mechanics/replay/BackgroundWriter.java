@@ -0,0 +1,147 @@
+package mechanics.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * File: src/mechanics/replay/BackgroundWriter.java
+ * <P>
+ * Writes chunks of bytes to a file on its own thread, so that the 
+ * battle never waits for the disk. Chunks are taken from a small pool
+ * with {@code take()}, filled, and handed back with {@code write()}; 
+ * the thread copies each into one direct buffer and writes it to the
+ * channel, then returns the chunk to the pool. If the disk falls far 
+ * behind, {@code take()} waits for a free chunk.
+ * 
+ * @author Samuel Tan
+ *
+ */
+class BackgroundWriter implements Runnable
+{
+  static final int CHUNK_SIZE = 1 << 16;
+  private static final int CHUNKS = 4;
+  
+  /**
+   * Bytes waiting to be written.
+   */
+  static class Chunk
+  {
+    final byte[] data = new byte[CHUNK_SIZE];
+    int length;
+  }
+  
+  private static final Chunk END = new Chunk();
+  
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final BlockingQueue<Chunk> free, full;
+  private final Thread thread;
+  private volatile IOException error;
+  
+  BackgroundWriter(FileChannel channel, String name)
+  {
+    this.channel = channel;
+    buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    free = new ArrayBlockingQueue<Chunk>(CHUNKS);
+    full = new ArrayBlockingQueue<Chunk>(CHUNKS + 1);
+    for (int i = 0; i < CHUNKS; i++)
+      free.add(new Chunk());
+    
+    thread = new Thread(this, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+  
+  /**
+   * @return An empty chunk to fill.
+   */
+  Chunk take()
+  {
+    try
+    {
+      Chunk c = free.take();
+      c.length = 0;
+      return c;
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to record", ex);
+    }
+  }
+  
+  /**
+   * Queues the chunk to be written.
+   */
+  void write(Chunk c)
+  {
+    try
+    {
+      full.put(c);
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to record", ex);
+    }
+  }
+  
+  public void run()
+  {
+    while (true)
+    {
+      Chunk c;
+      try
+      {
+        c = full.take();
+      }
+      catch (InterruptedException ex)
+      {
+        return;
+      }
+      if (c == END)
+        return;
+      
+      if (error == null)
+      {
+        try
+        {
+          buffer.clear();
+          buffer.put(c.data, 0, c.length);
+          buffer.flip();
+          while (buffer.hasRemaining())
+            channel.write(buffer);
+        }
+        catch (IOException ex)
+        {
+          error = ex; // keep taking chunks, so the battle isn't held up
+        }
+      }
+      free.add(c);
+    }
+  }
+  
+  /**
+   * Waits for everything queued to be written, then closes the file.
+   * 
+   * @throws IOException If anything couldn't be written.
+   */
+  void close() throws IOException
+  {
+    write(END);
+    try
+    {
+      thread.join();
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+    if (error != null)
+      throw error;
+  }
+}
@@ -0,0 +1,102 @@
+package mechanics.replay;
+
+/**
+ * File: src/mechanics/replay/ReplayFormat.java
+ * <P>
+ * Constants and encodings shared by {@code ReplayRecorder} and 
+ * {@code ReplayReader}. A replay is a header followed by records:
+ * <pre>
+ * header:   MAGIC VERSION seed(8 bytes) math width height keyframeInterval
+ * TICKS     n                    n ticks have passed since the last record
+ * TYPE      name                 defines the next unit type number
+ * SPAWN     type team dx dy dangle
+ * REMOVE    index
+ * RESURRECT_ALL
+ * CLEAR
+ * KEYFRAME  hash(8 bytes) count, then per unit: 
+ *           type teamAndActive dx dy dangle dhealth
+ * END       totalTicks
+ * </pre>
+ * Every other number is a variable-length integer, 7 bits per byte, and 
+ * signed ones are zigzag encoded first, so small values of either sign 
+ * take one byte. Positions, angles and health are stored as whole 
+ * numbers of their quanta, as differences from the previous spawn or,
+ * in a keyframe, from the same slot in the previous keyframe.
+ * <P>
+ * Unit placements are snapped to {@code POSITION_QUANTUM} and 
+ * {@code ANGLE_QUANTUM} by the battle itself, so spawns replay exactly.
+ * Keyframes are approximate, apart from their hash.
+ * 
+ * @author Samuel Tan
+ *
+ */
+public final class ReplayFormat
+{
+  static final int MAGIC = 0x4D4F4C42; // "MOLB"
+  static final int VERSION = 1;
+  
+  public static final double POSITION_QUANTUM = 1.0 / 64;
+  public static final double ANGLE_QUANTUM = 2 * Math.PI / 65536;
+  public static final double HEALTH_QUANTUM = 1.0 / 16;
+  
+  static final int 
+    TICKS = 1,
+    TYPE = 2,
+    SPAWN = 3,
+    REMOVE = 4,
+    RESURRECT_ALL = 5,
+    CLEAR = 6,
+    KEYFRAME = 7,
+    END = 8;
+  
+  private ReplayFormat()
+  {
+  }
+  
+  /**
+   * @return x rounded to the nearest multiple of {@code POSITION_QUANTUM}.
+   */
+  public static double snapPosition(double x)
+  {
+    return positionSteps(x) * POSITION_QUANTUM;
+  }
+  
+  /**
+   * @return a rounded to the nearest multiple of {@code ANGLE_QUANTUM}.
+   */
+  public static double snapAngle(double a)
+  {
+    return angleSteps(a) * ANGLE_QUANTUM;
+  }
+  
+  /**
+   * @return x in whole multiples of {@code POSITION_QUANTUM}, rounded.
+   */
+  public static long positionSteps(double x)
+  {
+    return Math.round(x / POSITION_QUANTUM);
+  }
+  
+  /**
+   * @return a in whole multiples of {@code ANGLE_QUANTUM}, rounded.
+   */
+  public static long angleSteps(double a)
+  {
+    return Math.round(a / ANGLE_QUANTUM);
+  }
+  
+  static long healthSteps(double h)
+  {
+    return Math.round(h / HEALTH_QUANTUM);
+  }
+  
+  static long zigzag(long v)
+  {
+    return (v << 1) ^ (v >> 63);
+  }
+  
+  static long unzigzag(long v)
+  {
+    return (v >>> 1) ^ -(v & 1);
+  }
+}
@@ -0,0 +1,189 @@
+package mechanics.replay;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import mechanics.Battle;
+
+/**
+ * File: src/mechanics/replay/ReplayPlayer.java
+ * <P>
+ * A window that plays a replay in a battle, drawn as usual, with a
+ * slider to jump to any tick and a button to pause. The battle is only
+ * touched by the player's own thread; the slider just asks it to seek.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class ReplayPlayer extends JFrame implements Runnable
+{
+  private final ReplayReader reader;
+  private final Battle battle;
+  private final JSlider slider;
+  private final JLabel tickLabel;
+  private final JButton playPause;
+
+  private Thread thread;
+  private volatile boolean running, playing;
+  private volatile long seekTarget = -1;
+  private boolean updatingSlider; // only used on the event thread
+
+  public ReplayPlayer(ReplayReader reader, String title)
+  {
+    super("March of the Little Boxes: " + title);
+    setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    setResizable(false);
+
+    this.reader = reader;
+    battle = new Battle(this, reader.seed(), reader.width(), reader.height());
+    // a replay can't be changed by clicking on it
+    battle.removeMouseListener(battle);
+    battle.removeMouseMotionListener(battle);
+
+    slider = new JSlider(0, (int) reader.length(), 0);
+    if (reader.keyframeInterval() > 0)
+    {
+      slider.setMajorTickSpacing(reader.keyframeInterval());
+      slider.setPaintTicks(true);
+    }
+    slider.addChangeListener(new ChangeListener()
+    {
+      public void stateChanged(ChangeEvent e)
+      {
+        if (!updatingSlider)
+          seekTarget = slider.getValue();
+      }
+    });
+
+    playPause = new JButton("Pause");
+    playPause.addActionListener(new ActionListener()
+    {
+      public void actionPerformed(ActionEvent e)
+      {
+        setPlaying(!playing);
+      }
+    });
+
+    tickLabel = new JLabel();
+
+    JPanel controls = new JPanel(new BorderLayout(5, 0));
+    controls.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+    controls.add(playPause, BorderLayout.WEST);
+    controls.add(slider, BorderLayout.CENTER);
+    controls.add(tickLabel, BorderLayout.EAST);
+
+    JPanel content = new JPanel(new BorderLayout());
+    content.add(battle, BorderLayout.CENTER);
+    content.add(controls, BorderLayout.SOUTH);
+    setContentPane(content);
+    pack();
+    setLocationRelativeTo(null);
+
+    battle.setPaused(false);
+    playing = true;
+    showTick();
+  }
+
+  public synchronized void start()
+  {
+    thread = new Thread(this, "replay player");
+    running = true;
+    thread.start();
+  }
+
+  public synchronized void stop()
+  {
+    running = false;
+    try
+    {
+      thread.join();
+    }
+    catch (Exception ex)
+    {
+      ex.printStackTrace();
+    }
+  }
+
+  public void setPlaying(boolean p)
+  {
+    playing = p;
+    playPause.setText(p? "Pause" : "Play");
+  }
+
+  public void run()
+  {
+    long lastTime = System.nanoTime();
+    double dt = 0;
+
+    try
+    {
+      while (running)
+      {
+        long now = System.nanoTime();
+        double tickLength = 1000000000 / battle.tps();
+        dt += (now - lastTime) / tickLength;
+        lastTime = now;
+
+        long target = seekTarget;
+        if (target >= 0)
+        {
+          seekTarget = -1;
+          reader.seek(battle, target);
+          battle.render();
+          showTick();
+        }
+
+        while (dt >= 1)
+        {
+          if (playing && !reader.hasEnded())
+            reader.step(battle);
+
+          dt--;
+
+          if (dt < 1) // only once per tick
+          {
+            battle.render();
+            showTick();
+          }
+        }
+      }
+    }
+    catch (IOException ex)
+    {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Moves the slider to the tick the battle is at, without seeking.
+   */
+  private void showTick()
+  {
+    final long tick = reader.tick();
+    SwingUtilities.invokeLater(new Runnable()
+    {
+      public void run()
+      {
+        if (!slider.getValueIsAdjusting()) // don't fight a drag
+        {
+          updatingSlider = true;
+          slider.setValue((int) tick);
+          updatingSlider = false;
+        }
+        tickLabel.setText(tick + " / " + reader.length());
+      }
+    });
+  }
+}
@@ -0,0 +1,463 @@
+package mechanics.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import entity.unit.Unit;
+import mechanics.Battle;
+import mechanics.StateHasher;
+import mechanics.Vector2D;
+
+/**
+ * File: src/mechanics/replay/ReplayReader.java
+ * <P>
+ * Plays back a replay written by {@code ReplayRecorder} (see
+ * {@code ReplayFormat}) in a battle created with {@code createBattle()}.
+ * The hash in each keyframe is checked against the battle, so a replay 
+ * that no longer plays back the same (e.g. after the simulation was 
+ * changed) is noticed.
+ * <P>
+ * The file is memory-mapped rather than read in, so opening a long
+ * replay costs little, and it is scanned once on opening to index its
+ * keyframes and find its length. As playing passes each keyframe, a 
+ * snapshot of the battle is kept with it, so that seeking only has to 
+ * play forward from the nearest keyframe before the tick sought, once 
+ * that part of the replay has been played. Snapshots are thinned out 
+ * to stay within a memory budget.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class ReplayReader
+{
+  private final ByteBuffer in;
+  private final int start; // of the first record
+
+  private final long seed;
+  private final String mathMode;
+  private final int width, height, keyframeInterval;
+
+  private final List<String> types;
+  private long spawnX, spawnY, spawnAngle;
+
+  private final List<Keyframe> keyframes;
+  private final Keyframe opening; // the start, before any record
+  private int nextKeyframe; // the next one playing will reach
+  private long length;
+  
+  public static final long DEFAULT_SNAPSHOT_BUDGET = 256L << 20;
+  private long snapshotBudget = DEFAULT_SNAPSHOT_BUDGET;
+  private long snapshotBytes;
+  private int snapshotSpacing = 1; // in keyframes
+
+  private long tick; // since the start of the replay
+  private long pendingTicks; // of the current TICKS record
+  private boolean ended;
+  private long firstMismatch = -1;
+
+  /**
+   * A keyframe in the index, with what's needed to carry on playing 
+   * from just after it.
+   */
+  private static class Keyframe
+  {
+    final long tick;
+    final int next; // position of the record after it
+    final long spawnX, spawnY, spawnAngle; // of the last spawn before it
+    byte[] snapshot; // of the battle, once played
+    
+    Keyframe(long tick, int next, long spawnX, long spawnY, long spawnAngle)
+    {
+      this.tick = tick;
+      this.next = next;
+      this.spawnX = spawnX;
+      this.spawnY = spawnY;
+      this.spawnAngle = spawnAngle;
+    }
+  }
+
+  public ReplayReader(Path file) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+    {
+      if (channel.size() > Integer.MAX_VALUE)
+        throw new IOException(file + " is too large to map");
+      // stays mapped after the channel is closed
+      in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (in.remaining() < 4 || in.getInt() != ReplayFormat.MAGIC)
+      throw new IOException(file + " is not a replay");
+    int version = (int) getVarLong();
+    if (version != ReplayFormat.VERSION)
+      throw new IOException(file + " has unsupported replay version " + version);
+
+    seed = in.getLong();
+    mathMode = getString();
+    width = (int) getVarLong();
+    height = (int) getVarLong();
+    keyframeInterval = (int) getVarLong();
+    start = in.position();
+    opening = new Keyframe(0, start, 0, 0, 0);
+
+    types = new ArrayList<String>();
+    keyframes = new ArrayList<Keyframe>();
+    index();
+  }
+
+  /**
+   * Reads through the records without playing them, to find the
+   * keyframes and the length of the replay, and define every type.
+   */
+  private void index() throws IOException
+  {
+    while (!ended)
+    {
+      if (!in.hasRemaining())
+        throw new IOException("Replay ends without an end record");
+
+      int position = in.position();
+      int record = in.get();
+      switch (record)
+      {
+      case ReplayFormat.TICKS:
+        length += getVarLong();
+        break;
+      case ReplayFormat.TYPE:
+        types.add(getString());
+        break;
+      case ReplayFormat.SPAWN:
+        getVarLong(); // type
+        getVarLong(); // team
+        spawnX += getSigned();
+        spawnY += getSigned();
+        spawnAngle += getSigned();
+        break;
+      case ReplayFormat.REMOVE:
+        getVarLong(); // index
+        break;
+      case ReplayFormat.RESURRECT_ALL:
+      case ReplayFormat.CLEAR:
+        break;
+      case ReplayFormat.KEYFRAME:
+        in.getLong(); // hash
+        skipKeyframeUnits();
+        keyframes.add(new Keyframe(length, in.position(), spawnX, spawnY, spawnAngle));
+        break;
+      case ReplayFormat.END:
+        getVarLong(); // total ticks
+        ended = true;
+        break;
+      default:
+        throw new IOException("Unknown replay record " + record
+            + " at byte " + position);
+      }
+    }
+
+    in.position(start);
+    spawnX = spawnY = spawnAngle = 0;
+    ended = false;
+  }
+
+  /**
+   * @return A new battle to play the replay in, without a window. The
+   *         first one is kept as the opening to rewind to.
+   */
+  public Battle createBattle()
+  {
+    Battle battle = new Battle(null, seed, width, height);
+    if (opening.snapshot == null)
+      opening.snapshot = battle.snapshot();
+    return battle;
+  }
+
+  /**
+   * Plays the next tick in the battle, which must have been created
+   * by {@code createBattle()} and had nothing else done to it.
+   *
+   * @return false if the replay has ended.
+   */
+  public boolean step(Battle battle) throws IOException
+  {
+    playTo(battle, tick + 1);
+    return !ended;
+  }
+
+  /**
+   * Plays the rest of the replay in the battle.
+   */
+  public void playAll(Battle battle) throws IOException
+  {
+    playTo(battle, Long.MAX_VALUE);
+  }
+
+  /**
+   * Plays the battle forward to the given tick, including anything
+   * done at that tick, or to the end of the replay.
+   */
+  public void playTo(Battle battle, long target) throws IOException
+  {
+    while (!ended)
+    {
+      if (pendingTicks > 0)
+      {
+        if (tick >= target)
+          return;
+        battle.update();
+        pendingTicks--;
+        tick++;
+      }
+      else
+      {
+        if (tick >= target && in.get(in.position()) == ReplayFormat.TICKS)
+          return;
+        playRecord(battle);
+      }
+    }
+  }
+
+  /**
+   * Brings the battle to the given tick. Restores the snapshot from the
+   * nearest keyframe before it, if that's closer than where the battle 
+   * is (or goes back to the start if the tick has already passed and 
+   * there is none), then plays forward.
+   */
+  public void seek(Battle battle, long target) throws IOException
+  {
+    Keyframe nearest = null;
+    for (Keyframe k : keyframes)
+    {
+      if (k.tick > target)
+        break;
+      if (k.snapshot != null)
+        nearest = k;
+    }
+    
+    if (nearest != null && (target < tick || nearest.tick > tick))
+      restore(battle, nearest);
+    else if (target < tick)
+      rewind(battle);
+    playTo(battle, target);
+  }
+  
+  private void restore(Battle battle, Keyframe k)
+  {
+    battle.restore(k.snapshot);
+    in.position(k.next);
+    spawnX = k.spawnX;
+    spawnY = k.spawnY;
+    spawnAngle = k.spawnAngle;
+    tick = k.tick;
+    pendingTicks = 0;
+    ended = false;
+    nextKeyframe = keyframes.indexOf(k) + 1; // 0 for the opening
+  }
+
+  /**
+   * Restores the battle as it was before anything was played, tick and
+   * all, and goes back to the start of the replay.
+   */
+  public void rewind(Battle battle)
+  {
+    restore(battle, opening);
+  }
+
+  private void playRecord(Battle battle) throws IOException
+  {
+    int record = in.get();
+    switch (record)
+    {
+    case ReplayFormat.TICKS:
+      pendingTicks = getVarLong();
+      break;
+    case ReplayFormat.TYPE:
+      getString(); // defined when indexed
+      break;
+    case ReplayFormat.SPAWN:
+      String type = types.get((int) getVarLong());
+      int team = (int) getVarLong();
+      spawnX += getSigned();
+      spawnY += getSigned();
+      spawnAngle += getSigned();
+      battle.spawn(type, team,
+          new Vector2D(spawnX * ReplayFormat.POSITION_QUANTUM,
+              spawnY * ReplayFormat.POSITION_QUANTUM),
+          spawnAngle * ReplayFormat.ANGLE_QUANTUM);
+      break;
+    case ReplayFormat.REMOVE:
+      int index = (int) getVarLong();
+      List<Unit> units = battle.units();
+      Unit u;
+      synchronized (units)
+      {
+        u = units.get(index);
+      }
+      battle.remove(u);
+      break;
+    case ReplayFormat.RESURRECT_ALL:
+      battle.resurrectAll();
+      break;
+    case ReplayFormat.CLEAR:
+      battle.clearAll();
+      break;
+    case ReplayFormat.KEYFRAME:
+      long hash = in.getLong();
+      skipKeyframeUnits();
+      if (firstMismatch == -1 && hash != StateHasher.hashEntities(battle))
+        firstMismatch = tick;
+      keep(battle, nextKeyframe++);
+      break;
+    case ReplayFormat.END:
+      getVarLong(); // total ticks
+      ended = true;
+      break;
+    default:
+      throw new IOException("Unknown replay record " + record
+          + " at byte " + (in.position() - 1));
+    }
+  }
+
+  /**
+   * Keeps a snapshot of the battle with the given keyframe, unless it's
+   * one that is skipped. Skips every other keyframe that has one when 
+   * the snapshots go over the budget.
+   */
+  private void keep(Battle battle, int i)
+  {
+    Keyframe k = keyframes.get(i);
+    if (k.snapshot != null || i % snapshotSpacing != 0)
+      return;
+    
+    k.snapshot = battle.snapshot();
+    snapshotBytes += k.snapshot.length;
+    while (snapshotBytes > snapshotBudget && snapshotSpacing < keyframes.size())
+    {
+      snapshotSpacing *= 2;
+      for (int j = 0; j < keyframes.size(); j++)
+      {
+        Keyframe other = keyframes.get(j);
+        if (other.snapshot != null && j % snapshotSpacing != 0)
+        {
+          snapshotBytes -= other.snapshot.length;
+          other.snapshot = null;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Sets roughly how many bytes of snapshots to keep for seeking.
+   */
+  public void setSnapshotBudget(long bytes)
+  {
+    snapshotBudget = bytes;
+  }
+
+  private void skipKeyframeUnits()
+  {
+    int n = (int) getVarLong();
+    for (int i = 0; i < 6 * n; i++)
+      getVarLong(); // type, team and active, x, y, angle, health
+  }
+
+  /**
+   * @return The tick of the first keyframe whose hash didn't match
+   * the battle, or -1 if all have matched.
+   */
+  public long firstMismatch()
+  {
+    return firstMismatch;
+  }
+
+  /**
+   * @return Ticks played since the start of the replay.
+   */
+  public long tick()
+  {
+    return tick;
+  }
+
+  /**
+   * @return Ticks in the whole replay.
+   */
+  public long length()
+  {
+    return length;
+  }
+
+  /**
+   * @return The tick of each keyframe, in order.
+   */
+  public long[] keyframeTicks()
+  {
+    long[] ticks = new long[keyframes.size()];
+    for (int i = 0; i < ticks.length; i++)
+      ticks[i] = keyframes.get(i).tick;
+    return ticks;
+  }
+
+  public boolean hasEnded()
+  {
+    return ended;
+  }
+
+  public long seed()
+  {
+    return seed;
+  }
+
+  /**
+   * @return The name of the {@code MathProvider} the replay was recorded with.
+   */
+  public String mathMode()
+  {
+    return mathMode;
+  }
+
+  public int keyframeInterval()
+  {
+    return keyframeInterval;
+  }
+
+  public int width()
+  {
+    return width;
+  }
+
+  public int height()
+  {
+    return height;
+  }
+
+  private long getVarLong()
+  {
+    long v = 0;
+    int shift = 0;
+    while (true)
+    {
+      int b = in.get();
+      v |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return v;
+      shift += 7;
+    }
+  }
+
+  private long getSigned()
+  {
+    return ReplayFormat.unzigzag(getVarLong());
+  }
+
+  private String getString()
+  {
+    byte[] b = new byte[(int) getVarLong()];
+    in.get(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+}
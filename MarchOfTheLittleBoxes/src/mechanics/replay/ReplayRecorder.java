@@ -0,0 +1,336 @@
+package mechanics.replay;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import entity.unit.Unit;
+import mechanics.Battle;
+import mechanics.MathProvider;
+import mechanics.StateHasher;
+import mechanics.metrics.Phase;
+import mechanics.metrics.PhaseListener;
+
+/**
+ * File: src/mechanics/replay/ReplayRecorder.java
+ * <P>
+ * Records a battle as a replay (see {@code ReplayFormat}): the seed,
+ * the units already placed, then every command that changes the battle,
+ * with the tick it happened at, and optionally a keyframe every so many
+ * ticks. Since the simulation is deterministic, that's enough to play
+ * the battle again exactly. Recording a battle of thousands of ticks
+ * takes a few bytes per tick with no commands, plus a few bytes per
+ * unit placed; keyframes add a few bytes per unit each.
+ * <P>
+ * A replay can only be exact if the battle hasn't been simulated since
+ * it was seeded or cleared. The battle only carries out commands 
+ * between ticks, as playback does. Records are encoded on whichever 
+ * thread gives the command, and written to the file in the background.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class ReplayRecorder implements PhaseListener
+{
+  private final Battle battle;
+  private final BackgroundWriter writer;
+  private final int keyframeInterval;
+  private final long startTick;
+
+  private BackgroundWriter.Chunk chunk;
+  private long bytes;
+  private long lastTick;
+  private boolean stopped;
+
+  private final Map<String, Integer> types;
+  private long spawnX, spawnY, spawnAngle; // of the last spawn, in quanta
+  private long[] keyX, keyY, keyAngle, keyHealth; // of the last keyframe
+
+  private ReplayRecorder(Battle battle, FileChannel channel, int keyframeInterval)
+  {
+    this.battle = battle;
+    this.keyframeInterval = keyframeInterval;
+    writer = new BackgroundWriter(channel, "replay writer");
+    chunk = writer.take();
+    types = new HashMap<String, Integer>();
+    keyX = new long[0];
+    keyY = new long[0];
+    keyAngle = new long[0];
+    keyHealth = new long[0];
+    startTick = battle.tick();
+    lastTick = startTick;
+  }
+
+  /**
+   * Starts recording the battle to the file, which is replaced if it
+   * exists. Units already in the battle are recorded as placed at the
+   * start.
+   *
+   * @param keyframeInterval Ticks between keyframes, or 0 for none.
+   */
+  public static ReplayRecorder start(Battle battle, Path file, int keyframeInterval)
+      throws IOException
+  {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    ReplayRecorder r = new ReplayRecorder(battle, channel, keyframeInterval);
+
+    // always lock units before the recorder, as the battle does
+    List<Unit> units = battle.units();
+    synchronized (units)
+    {
+      synchronized (r)
+      {
+        r.putInt(ReplayFormat.MAGIC);
+        r.putVarLong(ReplayFormat.VERSION);
+        r.putLong(battle.seed());
+        r.putString(MathProvider.get().name());
+        r.putVarLong(battle.width());
+        r.putVarLong(battle.height());
+        r.putVarLong(keyframeInterval);
+
+        for (int i = 0; i < units.size(); i++)
+          r.unitAdded(units.get(i));
+      }
+    }
+
+    battle.addPhaseListener(r);
+    battle.setRecorder(r);
+    return r;
+  }
+
+  /**
+   * Records a unit being placed in the battle.
+   */
+  public synchronized void unitAdded(Unit u)
+  {
+    if (stopped)
+      return;
+    advance();
+
+    int type = typeNumber(u.type());
+    long x = ReplayFormat.positionSteps(u.position().x);
+    long y = ReplayFormat.positionSteps(u.position().y);
+    long angle = ReplayFormat.angleSteps(u.hitbox().angle);
+
+    put(ReplayFormat.SPAWN);
+    putVarLong(type);
+    putVarLong(u.team());
+    putSigned(x - spawnX);
+    putSigned(y - spawnY);
+    putSigned(angle - spawnAngle);
+    spawnX = x;
+    spawnY = y;
+    spawnAngle = angle;
+  }
+
+  /**
+   * Records the unit at the given index in {@code units()} being removed.
+   */
+  public synchronized void unitRemoved(int index)
+  {
+    if (stopped)
+      return;
+    advance();
+    put(ReplayFormat.REMOVE);
+    putVarLong(index);
+  }
+
+  public synchronized void resurrectedAll()
+  {
+    if (stopped)
+      return;
+    advance();
+    put(ReplayFormat.RESURRECT_ALL);
+  }
+
+  public synchronized void cleared()
+  {
+    if (stopped)
+      return;
+    advance();
+    put(ReplayFormat.CLEAR);
+  }
+
+  private int typeNumber(String name)
+  {
+    Integer n = types.get(name);
+    if (n == null)
+    {
+      n = types.size();
+      types.put(name, n);
+      put(ReplayFormat.TYPE);
+      putString(name);
+    }
+    return n;
+  }
+
+  /**
+   * Records the ticks that have passed since the last record.
+   */
+  private void advance()
+  {
+    long tick = battle.tick();
+    if (tick > lastTick)
+    {
+      put(ReplayFormat.TICKS);
+      putVarLong(tick - lastTick);
+      lastTick = tick;
+    }
+  }
+
+  public void phaseStarted(Phase phase)
+  {
+  }
+
+  public void phaseEnded()
+  {
+  }
+
+  public void phaseTimed(Phase phase, long nanos)
+  {
+  }
+
+  public void tickEnded()
+  {
+    if (keyframeInterval <= 0 || (battle.tick() - startTick) % keyframeInterval != 0)
+      return;
+
+    List<Unit> units = battle.units();
+    synchronized (units)
+    {
+      synchronized (this)
+      {
+        if (!stopped)
+          keyframe(units);
+      }
+    }
+  }
+
+  /**
+   * Writes a keyframe. Must hold the locks on units and this.
+   */
+  private void keyframe(List<Unit> units)
+  {
+    advance();
+    int n = units.size();
+    for (int i = 0; i < n; i++)
+      typeNumber(units.get(i).type()); // defined before the keyframe starts
+
+    put(ReplayFormat.KEYFRAME);
+    putLong(StateHasher.hashEntities(battle));
+    putVarLong(n);
+    if (keyX.length < n)
+    {
+      int size = Math.max(n, 2 * keyX.length);
+      keyX = Arrays.copyOf(keyX, size);
+      keyY = Arrays.copyOf(keyY, size);
+      keyAngle = Arrays.copyOf(keyAngle, size);
+      keyHealth = Arrays.copyOf(keyHealth, size);
+    }
+
+    for (int i = 0; i < n; i++)
+    {
+      Unit u = units.get(i);
+      long x = ReplayFormat.positionSteps(u.position().x);
+      long y = ReplayFormat.positionSteps(u.position().y);
+      long angle = ReplayFormat.angleSteps(u.hitbox().angle);
+      long health = ReplayFormat.healthSteps(u.health());
+
+      putVarLong(typeNumber(u.type()));
+      putVarLong(2 * u.team() + (u.isActive()? 1 : 0));
+      putSigned(x - keyX[i]);
+      putSigned(y - keyY[i]);
+      putSigned(angle - keyAngle[i]);
+      putSigned(health - keyHealth[i]);
+      keyX[i] = x;
+      keyY[i] = y;
+      keyAngle[i] = angle;
+      keyHealth[i] = health;
+    }
+  }
+
+  /**
+   * Ends the replay, waits for it to be written, and stops recording.
+   *
+   * @throws IOException If any of it couldn't be written.
+   */
+  public void stop() throws IOException
+  {
+    battle.removePhaseListener(this);
+    battle.setRecorder(null);
+
+    synchronized (this)
+    {
+      if (stopped)
+        return;
+      advance();
+      put(ReplayFormat.END);
+      putVarLong(lastTick - startTick);
+      stopped = true;
+      writer.write(chunk);
+      chunk = null;
+    }
+    writer.close();
+  }
+
+  /**
+   * @return Bytes recorded so far.
+   */
+  public synchronized long bytes()
+  {
+    return bytes;
+  }
+
+  private void put(int b)
+  {
+    if (chunk.length == BackgroundWriter.CHUNK_SIZE)
+    {
+      writer.write(chunk);
+      chunk = writer.take();
+    }
+    chunk.data[chunk.length++] = (byte) b;
+    bytes++;
+  }
+
+  private void putVarLong(long v)
+  {
+    while ((v & ~0x7FL) != 0)
+    {
+      put((int) (v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    put((int) v);
+  }
+
+  private void putSigned(long v)
+  {
+    putVarLong(ReplayFormat.zigzag(v));
+  }
+
+  private void putInt(int v)
+  {
+    for (int shift = 24; shift >= 0; shift -= 8)
+      put(v >>> shift);
+  }
+
+  private void putLong(long v)
+  {
+    for (int shift = 56; shift >= 0; shift -= 8)
+      put((int) (v >>> shift));
+  }
+
+  private void putString(String s)
+  {
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    putVarLong(b.length);
+    for (byte x : b)
+      put(x);
+  }
+}
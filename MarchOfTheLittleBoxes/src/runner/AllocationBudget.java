@@ -0,0 +1,192 @@
+package runner;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import entity.unit.Unit;
+import mechanics.Battle;
+import mechanics.CampaignPanel;
+import mechanics.Vector2D;
+import mechanics.metrics.AllocationMeter;
+import mechanics.metrics.Phase;
+
+/**
+ * File: src/runner/AllocationBudget.java
+ * <P>
+ * Plays every campaign level without a window, measuring the bytes
+ * allocated per tick in each phase of the battle, to catch changes that
+ * make the simulation allocate much more than it used to. Usage:
+ * <pre>
+ * java runner.AllocationBudget record &lt;budget file&gt; [ticks]
+ * java runner.AllocationBudget check &lt;budget file&gt; [ticks]
+ * </pre>
+ * {@code record} saves the measurements as the new budget. {@code check}
+ * compares them with a saved budget, and exits with status 1 if anything
+ * is over budget by more than the tolerance. The budget for the levels
+ * as they are is kept in {@code src/runner/allocation.budget}, and should
+ * be recorded again when a change is meant to allocate more. With 
+ * particles off, {@code ZeroAllocationCheck} allows no allocation at all.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class AllocationBudget
+{
+  public static final int DEFAULT_TICKS = 2000;
+  public static final long SEED = 1;
+
+  // measurements vary a little from run to run
+  public static final double TOLERANCE = 0.25;
+  public static final double SLACK_BYTES = 512;
+
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length < 2 || !(args[0].equals("record") || args[0].equals("check")))
+    {
+      System.err.println("Usage: AllocationBudget (record|check) <budget file> [ticks]");
+      System.exit(2);
+    }
+
+    System.setProperty("java.awt.headless", "true");
+    File file = new File(args[1]);
+    int ticks = (args.length > 2)? Integer.parseInt(args[2]) : DEFAULT_TICKS;
+
+    // once so that the JIT compiles the simulation, then for real
+    measureAll(ticks);
+    Map<String, Double> measured = measureAll(ticks);
+
+    if (args[0].equals("record"))
+    {
+      PrintWriter out = new PrintWriter(file);
+      out.println("# Bytes allocated per tick, over " + ticks + " ticks of each level");
+      for (Map.Entry<String, Double> e : measured.entrySet())
+        out.println(e.getKey() + "=" + String.format("%.1f", e.getValue()));
+      out.close();
+      System.out.println("Recorded " + measured.size() + " budgets in " + file);
+      return;
+    }
+
+    Properties budget = new Properties();
+    Reader in = new FileReader(file);
+    budget.load(in);
+    in.close();
+
+    List<String> failures = new ArrayList<String>();
+    for (Map.Entry<String, Double> e : measured.entrySet())
+    {
+      String key = e.getKey();
+      double bytes = e.getValue();
+      String limit = budget.getProperty(key);
+
+      if (limit == null)
+      {
+        failures.add(key + ": no budget recorded");
+        continue;
+      }
+
+      double allowed = Double.parseDouble(limit) * (1 + TOLERANCE) + SLACK_BYTES;
+      String line = String.format("%s: %.1f bytes/tick (budget %s)", key, bytes, limit);
+      System.out.println(line);
+      if (bytes > allowed)
+        failures.add(line);
+    }
+
+    if (failures.isEmpty())
+    {
+      System.out.println("All levels within budget");
+      return;
+    }
+
+    System.out.println();
+    System.out.println("Over budget:");
+    for (String f : failures)
+      System.out.println("  " + f);
+    System.exit(1);
+  }
+
+  /**
+   * @return Bytes per tick for each level and phase, keyed by
+   * {@code "level.<level>.<phase>"}.
+   */
+  public static Map<String, Double> measureAll(int ticks)
+  {
+    Map<String, Double> result = new TreeMap<String, Double>();
+
+    int levels = levelCount();
+    for (int level = 1; level <= levels; level++)
+    {
+      AllocationMeter meter = measureLevel(level, ticks);
+      for (Phase p : Phase.values())
+        result.put(String.format("level.%02d.%s", level, p), meter.bytesPerTick(p));
+    }
+    return result;
+  }
+
+  /**
+   * Plays the given campaign level for the given number of ticks,
+   * against a mirror image of the enemy's army, from a fixed seed so
+   * that every run plays the same battle.
+   */
+  public static AllocationMeter measureLevel(int level, int ticks)
+  {
+    Battle battle = new Battle(null, SEED);
+    setUpLevel(battle, level);
+
+    AllocationMeter meter = new AllocationMeter();
+    battle.addPhaseListener(meter);
+    battle.setPaused(false);
+    for (int i = 0; i < ticks; i++)
+      battle.update();
+
+    return meter;
+  }
+
+  /**
+   * @return The number of campaign levels. Exits with status 1 if there
+   * are none, as when the level file isn't on the classpath, since 
+   * checking no levels would pass without checking anything.
+   */
+  public static int levelCount()
+  {
+    int levels = new CampaignPanel(new Battle(null), null, null).levelCount();
+    if (levels == 0)
+    {
+      System.out.println("No campaign levels found; is levels/campaign.levels on the classpath?");
+      System.exit(1);
+    }
+    return levels;
+  }
+
+  /**
+   * Loads the given campaign level into the battle, and places
+   * a mirror image of the enemy's army for the player.
+   */
+  public static void setUpLevel(Battle battle, int level)
+  {
+    CampaignPanel panel = new CampaignPanel(battle, null, null);
+    battle.setControlPanel(panel);
+    panel.loadLevel(level);
+
+    // the player's army is placed without the campaign's limits
+    // on resources and placement
+    battle.setControlPanel(null);
+    battle.setTeamArea(null);
+    battle.setSelectedTeam(1);
+
+    List<Unit> enemies = new ArrayList<Unit>(battle.units());
+    for (Unit u : enemies)
+    {
+      battle.setAction(u.type());
+      battle.newUnit(new Vector2D(u.position().x, battle.height() - u.position().y),
+          -u.hitbox().angle, false);
+    }
+  }
+}
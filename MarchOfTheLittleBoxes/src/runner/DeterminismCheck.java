@@ -0,0 +1,83 @@
+package runner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import mechanics.Battle;
+import mechanics.MathProvider;
+import mechanics.metrics.HashTrace;
+
+/**
+ * File: src/runner/DeterminismCheck.java
+ * <P>
+ * Plays a campaign level without a window (as in {@code AllocationBudget}),
+ * from a fixed seed, and records a hash trace of it or compares it with
+ * a recorded one. Record a trace before changing the simulation, and
+ * check it afterwards to find out whether the change altered any
+ * outcome. Usage:
+ * <pre>
+ * java runner.DeterminismCheck record &lt;trace file&gt; [level] [ticks]
+ * java runner.DeterminismCheck check &lt;trace file&gt; [level] [ticks]
+ * </pre>
+ * {@code -Dmotlb.fastMath=true} and {@code -Dmotlb.dataOriented=true}
+ * turn on those modes, to check them against a trace recorded without.
+ * {@code check} exits with status 1 if the battle diverged from the trace.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class DeterminismCheck
+{
+  public static final int DEFAULT_LEVEL = 25;
+  public static final int DEFAULT_TICKS = 2000;
+  public static final long SEED = 1;
+
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length < 2 || !(args[0].equals("record") || args[0].equals("check")))
+    {
+      System.err.println("Usage: DeterminismCheck (record|check) <trace file> [level] [ticks]");
+      System.exit(2);
+    }
+
+    System.setProperty("java.awt.headless", "true");
+    File file = new File(args[1]);
+    int level = (args.length > 2)? Integer.parseInt(args[2]) : DEFAULT_LEVEL;
+    int ticks = (args.length > 3)? Integer.parseInt(args[3]) : DEFAULT_TICKS;
+
+    if (Boolean.getBoolean("motlb.fastMath"))
+      MathProvider.set(MathProvider.FAST);
+
+    Battle battle = new Battle(null, SEED);
+    battle.setDataOriented(Boolean.getBoolean("motlb.dataOriented"));
+    AllocationBudget.setUpLevel(battle, level);
+
+    boolean record = args[0].equals("record");
+    HashTrace trace = record
+        ? HashTrace.record(battle, new PrintWriter(file))
+        : HashTrace.compare(battle, new BufferedReader(new FileReader(file)));
+
+    battle.setPaused(false);
+    for (int i = 0; i < ticks; i++)
+      battle.update();
+    trace.close();
+
+    if (record)
+    {
+      System.out.printf("Recorded %d ticks of level %d in %s (final hash %016x)%n",
+          ticks, level, file, battle.rollingHash());
+    }
+    else if (trace.divergence() == null)
+    {
+      System.out.printf("Level %d matches the trace for all %d ticks%n", level, ticks);
+    }
+    else
+    {
+      System.out.println("Diverged from the trace. " + trace.divergence());
+      System.exit(1);
+    }
+  }
+}
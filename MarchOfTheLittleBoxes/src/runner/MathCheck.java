@@ -0,0 +1,109 @@
+package runner;
+
+import java.util.SplittableRandom;
+
+import mechanics.MathProvider;
+
+/**
+ * File: src/runner/MathCheck.java
+ * <P>
+ * Checks that {@code MathProvider.FAST} stays within the error bounds
+ * it documents, {@code SIN_COS_ERROR} and {@code ATAN2_ERROR}, by
+ * comparing it with {@code MathProvider.STRICT}. Run it after changing
+ * the table or the polynomial. Usage:
+ * <pre>
+ * java runner.MathCheck [samples]
+ * </pre>
+ * sin and cos are swept evenly over -1000 to 1000 radians, then tried at
+ * and between every table entry and at random angles. atan2 is swept over
+ * a grid of dx and dy at several scales, including the axes and the
+ * diagonals, then at random points. Exits with status 1 if any result
+ * is outside its bound.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class MathCheck
+{
+  public static final int DEFAULT_SAMPLES = 20000000;
+
+  public static final double MAX_ANGLE = 1000;
+
+  private static final int TABLE_SIZE = 4096; // as in FAST, to probe its entries
+
+  private static double sinCosError, atan2Error;
+  private static double worstAngle, worstX, worstY;
+
+  public static void main(String[] args)
+  {
+    int samples = (args.length > 0)? Integer.parseInt(args[0]) : DEFAULT_SAMPLES;
+    SplittableRandom random = new SplittableRandom(1);
+
+    // sin and cos, evenly
+    for (int i = 0; i <= samples; i++)
+      checkSinCos(-MAX_ANGLE + 2 * MAX_ANGLE * i / samples);
+
+    // at, just off, and halfway between table entries, over several turns
+    for (int turn = -3; turn <= 3; turn++)
+      for (int i = 0; i < TABLE_SIZE; i++)
+      {
+        double a = 2 * Math.PI * (turn + (double) i / TABLE_SIZE);
+        checkSinCos(a);
+        checkSinCos(Math.nextUp(a));
+        checkSinCos(Math.nextDown(a));
+        checkSinCos(a + Math.PI / TABLE_SIZE);
+      }
+
+    for (int i = 0; i < samples; i++)
+      checkSinCos((2 * random.nextDouble() - 1) * MAX_ANGLE);
+
+    // atan2, on grids from below a pixel up to far beyond a battle
+    int side = (int) Math.sqrt(samples / 4.0) | 1; // odd, so 0 is on the grid
+    for (double scale : new double[] {1e-3, 1, 1e3, 1e6})
+      for (int i = 0; i < side; i++)
+        for (int j = 0; j < side; j++)
+          checkAtan2(scale * (2.0 * i / (side - 1) - 1), scale * (2.0 * j / (side - 1) - 1));
+
+    for (int i = 0; i < samples; i++)
+    {
+      double r = Math.pow(10, 8 * random.nextDouble() - 4);
+      double a = (2 * random.nextDouble() - 1) * Math.PI;
+      checkAtan2(r * Math.sin(a), r * Math.cos(a));
+    }
+
+    System.out.printf("sin/cos: largest error %.3g at %.17g (bound %.3g)%n",
+        sinCosError, worstAngle, MathProvider.SIN_COS_ERROR);
+    System.out.printf("atan2: largest error %.3g at y=%.17g, x=%.17g (bound %.3g)%n",
+        atan2Error, worstY, worstX, MathProvider.ATAN2_ERROR);
+
+    if (sinCosError > MathProvider.SIN_COS_ERROR || atan2Error > MathProvider.ATAN2_ERROR)
+    {
+      System.out.println("FAST is outside its documented error bounds");
+      System.exit(1);
+    }
+    System.out.println("FAST is within its documented error bounds");
+  }
+
+  private static void checkSinCos(double a)
+  {
+    double e = Math.max(
+        Math.abs(MathProvider.FAST.sin(a) - MathProvider.STRICT.sin(a)),
+        Math.abs(MathProvider.FAST.cos(a) - MathProvider.STRICT.cos(a)));
+    if (!(e <= sinCosError)) // NaN counts as the worst
+    {
+      sinCosError = (e != e)? Double.POSITIVE_INFINITY : e;
+      worstAngle = a;
+    }
+  }
+
+  private static void checkAtan2(double y, double x)
+  {
+    double e = Math.abs(MathProvider.FAST.atan2(y, x) - MathProvider.STRICT.atan2(y, x));
+    if (!(e <= atan2Error))
+    {
+      atan2Error = (e != e)? Double.POSITIVE_INFINITY : e;
+      worstY = y;
+      worstX = x;
+    }
+  }
+}
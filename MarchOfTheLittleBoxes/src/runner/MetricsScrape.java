@@ -0,0 +1,230 @@
+package runner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import mechanics.Battle;
+import mechanics.metrics.MetricsExporter;
+import mechanics.metrics.Phase;
+
+/**
+ * File: src/runner/MetricsScrape.java
+ * <P>
+ * Checks {@code MetricsExporter} the way a local scraper would see it.
+ * Serves a battle's metrics on a free port, plays a campaign level (as in
+ * {@code AllocationBudget}) from a fixed seed with particles off, then
+ * fetches {@code /metrics} over HTTP and checks what comes back: the
+ * content type, that every sample belongs to a declared metric, that the
+ * tick and unit counts agree with the battle, that every phase is
+ * reported, and that the ticks per second histogram is consistent.
+ * Also checks that the exporter doesn't make the battle's ticks
+ * allocate anything. Usage:
+ * <pre>
+ * java runner.MetricsScrape [level] [ticks]
+ * </pre>
+ * Exits with status 1 if anything is wrong.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class MetricsScrape
+{
+  public static final int DEFAULT_LEVEL = 10;
+  public static final int DEFAULT_TICKS = 2000;
+  public static final long SEED = 1;
+
+  private static final String LABELS = "battle=\"1\"";
+
+  private static final List<String> failures = new ArrayList<String>();
+
+  public static void main(String[] args) throws IOException
+  {
+    System.setProperty("java.awt.headless", "true");
+    int level = (args.length > 0)? Integer.parseInt(args[0]) : DEFAULT_LEVEL;
+    int ticks = (args.length > 1)? Integer.parseInt(args[1]) : DEFAULT_TICKS;
+
+    Battle battle = new Battle(null, SEED);
+    AllocationBudget.setUpLevel(battle, level);
+    if (battle.units().isEmpty())
+    {
+      System.out.println("Level " + level + " has no units; are the levels on the classpath?");
+      System.exit(1);
+    }
+    battle.setParticlesEnabled(false);
+
+    MetricsExporter exporter = new MetricsExporter(0);
+    exporter.start();
+    exporter.track(battle);
+
+    // once so that the JIT compiles the simulation, then again from the
+    // same opening, measured (as in ZeroAllocationCheck)
+    byte[] opening = battle.snapshot(false);
+    battle.setPaused(false);
+    for (int i = 0; i < ticks; i++)
+      battle.update();
+    battle.restore(opening);
+    battle.setPaused(false);
+
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < ticks; i++)
+      battle.update();
+    double bytesPerTick = (double) (threads.getThreadAllocatedBytes(thread) - before) / ticks;
+
+    String url = "http://" + InetAddress.getLoopbackAddress().getHostAddress()
+        + ":" + exporter.port() + "/metrics";
+    Map<String, Double> samples = scrape(url);
+    exporter.stop();
+
+    // one JIT recompilation can cost a few bytes in one tick, but
+    // allocating every tick shows up as at least a byte per tick
+    if (bytesPerTick >= 1)
+      fail(String.format("ticks allocated %.1f bytes each with the exporter tracking the battle",
+          bytesPerTick));
+
+    expect(samples, "motlb_ticks_total{" + LABELS + "}", 2 * ticks);
+    expect(samples, "motlb_entities{" + LABELS + ",kind=\"unit\"}", battle.units().size());
+    expect(samples, "motlb_entities{" + LABELS + ",kind=\"projectile\"}",
+        battle.projectiles().size());
+    expect(samples, "motlb_battles_completed_total{" + LABELS + "}",
+        battle.battlesCompleted());
+
+    for (Phase p : Phase.values())
+    {
+      String key = "motlb_phase_seconds_total{" + LABELS + ",phase=\""
+          + p.name().toLowerCase(Locale.ROOT) + "\"}";
+      if (!samples.containsKey(key))
+        fail("no sample " + key);
+      else if (samples.get(key) < 0)
+        fail(key + " is negative");
+    }
+    Double units = samples.get("motlb_phase_seconds_total{" + LABELS + ",phase=\"units\"}");
+    if (units != null && units == 0)
+      fail("no time counted in the units phase");
+
+    checkTps(samples);
+
+    if (failures.isEmpty())
+    {
+      System.out.printf("Scraped %d samples from %s; all as expected%n", samples.size(), url);
+      return;
+    }
+
+    System.out.println("Problems with " + url + ":");
+    for (String f : failures)
+      System.out.println("  " + f);
+    System.exit(1);
+  }
+
+  /**
+   * Fetches the metrics and parses the samples, checking each against the
+   * declared types.
+   *
+   * @return The value of every sample, by its name and labels.
+   */
+  private static Map<String, Double> scrape(String url) throws IOException
+  {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    if (connection.getResponseCode() != 200)
+      fail("status " + connection.getResponseCode());
+    String type = connection.getContentType();
+    if (type == null || !type.startsWith("text/plain; version=0.0.4"))
+      fail("content type " + type);
+
+    Map<String, String> types = new HashMap<String, String>();
+    Map<String, Double> samples = new HashMap<String, Double>();
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(
+        connection.getInputStream(), StandardCharsets.UTF_8)))
+    {
+      String line;
+      while ((line = in.readLine()) != null)
+      {
+        if (line.startsWith("# TYPE "))
+        {
+          String[] parts = line.split(" ");
+          types.put(parts[2], parts[3]);
+        }
+        else if (!line.isEmpty() && !line.startsWith("#"))
+        {
+          int space = line.lastIndexOf(' ');
+          String key = line.substring(0, space);
+          String name = key.substring(0, key.indexOf('{'));
+          if (!types.containsKey(name) && !types.containsKey(histogramName(name)))
+            fail("sample of undeclared metric " + name);
+          try
+          {
+            samples.put(key, Double.parseDouble(line.substring(space + 1)));
+          }
+          catch (NumberFormatException ex)
+          {
+            fail("unreadable value in " + line);
+          }
+        }
+      }
+    }
+    return samples;
+  }
+
+  /**
+   * @return The name of the histogram a sample would belong to.
+   */
+  private static String histogramName(String name)
+  {
+    for (String suffix : new String[] {"_bucket", "_sum", "_count"})
+      if (name.endsWith(suffix))
+        return name.substring(0, name.length() - suffix.length());
+    return name;
+  }
+
+  /**
+   * The buckets should only grow, and the last should hold every sample.
+   */
+  private static void checkTps(Map<String, Double> samples)
+  {
+    double last = 0;
+    for (double bound : MetricsExporter.TPS_BUCKETS)
+    {
+      Double count = samples.get("motlb_tps_bucket{" + LABELS + ",le=\"" + bound + "\"}");
+      if (count == null)
+      {
+        fail("no ticks per second bucket for " + bound);
+        return;
+      }
+      if (count < last)
+        fail("ticks per second bucket for " + bound + " is smaller than the one before");
+      last = count;
+    }
+    Double count = samples.get("motlb_tps_count{" + LABELS + "}");
+    if (count == null)
+      fail("no ticks per second count");
+    else
+      expect(samples, "motlb_tps_bucket{" + LABELS + ",le=\"+Inf\"}", count);
+  }
+
+  private static void expect(Map<String, Double> samples, String key, double expected)
+  {
+    Double value = samples.get(key);
+    if (value == null)
+      fail("no sample " + key);
+    else if (value != expected)
+      fail(key + " is " + value + ", expected " + expected);
+  }
+
+  private static void fail(String message)
+  {
+    failures.add(message);
+  }
+}
@@ -0,0 +1,124 @@
+package runner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mechanics.Battle;
+
+/**
+ * File: src/runner/ParallelCheck.java
+ * <P>
+ * Checks that battles in the same JVM don't affect each other. Plays
+ * every campaign level (as in {@code AllocationBudget}) one after
+ * another, then again all at once on separate threads. Each battle's
+ * state is hashed after every tick, with {@code StateHasher}, and the 
+ * rolling hashes are compared, then the final snapshots, which also 
+ * hold the fallen units and the random number generators. Usage:
+ * <pre>
+ * java runner.ParallelCheck [ticks] [seed]
+ * </pre>
+ * Exits with status 1 if any battle ended differently.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class ParallelCheck
+{
+  public static final int DEFAULT_TICKS = 2000;
+
+  public static void main(String[] args) throws InterruptedException
+  {
+    System.setProperty("java.awt.headless", "true");
+    int ticks = (args.length > 0)? Integer.parseInt(args[0]) : DEFAULT_TICKS;
+    long seed = (args.length > 1)? Long.parseLong(args[1]) : 1;
+
+    int levels = AllocationBudget.levelCount();
+
+    long start = System.nanoTime();
+    List<Battle> serial = createBattles(levels, seed);
+    for (Battle b : serial)
+      play(b, ticks);
+    long serialTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    List<Battle> parallel = createBattles(levels, seed);
+    ExecutorService pool = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors());
+    List<Future<?>> done = new ArrayList<Future<?>>();
+    for (final Battle b : parallel)
+    {
+      done.add(pool.submit(new Runnable()
+      {
+        public void run()
+        {
+          play(b, ticks);
+        }
+      }));
+    }
+    try
+    {
+      for (Future<?> f : done)
+        f.get();
+    }
+    catch (ExecutionException ex)
+    {
+      ex.getCause().printStackTrace();
+      System.exit(1);
+    }
+    pool.shutdown();
+    long parallelTime = System.nanoTime() - start;
+
+    int failures = 0;
+    for (int i = 0; i < levels; i++)
+    {
+      Battle expected = serial.get(i), actual = parallel.get(i);
+      if (expected.rollingHash() != actual.rollingHash())
+      {
+        System.out.printf("Level %d differs: rolling hash %016x serially, %016x in parallel%n",
+            i + 1, expected.rollingHash(), actual.rollingHash());
+        failures++;
+      }
+      else if (!Arrays.equals(expected.snapshot(), actual.snapshot()))
+      {
+        System.out.printf("Level %d differs: same rolling hash, but not the same final state%n", 
+            i + 1);
+        failures++;
+      }
+    }
+
+    System.out.printf("%d battles, %d ticks each: %.2f s serially, %.2f s in parallel%n",
+        levels, ticks, serialTime / 1.0e9, parallelTime / 1.0e9);
+    if (failures > 0)
+      System.exit(1);
+    System.out.println("All battles identical");
+  }
+
+  /**
+   * Sets up one battle per campaign level. Done on one thread, since
+   * setting up goes through the campaign's Swing panel.
+   */
+  private static List<Battle> createBattles(int levels, long seed)
+  {
+    List<Battle> battles = new ArrayList<Battle>();
+    for (int level = 1; level <= levels; level++)
+    {
+      Battle battle = new Battle(null, seed + level);
+      AllocationBudget.setUpLevel(battle, level);
+      battle.setHashing(true);
+      battles.add(battle);
+    }
+    return battles;
+  }
+
+  private static void play(Battle battle, int ticks)
+  {
+    battle.setPaused(false);
+    for (int i = 0; i < ticks; i++)
+      battle.update();
+  }
+}
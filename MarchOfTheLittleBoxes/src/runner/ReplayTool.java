@@ -0,0 +1,106 @@
+package runner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import mechanics.Battle;
+import mechanics.MathProvider;
+import mechanics.replay.ReplayPlayer;
+import mechanics.replay.ReplayReader;
+import mechanics.replay.ReplayRecorder;
+
+/**
+ * File: src/runner/ReplayTool.java
+ * <P>
+ * Records replays of campaign levels without a window (as in 
+ * {@code AllocationBudget}), checks that replays still play back 
+ * the same, and plays them in a window. Usage:
+ * <pre>
+ * java runner.ReplayTool record &lt;replay file&gt; [level] [ticks] [keyframe interval]
+ * java runner.ReplayTool verify &lt;replay file&gt;
+ * java runner.ReplayTool play &lt;replay file&gt;
+ * </pre>
+ * {@code verify} exits with status 1 if a keyframe doesn't match.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class ReplayTool
+{
+  public static final int DEFAULT_LEVEL = 25;
+  public static final int DEFAULT_TICKS = 2000;
+  public static final int DEFAULT_KEYFRAME_INTERVAL = 500;
+
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length < 2 || !(args[0].equals("record") || args[0].equals("verify")
+        || args[0].equals("play")))
+    {
+      System.err.println("Usage: ReplayTool record <replay file> [level] [ticks] [keyframe interval]");
+      System.err.println("       ReplayTool verify <replay file>");
+      System.err.println("       ReplayTool play <replay file>");
+      System.exit(2);
+    }
+
+    Path file = Paths.get(args[1]);
+    if (args[0].equals("play"))
+    {
+      ReplayReader reader = new ReplayReader(file);
+      setMathMode(reader);
+      ReplayPlayer player = new ReplayPlayer(reader, file.getFileName().toString());
+      player.setVisible(true);
+      player.start();
+      return;
+    }
+
+    System.setProperty("java.awt.headless", "true");
+
+    if (args[0].equals("record"))
+    {
+      int level = (args.length > 2)? Integer.parseInt(args[2]) : DEFAULT_LEVEL;
+      int ticks = (args.length > 3)? Integer.parseInt(args[3]) : DEFAULT_TICKS;
+      int interval = (args.length > 4)? Integer.parseInt(args[4]) : DEFAULT_KEYFRAME_INTERVAL;
+
+      Battle battle = new Battle(null);
+      AllocationBudget.setUpLevel(battle, level);
+      ReplayRecorder recorder = ReplayRecorder.start(battle, file, interval);
+      battle.setPaused(false);
+      for (int i = 0; i < ticks; i++)
+        battle.update();
+      recorder.stop();
+
+      System.out.printf("Recorded %d ticks of level %d in %s: %d bytes%n",
+          ticks, level, file, Files.size(file));
+      return;
+    }
+
+    ReplayReader reader = new ReplayReader(file);
+    setMathMode(reader);
+
+    Battle battle = reader.createBattle();
+    battle.setPaused(false);
+    reader.playAll(battle);
+
+    if (reader.firstMismatch() == -1)
+    {
+      System.out.printf("%s plays back the same for all %d ticks%n", file, reader.tick());
+    }
+    else
+    {
+      System.out.printf("%s differs from the keyframe at tick %d%n", file, reader.firstMismatch());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Uses the math the replay was recorded with.
+   */
+  private static void setMathMode(ReplayReader reader)
+  {
+    if (!reader.mathMode().equals(MathProvider.get().name()))
+      MathProvider.set(reader.mathMode().equals(MathProvider.FAST.name())
+          ? MathProvider.FAST : MathProvider.STRICT);
+  }
+}
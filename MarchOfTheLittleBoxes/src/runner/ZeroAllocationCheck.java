@@ -0,0 +1,129 @@
+package runner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import mechanics.Battle;
+import mechanics.metrics.AllocationMeter;
+import mechanics.metrics.Phase;
+
+/**
+ * File: src/runner/ZeroAllocationCheck.java
+ * <P>
+ * Checks that, with particles off, a battle's ticks allocate nothing at
+ * all once it has reached a steady state. Plays every campaign level
+ * (as in {@code AllocationBudget}) once, which brings its projectile pools
+ * and entity lists up to the size the battle needs, then restores the
+ * battle's opening from a snapshot and plays it again, measuring every
+ * tick. Usage:
+ * <pre>
+ * java runner.ZeroAllocationCheck [ticks]
+ * </pre>
+ * Runs in data-oriented mode too, given {@code -Dmotlb.dataOriented=true}.
+ * Exits with status 1 if any tick of any level allocated anything, or if
+ * there are no levels to play.
+ * <P>
+ * A level that allocated is played from its opening once more. The second
+ * time plays out exactly as the first, so anything the simulation itself
+ * allocates is allocated again. Once in a while, the JIT recompiling part
+ * of the simulation mid-run costs a few bytes in one tick (an object that
+ * escape analysis had done away with has to be made after all); that
+ * doesn't happen again, and isn't counted against the level.
+ *
+ * @author Samuel Tan
+ *
+ */
+public class ZeroAllocationCheck
+{
+  public static final int DEFAULT_TICKS = 2000;
+  public static final long SEED = 1;
+
+  public static void main(String[] args)
+  {
+    System.setProperty("java.awt.headless", "true");
+    int ticks = (args.length > 0)? Integer.parseInt(args[0]) : DEFAULT_TICKS;
+
+    int levels = AllocationBudget.levelCount();
+
+    // once so that the JIT compiles the simulation, then for real
+    for (int level = 1; level <= levels; level++)
+      measureLevel(level, ticks);
+
+    List<String> failures = new ArrayList<String>();
+    for (int level = 1; level <= levels; level++)
+    {
+      String result = measureLevel(level, ticks);
+      if (result != null && measureLevel(level, ticks) == null)
+      {
+        System.out.printf("Level %d: %s, but not when played again%n", level, result);
+        result = null;
+      }
+      if (result != null)
+        failures.add(String.format("Level %d: %s", level, result));
+    }
+
+    if (failures.isEmpty())
+    {
+      System.out.printf("No allocation in %d ticks of each of %d levels%n", ticks, levels);
+      return;
+    }
+
+    System.out.println("Allocated during steady-state ticks:");
+    for (String f : failures)
+      System.out.println("  " + f);
+    System.exit(1);
+  }
+
+  /**
+   * Plays the level twice from the same opening, measuring the second time.
+   *
+   * @return What was allocated, or null if nothing was.
+   */
+  public static String measureLevel(int level, int ticks)
+  {
+    Battle battle = new Battle(null, SEED);
+    AllocationBudget.setUpLevel(battle, level);
+    battle.setParticlesEnabled(false);
+
+    byte[] opening = battle.snapshot(false);
+    battle.setPaused(false);
+    for (int i = 0; i < ticks; i++)
+      battle.update();
+
+    battle.restore(opening);
+    battle.setPaused(false);
+    AllocationMeter meter = new AllocationMeter();
+    battle.addPhaseListener(meter);
+
+    long[] bytes = new long[Phase.values().length];
+    int allocatingTicks = 0, firstTick = -1;
+    for (int i = 0; i < ticks; i++)
+    {
+      meter.reset();
+      battle.update();
+
+      long total = 0;
+      for (Phase p : Phase.values())
+      {
+        bytes[p.ordinal()] += meter.bytes(p);
+        total += meter.bytes(p);
+      }
+      if (total > 0)
+      {
+        allocatingTicks++;
+        if (firstTick == -1)
+          firstTick = i;
+      }
+    }
+
+    if (allocatingTicks == 0)
+      return null;
+
+    StringBuilder result = new StringBuilder();
+    result.append(allocatingTicks).append(" ticks, first at tick ").append(firstTick);
+    for (Phase p : Phase.values())
+      if (bytes[p.ordinal()] > 0)
+        result.append(", ").append(p).append(' ').append(bytes[p.ordinal()]).append(" bytes");
+    return result.toString();
+  }
+}